@@ -0,0 +1,385 @@
+package org.df4j.apt;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * For each class with fields or methods annotated with {@link org.df4j.core.tasknode.Action}
+ * (declared or inherited), generates a {@link org.df4j.core.util.invoker.ClassInvokerFactory}
+ * which finds the action the same way {@link org.df4j.core.util.ActionCaller} does, but without reflection.
+ * The factory of class {@code p.Outer.Inner} is {@code p.Outer_Inner_ActionInvoker}, the name
+ * {@link org.df4j.core.util.ActionCaller} loads it by.
+ * <p>
+ * Classes which actions are not accessible from their own package (private members, private classes)
+ * are skipped, and {@link org.df4j.core.util.ActionCaller} scans them at runtime as before.
+ * <p>
+ * For subclasses of AsyncProc, warns when the number of parameters of the action method
+ * differs from the number of fields of type AsyncParam. Parameters kept in arrays or created outside fields
+ * are not counted, so this is only a hint. The warning can be suppressed with
+ * <code>@SuppressWarnings("action-arity")</code> on the class or on the method.
+ */
+@SupportedAnnotationTypes("*")
+public class ActionProcessor extends AbstractProcessor {
+    static final String ACTION = "org.df4j.core.tasknode.Action";
+    static final String ASYNC_PROC = "org.df4j.core.tasknode.AsyncProc";
+    static final String ASYNC_PARAM = "org.df4j.core.tasknode.AsyncProc.AsyncParam";
+    static final String ABSTRACT_INVOKER = "org.df4j.core.util.invoker.AbstractInvoker";
+    static final String INVOKER = "org.df4j.core.util.invoker.Invoker";
+    static final String FACTORY = "org.df4j.core.util.invoker.ClassInvokerFactory";
+    static final String SUPPRESS_ARITY = "action-arity";
+    static final String SUFFIX = "_ActionInvoker";
+
+    private Elements elements;
+    private Types types;
+    private Messager messager;
+    private Filer filer;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+        messager = processingEnv.getMessager();
+        filer = processingEnv.getFiler();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (elements.getTypeElement(ACTION) == null) {
+            return false; // df4j-core is not on the classpath
+        }
+        for (Element element: roundEnv.getRootElements()) {
+            scan(element);
+        }
+        return false;
+    }
+
+    private void scan(Element element) {
+        if (element.getKind() != ElementKind.CLASS) {
+            return;
+        }
+        TypeElement type = (TypeElement) element;
+        if (!type.getModifiers().contains(Modifier.ABSTRACT)) {
+            processClass(type);
+        }
+        for (TypeElement member: ElementFilter.typesIn(type.getEnclosedElements())) {
+            scan(member);
+        }
+    }
+
+    private void processClass(TypeElement type) {
+        PackageElement pkg = elements.getPackageOf(type);
+        String binaryName = elements.getBinaryName(type).toString();
+        StringBuilder body = new StringBuilder();
+        boolean found = false;
+        boolean accessible = isAccessible(type, pkg);
+        boolean terminated = false;
+        ExecutableElement actionMethod = null;
+        TypeMirror abstractInvoker = erasure(ABSTRACT_INVOKER);
+        walk:
+        for (TypeElement t = type; t != null; t = superclass(t)) {
+            for (VariableElement field: ElementFilter.fieldsIn(t.getEnclosedElements())) {
+                if (!isAction(field)) continue;
+                found = true;
+                if (!types.isAssignable(types.erasure(field.asType()), abstractInvoker)) {
+                    body.append("        throw new NoSuchMethodException(\"variable annotated with @Action must have type AbstractInvoker\");\n");
+                    terminated = true;
+                    break walk;
+                }
+                accessible &= isAccessible(field, t, pkg);
+                body.append("        {\n")
+                    .append("            ").append(ABSTRACT_INVOKER).append(" invoker = ").append(receiver(field, t)).append(";\n")
+                    .append("            if (invoker != null && !invoker.isEmpty()) {\n")
+                    .append("                return invoker;\n")
+                    .append("            }\n")
+                    .append("        }\n");
+            }
+            ExecutableElement method = null;
+            for (ExecutableElement m: ElementFilter.methodsIn(t.getEnclosedElements())) {
+                if (!isAction(m)) continue;
+                found = true;
+                if (method != null) {
+                    if (t.equals(type)) {
+                        messager.printMessage(Diagnostic.Kind.ERROR, "more than one method annotated with @Action", m);
+                    }
+                    body.append("        throw new NoSuchMethodException(\"in class ").append(binaryName)
+                        .append(" more than one method annotated with @Action\");\n");
+                    terminated = true;
+                    break walk;
+                }
+                method = m;
+            }
+            if (method != null) {
+                actionMethod = method;
+                accessible &= isAccessible(method, t, pkg) && throwsOnlyExceptions(method);
+                appendMethodInvoker(body, binaryName, method, t);
+                terminated = true;
+                break;
+            }
+        }
+        if (!found) {
+            return;
+        }
+        if (actionMethod != null) {
+            checkArity(type, actionMethod);
+        }
+        if (!accessible) {
+            return;
+        }
+        if (!terminated) {
+            body.append("        throw new NoSuchMethodException(\"class ").append(binaryName)
+                .append(" has no field or method annotated with @Action\");\n");
+        }
+        writeFactory(type, pkg, body);
+    }
+
+    private void appendMethodInvoker(StringBuilder body, String binaryName, ExecutableElement method, TypeElement declaring) {
+        List<? extends VariableElement> params = method.getParameters();
+        boolean isStatic = method.getModifiers().contains(Modifier.STATIC);
+        boolean returnsValue = method.getReturnType().getKind() != TypeKind.VOID;
+        String declaringName = typeName(declaring.asType());
+        body.append("        if (argCount != ").append(params.size()).append(") {\n")
+            .append("            throw new NoSuchMethodException(\"class ").append(binaryName)
+            .append(" has a method annotated with @Action but with wrong numbers of parameters\");\n")
+            .append("        }\n");
+        if (!isStatic) {
+            body.append("        final ").append(declaringName).append(" node = (").append(declaringName).append(") actionObject;\n");
+        }
+        StringBuilder call = new StringBuilder();
+        call.append(isStatic ? declaringName : "node").append('.').append(method.getSimpleName()).append('(');
+        for (int k = 0; k < params.size(); k++) {
+            if (k > 0) {
+                call.append(", ");
+            }
+            call.append('(').append(boxedName(params.get(k).asType())).append(") args[").append(k).append(']');
+        }
+        call.append(')');
+        body.append("        return new ").append(INVOKER).append("<Object>() {\n")
+            .append("            @Override\n")
+            .append("            public boolean isEmpty() {\n")
+            .append("                return false;\n")
+            .append("            }\n\n")
+            .append("            @Override\n")
+            .append("            public boolean returnsValue() {\n")
+            .append("                return ").append(returnsValue).append(";\n")
+            .append("            }\n\n")
+            .append("            @Override\n")
+            .append("            public Object apply(Object... args) throws Exception {\n");
+        if (returnsValue) {
+            body.append("                return ").append(call).append(";\n");
+        } else {
+            body.append("                ").append(call).append(";\n")
+                .append("                return null;\n");
+        }
+        body.append("            }\n")
+            .append("        };\n");
+    }
+
+    /**
+     * the number of parameters of the action method is expected to be equal to the number of AsyncParam fields
+     */
+    private void checkArity(TypeElement type, ExecutableElement method) {
+        TypeElement asyncProc = elements.getTypeElement(ASYNC_PROC);
+        TypeElement asyncParam = elements.getTypeElement(ASYNC_PARAM);
+        if (asyncProc == null || asyncParam == null) {
+            return;
+        }
+        if (!types.isSubtype(types.erasure(type.asType()), types.erasure(asyncProc.asType()))) {
+            return;
+        }
+        if (isSuppressed(type) || isSuppressed(method)) {
+            return;
+        }
+        TypeMirror paramType = types.erasure(asyncParam.asType());
+        int paramCount = 0;
+        for (TypeElement t = type; t != null; t = superclass(t)) {
+            for (VariableElement field: ElementFilter.fieldsIn(t.getEnclosedElements())) {
+                if (field.getModifiers().contains(Modifier.STATIC)) continue;
+                if (types.isAssignable(types.erasure(field.asType()), paramType)) {
+                    paramCount++;
+                }
+            }
+        }
+        int argCount = method.getParameters().size();
+        if (argCount != paramCount) {
+            Element location = method.getEnclosingElement().equals(type) ? method : type;
+            messager.printMessage(Diagnostic.Kind.WARNING, "@Action method " + method.getSimpleName()
+                    + " has " + argCount + " parameters, but class " + type.getQualifiedName()
+                    + " declares " + paramCount + " fields of type AsyncParam", location);
+        }
+    }
+
+    private void writeFactory(TypeElement type, PackageElement pkg, StringBuilder body) {
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String simpleName = flatName(type) + SUFFIX;
+        String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        try {
+            JavaFileObject file = filer.createSourceFile(qualifiedName, type);
+            try (PrintWriter out = new PrintWriter(file.openWriter())) {
+                if (!packageName.isEmpty()) {
+                    out.println("package " + packageName + ";");
+                    out.println();
+                }
+                out.println("/**");
+                out.println(" * generated by " + ActionProcessor.class.getName());
+                out.println(" */");
+                out.println("@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+                out.println("public final class " + simpleName + " implements " + FACTORY + "<Object> {");
+                out.println();
+                out.println("    @Override");
+                out.println("    public Class<?> actionClass() {");
+                out.println("        return " + typeName(type.asType()) + ".class;");
+                out.println("    }");
+                out.println();
+                out.println("    @Override");
+                out.println("    public " + INVOKER + "<Object> findAction(Object actionObject, int argCount) throws NoSuchMethodException {");
+                out.print(body);
+                out.println("    }");
+                out.println("}");
+            }
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "cannot write " + qualifiedName + ": " + e, type);
+        }
+    }
+
+    private boolean isAction(Element element) {
+        for (AnnotationMirror annotation: element.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(ACTION)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isSuppressed(Element element) {
+        SuppressWarnings suppress = element.getAnnotation(SuppressWarnings.class);
+        if (suppress == null) {
+            return false;
+        }
+        for (String value: suppress.value()) {
+            if (SUPPRESS_ARITY.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private TypeElement superclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement res = (TypeElement) ((DeclaredType) superclass).asElement();
+        if (res.getQualifiedName().contentEquals(Object.class.getName())) {
+            return null;
+        }
+        return res;
+    }
+
+    /**
+     * generated class is placed in the package of the processed class
+     */
+    private boolean isAccessible(TypeElement type, PackageElement pkg) {
+        for (Element e = type; e.getKind().isClass() || e.getKind().isInterface(); e = e.getEnclosingElement()) {
+            TypeElement t = (TypeElement) e;
+            if (t.getNestingKind() == NestingKind.LOCAL || t.getNestingKind() == NestingKind.ANONYMOUS) {
+                return false;
+            }
+            if (!isAccessible(t.getModifiers(), elements.getPackageOf(t), pkg)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isAccessible(Element member, TypeElement declaring, PackageElement pkg) {
+        return isAccessible(declaring, pkg) && isAccessible(member.getModifiers(), elements.getPackageOf(declaring), pkg);
+    }
+
+    private boolean isAccessible(Set<Modifier> modifiers, PackageElement memberPackage, PackageElement pkg) {
+        if (modifiers.contains(Modifier.PUBLIC)) {
+            return true;
+        }
+        if (modifiers.contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        return memberPackage.equals(pkg);
+    }
+
+    private boolean throwsOnlyExceptions(ExecutableElement method) {
+        TypeMirror exception = erasure(Exception.class.getName());
+        TypeMirror error = erasure(Error.class.getName());
+        for (TypeMirror thrown: method.getThrownTypes()) {
+            if (!types.isAssignable(thrown, exception) && !types.isAssignable(thrown, error)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String receiver(VariableElement field, TypeElement declaring) {
+        if (field.getModifiers().contains(Modifier.STATIC)) {
+            return typeName(declaring.asType()) + "." + field.getSimpleName();
+        }
+        return "((" + typeName(declaring.asType()) + ") actionObject)." + field.getSimpleName();
+    }
+
+    private TypeMirror erasure(String className) {
+        return types.erasure(elements.getTypeElement(className).asType());
+    }
+
+    private String typeName(TypeMirror type) {
+        return types.erasure(type).toString();
+    }
+
+    private String boxedName(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return types.boxedClass(types.getPrimitiveType(type.getKind())).getQualifiedName().toString();
+        }
+        return typeName(type);
+    }
+
+    /**
+     * Outer.Inner becomes Outer_Inner
+     */
+    private String flatName(TypeElement type) {
+        List<String> names = new ArrayList<>();
+        for (Element e = type; e.getKind().isClass() || e.getKind().isInterface(); e = e.getEnclosingElement()) {
+            names.add(0, e.getSimpleName().toString());
+        }
+        return String.join("_", names);
+    }
+}
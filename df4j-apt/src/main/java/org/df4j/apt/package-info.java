@@ -0,0 +1,8 @@
+/**
+ * Compile-time support for {@link org.df4j.core.tasknode.Action} annotation.
+ * <p>
+ * Put df4j-apt on the compiler classpath (e.g. as a dependency with scope "provided"),
+ * and for each class with actions the compiler generates a {@link org.df4j.core.util.invoker.ClassInvokerFactory},
+ * so that actions are found and called without reflection.
+ */
+package org.df4j.apt;
@@ -0,0 +1,116 @@
+package org.df4j.apt;
+
+import org.df4j.core.tasknode.AsyncProc;
+import org.df4j.core.util.ActionCaller;
+import org.df4j.core.util.invoker.Invoker;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+public class ActionProcessorTest {
+
+    static boolean isGenerated(Invoker invoker) {
+        return invoker.getClass().getName().contains(ActionProcessor.SUFFIX);
+    }
+
+    @Test
+    public void generatedInvokerIsUsed() throws Exception {
+        SampleNodes.Sum sum = new SampleNodes.Sum();
+        Invoker invoker = ActionCaller.findAction(sum, 2);
+        Assert.assertTrue(isGenerated(invoker));
+        Assert.assertTrue(invoker.returnsValue());
+        Assert.assertEquals(5, invoker.apply(2, 3));
+    }
+
+    @Test
+    public void nodeRunsWithGeneratedInvoker() throws Exception {
+        SampleNodes.NamedSum sum = new SampleNodes.NamedSum();
+        Assert.assertTrue(isGenerated(ActionCaller.findAction(sum, 2)));
+        sum.paramX.complete(3);
+        sum.paramY.complete(4);
+        sum.start();
+        Assert.assertEquals(Integer.valueOf(7), sum.asyncResult().get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void fieldAction() throws Exception {
+        Invoker invoker = ActionCaller.findAction(new SampleNodes.WithField(v -> v * 2), 1);
+        Assert.assertEquals(8, invoker.apply(4));
+    }
+
+    @Test(expected = NoSuchMethodException.class)
+    public void wrongArgCount() throws NoSuchMethodException {
+        ActionCaller.findAction(new SampleNodes.Sum(), 1);
+    }
+
+    @Test
+    public void privateActionFallsBack() throws Exception {
+        Invoker invoker = ActionCaller.findAction(new SampleNodes.PrivateAction(), 1);
+        Assert.assertFalse(isGenerated(invoker));
+        Assert.assertEquals(3, invoker.apply(2));
+    }
+
+    @Test
+    public void suppressedArityCheck() throws Exception {
+        SampleNodes.DynamicParams node = new SampleNodes.DynamicParams();
+        node.start();
+        Assert.assertEquals("dynamic", node.asyncResult().get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void wrongArityIsWarned() throws Exception {
+        String source = "package sample;\n"
+                + "import org.df4j.core.boundconnector.messagescalar.ConstInput;\n"
+                + "import org.df4j.core.tasknode.Action;\n"
+                + "import org.df4j.core.tasknode.AsyncAction;\n"
+                + "public class Wrong extends AsyncAction<Void> {\n"
+                + "    ConstInput<Integer> param = new ConstInput<>(this);\n"
+                + "    @Action\n"
+                + "    void act(Integer a, Integer b) {}\n"
+                + "}\n";
+        DiagnosticCollector<JavaFileObject> diagnostics = compile("sample.Wrong", source);
+        // parameters may be kept in arrays, so the count is only a hint
+        Assert.assertFalse(diagnostics.getDiagnostics().stream().anyMatch(d -> d.getKind() == Diagnostic.Kind.ERROR));
+        Diagnostic<? extends JavaFileObject> warning = diagnostics.getDiagnostics().stream()
+                .filter(d -> d.getKind() == Diagnostic.Kind.WARNING)
+                .filter(d -> d.getMessage(null).contains("has 2 parameters"))
+                .findFirst().orElse(null);
+        Assert.assertNotNull(warning);
+    }
+
+    private DiagnosticCollector<JavaFileObject> compile(String className, String source) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+        File core = new File(AsyncProc.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        fileManager.setLocation(StandardLocation.CLASS_PATH, Collections.singletonList(core));
+        File out = Files.createTempDirectory("df4j-apt").toFile();
+        fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(out));
+        fileManager.setLocation(StandardLocation.SOURCE_OUTPUT, Collections.singletonList(out));
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                Arrays.asList("-proc:only"), null, Collections.singletonList(file));
+        task.setProcessors(Collections.singletonList(new ActionProcessor()));
+        task.call();
+        return diagnostics;
+    }
+}
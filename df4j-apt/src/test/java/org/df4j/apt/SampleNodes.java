@@ -0,0 +1,60 @@
+package org.df4j.apt;
+
+import org.df4j.core.boundconnector.messagescalar.ConstInput;
+import org.df4j.core.tasknode.Action;
+import org.df4j.core.tasknode.messagescalar.AsyncSupplier;
+import org.df4j.core.util.invoker.FunctionInvoker;
+
+import java.util.function.Function;
+
+/**
+ * nodes compiled with {@link ActionProcessor}
+ */
+public class SampleNodes {
+
+    public static class Sum extends AsyncSupplier<Integer> {
+        final ConstInput<Integer> paramX = new ConstInput<>(this);
+        final ConstInput<Integer> paramY = new ConstInput<>(this);
+
+        @Action
+        protected int compute(int x, Integer y) {
+            return x + y;
+        }
+    }
+
+    /** inherits the action of its superclass */
+    static class NamedSum extends Sum {
+        String name = "sum";
+    }
+
+    /** takes action from a field */
+    static class WithField {
+        @Action
+        final FunctionInvoker<Integer, Integer> invoker;
+
+        WithField(Function<Integer, Integer> function) {
+            this.invoker = new FunctionInvoker<>(function);
+        }
+    }
+
+    /** private action cannot be called from generated code, and is found at runtime */
+    static class PrivateAction {
+        @Action
+        private Integer inc(Integer arg) {
+            return arg + 1;
+        }
+    }
+
+    /** the action gets its argument from a connector created out of field initializers */
+    @SuppressWarnings("action-arity")
+    static class DynamicParams extends AsyncSupplier<String> {
+        {
+            new ConstInput<String>(this).complete("dynamic");
+        }
+
+        @Action
+        String act(String arg) {
+            return arg;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.df4j.core.boundconnector.messagestream;
+
+import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
+import org.df4j.core.tasknode.AsyncProc;
+
+import java.util.function.Consumer;
+
+/**
+ * A Queue of tokens with fixed capacity.
+ * When subscribed to a {@link BoundedStreamOutput}, grants the publisher as many credits as there is free space,
+ * and returns a credit each time a token is consumed, so the queue never overflows.
+ *
+ * @param <T> type of tokens
+ */
+public class BoundedStreamInput<T> extends StreamInput<T> {
+    protected final int capacity;
+    protected CreditSubscription creditSubscription;
+
+    public BoundedStreamInput(AsyncProc actor, int capacity) {
+        super(actor, capacity);
+        if (capacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.capacity = capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of tokens in this connector
+     */
+    protected int tokenCount() {
+        return value == null ? 0 : queue.size() + 1;
+    }
+
+    @Override
+    public void onSubscribe(SimpleSubscription subscription) {
+        int free;
+        synchronized (this) {
+            super.onSubscribe(subscription);
+            if (!(subscription instanceof CreditSubscription) || this.subscription != subscription) {
+                return;
+            }
+            creditSubscription = (CreditSubscription) subscription;
+            free = capacity - tokenCount();
+        }
+        if (free > 0) {
+            creditSubscription.release(free);
+        }
+    }
+
+    @Override
+    public synchronized void post(T token) {
+        if (tokenCount() >= capacity) {
+            throw new IllegalStateException("no space for next token");
+        }
+        super.post(token);
+    }
+
+    @Override
+    public synchronized void postBatch(T[] items, int off, int len) {
+        if (tokenCount() + len > capacity) {
+            throw new IllegalStateException("no space for next tokens");
+        }
+        super.postBatch(items, off, len);
+    }
+
+    /**
+     * returns credits for all removed tokens at once
+     */
+    @Override
+    public int drainTo(Consumer<? super T> consumer, int max) {
+        int count;
+        CreditSubscription credit;
+        synchronized (this) {
+            count = super.drainTo(consumer, max);
+            credit = creditSubscription;
+        }
+        if (count > 0 && credit != null) {
+            credit.release(count);
+        }
+        return count;
+    }
+
+    @Override
+    public T next() {
+        T res;
+        CreditSubscription credit;
+        synchronized (this) {
+            boolean consumed = !pushback && value != null;
+            res = super.next();
+            credit = consumed ? creditSubscription : null;
+        }
+        if (credit != null) {
+            credit.release(1);
+        }
+        return res;
+    }
+}
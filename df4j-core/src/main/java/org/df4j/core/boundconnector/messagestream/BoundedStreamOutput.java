@@ -0,0 +1,207 @@
+package org.df4j.core.boundconnector.messagestream;
+
+import org.df4j.core.boundconnector.permitstream.Semafor;
+import org.df4j.core.tasknode.AsyncProc;
+import org.df4j.core.util.CopyOnWriteArray;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Output connector for bounded message streams.
+ * Each subscription is a {@link Semafor} pin of the parent node, counting credits released by the subscriber,
+ * and each posted message takes one credit from every subscription.
+ * So the parent node is blocked while any subscriber has no space for the next message,
+ * and should post at most one message per execution.
+ * <p>
+ * Subscribers must release credits, as {@link BoundedStreamInput} does,
+ * otherwise the parent node never runs.
+ *
+ * @param <M> type of messages
+ */
+public class BoundedStreamOutput<M> extends AsyncProc.Lock implements StreamPublisher<M>, StreamCollector<M> {
+    protected AsyncProc actor;
+    protected final CopyOnWriteArray<CreditSubscriptionImpl> subscriptions = new CopyOnWriteArray<>();
+
+    public BoundedStreamOutput(AsyncProc actor) {
+        actor.super(false);
+        this.actor = actor;
+    }
+
+    @Override
+    public <S extends StreamSubscriber<? super M>> S subscribe(S subscriber) {
+        CreditSubscriptionImpl newSubscription = new CreditSubscriptionImpl(subscriber);
+        subscriptions.add(newSubscription);
+        subscriber.onSubscribe(newSubscription);
+        return subscriber;
+    }
+
+    public synchronized void close() {
+        subscriptions.clear();
+        super.turnOff();
+    }
+
+    public boolean closed() {
+        return super.isBlocked();
+    }
+
+    public void forEachSubscription(Consumer<? super CreditSubscriptionImpl> operator) {
+        if (closed()) {
+            return; // completed already
+        }
+        Object[] subs = subscriptions.snapshot();
+        for (int k = 0; k < subs.length; k++) {
+            CreditSubscriptionImpl subscription = CopyOnWriteArray.get(subs, k);
+            operator.accept(subscription);
+        }
+    }
+
+    /**
+     * @param item message to send to all subscribers
+     * @throws IllegalStateException if some subscriber has no credit
+     */
+    @Override
+    public void post(M item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+        if (closed()) {
+            return;
+        }
+        Object[] subs = subscriptions.snapshot();
+        for (int k = 0; k < subs.length; k++) {
+            CreditSubscriptionImpl subscription = CopyOnWriteArray.get(subs, k);
+            subscription.post(item);
+        }
+    }
+
+    /**
+     * passes the messages to each subscriber as a single batch, taking credits for all of them at once
+     *
+     * @param items array of messages, not kept by subscribers
+     * @param off index of the first message
+     * @param len number of messages
+     * @throws IllegalStateException if some subscriber has not enough credit
+     */
+    public void post(M[] items, int off, int len) {
+        StreamInput.checkBatch(items, off, len);
+        if (closed() || len == 0) {
+            return;
+        }
+        Object[] subs = subscriptions.snapshot();
+        for (int k = 0; k < subs.length; k++) {
+            CreditSubscriptionImpl subscription = CopyOnWriteArray.get(subs, k);
+            subscription.postBatch(items, off, len);
+        }
+    }
+
+    /**
+     * passes the messages to each subscriber as a single batch
+     *
+     * @param items messages
+     * @param generator creates an array of the element type, as subscribers may take the batch
+     *                  as an array of a concrete type, e.g. {@code String[]::new}
+     * @throws IllegalStateException if some subscriber has not enough credit
+     */
+    public void postAll(Collection<? extends M> items, IntFunction<M[]> generator) {
+        M[] array = items.toArray(generator.apply(items.size()));
+        post(array, 0, array.length);
+    }
+
+    @Override
+    public boolean completeExceptionally(Throwable throwable) {
+        forEachSubscription((subscription) -> subscription.postFailure(throwable));
+        return false;
+    }
+
+    @Override
+    public void complete() {
+        forEachSubscription(CreditSubscriptionImpl::complete);
+    }
+
+    class CreditSubscriptionImpl extends Semafor implements CreditSubscription {
+        protected volatile StreamSubscriber<? super M> subscriber;
+        private volatile boolean closed = false;
+
+        public CreditSubscriptionImpl(StreamSubscriber<? super M> subscriber) {
+            super(BoundedStreamOutput.this.actor);
+            if (subscriber == null) {
+                throw new NullPointerException();
+            }
+            this.subscriber = subscriber;
+        }
+
+        public void post(M message) {
+            StreamSubscriber<? super M> subscriber = this.subscriber;
+            if (subscriber == null) {
+                throw new IllegalStateException("post to completed connector");
+            }
+            if (closed) {
+                return;
+            }
+            if (!tryAcquire(1)) {
+                throw new IllegalStateException("no credit for next message");
+            }
+            subscriber.post(message);
+        }
+
+        public void postBatch(M[] items, int off, int len) {
+            StreamSubscriber<? super M> subscriber = this.subscriber;
+            if (subscriber == null) {
+                throw new IllegalStateException("post to completed connector");
+            }
+            if (closed) {
+                return;
+            }
+            if (!tryAcquire(len)) {
+                throw new IllegalStateException("no credit for next messages");
+            }
+            subscriber.postBatch(items, off, len);
+        }
+
+        public void postFailure(Throwable throwable) {
+            if (subscriber == null) {
+                throw new IllegalStateException("completeExceptionally to completed connector");
+            }
+            subscriber.completeExceptionally(throwable);
+            cancel();
+        }
+
+        /**
+         * does nothing: credit is taken when a message is posted
+         */
+        @Override
+        public void purge() {
+        }
+
+        /**
+         * subscription closed by request of publisher
+         * unregistering not needed
+         */
+        public void complete() {
+            if (subscriber == null) {
+                return;
+            }
+            subscriber.complete();
+            subscriber = null;
+        }
+
+        /**
+         * subscription closed by request of subscriber
+         */
+        @Override
+        public boolean cancel() {
+            synchronized (BoundedStreamOutput.this) {
+                if (closed) {
+                    return false;
+                }
+                closed = true;
+                subscriptions.remove(this);
+            }
+            super.unRegister(); // and cannot be turned on
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,354 @@
+package org.df4j.core.boundconnector.messagestream;
+
+import org.df4j.core.tasknode.AsyncProc;
+
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Consumer;
+
+/**
+ * A Queue of tokens for many producers and single consumer.
+ * Unlike {@link StreamInput}, does not use locks: producers append tokens to a linked queue with atomic exchange
+ * of the tail reference, and the consumer relies on the serial execution of the parent node.
+ * So {@link #next()}, {@link #pushback()} and {@link #pushback(Object)} must be called from the node's action only.
+ * <p>
+ * The pin is controlled by the counter of pending tokens:
+ * the producer which increments it from zero turns the pin on,
+ * and the consumer which decrements it to zero turns the pin off and then checks the counter again.
+ * The end of stream is a special token, so it is delivered after all the tokens posted before {@link #complete()}.
+ * Producers register in a counter while they append, and {@link #complete()} sets the closed bit of that counter:
+ * the end of stream is appended when no producer is in flight, by {@link #complete()} or by the last producer,
+ * so no token can be linked after it.
+ *
+ * @param <T> type of tokens
+ */
+public class ConcurrentStreamInput<T> extends StreamInput<T> {
+    private static final Object CLOSE = new Object();
+
+    // field updaters are created for the raw class
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<ConcurrentStreamInput, Node> tailUpdater
+            = AtomicReferenceFieldUpdater.newUpdater(ConcurrentStreamInput.class, Node.class, "tail");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<ConcurrentStreamInput> sizeUpdater
+            = AtomicLongFieldUpdater.newUpdater(ConcurrentStreamInput.class, "pending");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<ConcurrentStreamInput> producersUpdater
+            = AtomicIntegerFieldUpdater.newUpdater(ConcurrentStreamInput.class, "producers");
+    /** bit of {@link #producers} set by {@link #complete()} */
+    private static final int CLOSED = Integer.MIN_VALUE;
+
+    /** last consumed node, accessed by the consumer only */
+    private Node head;
+    private volatile Node tail;
+    /** number of tokens in the queue, including the end of stream and the pushed back token */
+    private volatile long pending;
+    /** number of producers appending tokens, and the closed bit */
+    private volatile int producers;
+    /** set when the end of stream is appended */
+    private volatile int closing;
+
+    /* consumer side */
+    private T pushedBack;
+    private T last;
+    private boolean ended;
+
+    public ConcurrentStreamInput(AsyncProc actor) {
+        super(actor, (Queue<T>) null);
+        head = tail = new Node(null);
+    }
+
+    @Override
+    protected int size() {
+        long size = pending;
+        if (closing != 0 && !ended) {
+            size--;
+        }
+        return (int) Math.max(size, 0);
+    }
+
+    @Override
+    public void post(T token) {
+        if (token == null) {
+            throw new NullPointerException();
+        }
+        enter();
+        try {
+            if (exception != null) {
+                throw new IllegalStateException("token set already");
+            }
+            enqueue(token);
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * links all the tokens into a chain first, and then appends the chain with single atomic exchange
+     */
+    @Override
+    public void postBatch(T[] items, int off, int len) {
+        checkBatch(items, off, len);
+        enter();
+        try {
+            if (exception != null) {
+                throw new IllegalStateException("token set already");
+            }
+            if (len == 0) {
+                return;
+            }
+            Node first = new Node(items[off]);
+            Node last = first;
+            for (int k = off + 1; k < off + len; k++) {
+                Node node = new Node(items[k]);
+                last.next = node;
+                last = node;
+            }
+            Node prev = tailUpdater.getAndSet(this, last);
+            prev.next = first;
+            if (sizeUpdater.getAndAdd(this, len) == 0) {
+                turnOn();
+            }
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Signals the end of the stream. The consumer receives null after all the tokens posted before.
+     */
+    @Override
+    public void complete() {
+        for (;;) {
+            int state = producers;
+            if ((state & CLOSED) != 0) {
+                return;
+            }
+            if (producersUpdater.compareAndSet(this, state, state | CLOSED)) {
+                if (state == 0) {
+                    close();
+                } // else the last producer in flight appends the end of stream
+                return;
+            }
+        }
+    }
+
+    /**
+     * registers a producer in flight
+     *
+     * @throws IllegalStateException if the stream is completed
+     */
+    private void enter() {
+        for (;;) {
+            int state = producers;
+            if ((state & CLOSED) != 0) {
+                throw new IllegalStateException("closed already");
+            }
+            if (producersUpdater.compareAndSet(this, state, state + 1)) {
+                return;
+            }
+        }
+    }
+
+    private void exit() {
+        if (producersUpdater.decrementAndGet(this) == CLOSED) {
+            close();
+        }
+    }
+
+    private void close() {
+        closing = 1;
+        enqueue(CLOSE);
+    }
+
+    private void enqueue(Object item) {
+        Node node = new Node(item);
+        Node prev = tailUpdater.getAndSet(this, node);
+        prev.next = node;
+        acquire();
+    }
+
+    private void acquire() {
+        if (sizeUpdater.getAndIncrement(this) == 0) {
+            turnOn();
+        }
+    }
+
+    private void release() {
+        release(1);
+    }
+
+    private void release(long delta) {
+        if (sizeUpdater.addAndGet(this, -delta) == 0) {
+            turnOff();
+            if (pending > 0) { // a producer came in between
+                turnOn();
+            }
+        }
+    }
+
+    private Node peekNode() {
+        return head.next;
+    }
+
+    private Object poll() {
+        if (pending == 0) {
+            return null;
+        }
+        Node next = awaitNext();
+        head = next;
+        Object item = next.item;
+        next.item = null;
+        return item;
+    }
+
+    private Node awaitNext() {
+        Node next;
+        while ((next = head.next) == null) {
+            // a producer has taken its place in the queue, but not linked it yet
+            Thread.yield();
+        }
+        return next;
+    }
+
+    /**
+     * Removes up to max tokens and passes them to the consumer, updating the counter of tokens once.
+     * The end of stream is not passed to the consumer, and remains in the queue.
+     *
+     * @param consumer receiver of tokens
+     * @param max max number of tokens to remove
+     * @return number of removed tokens
+     */
+    @Override
+    public int drainTo(Consumer<? super T> consumer, int max) {
+        int count = 0;
+        try {
+            if (max > 0 && pushedBack != null) {
+                T token = pushedBack;
+                pushedBack = null;
+                count++;
+                consumer.accept(token);
+            }
+            long queued = pending - count;
+            for (long k = 0; k < queued && count < max; k++) {
+                Node next = awaitNext();
+                if (next.item == CLOSE) {
+                    break;
+                }
+                head = next;
+                T token = token(next.item);
+                next.item = null;
+                count++;
+                consumer.accept(token);
+            }
+        } finally {
+            if (count > 0) {
+                release(count);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public T next() {
+        Object item;
+        if (pushedBack != null) {
+            item = pushedBack;
+            pushedBack = null;
+        } else {
+            item = poll();
+            if (item == null) {
+                return null;
+            }
+        }
+        if (item == CLOSE) {
+            ended = true;
+            item = null;
+        }
+        last = token(item);
+        release();
+        return last;
+    }
+
+    /**
+     * the token returned by the last call to {@link #next()} will be returned again
+     */
+    @Override
+    protected void pushback() {
+        if (last == null) {
+            throw new IllegalStateException();
+        }
+        pushback(last);
+    }
+
+    /**
+     * @param value token to be returned by the next call to {@link #next()}, before tokens in the queue
+     */
+    @Override
+    protected void pushback(T value) {
+        if (value == null) {
+            throw new IllegalArgumentException();
+        }
+        if (pushedBack != null) {
+            throw new IllegalStateException();
+        }
+        pushedBack = value;
+        acquire();
+    }
+
+    @Override
+    public T current() {
+        if (exception != null) {
+            throw new IllegalStateException(exception);
+        }
+        return getValue();
+    }
+
+    @Override
+    public T getValue() {
+        if (pushedBack != null) {
+            return pushedBack;
+        }
+        Node node = peekNode();
+        if (node == null || node.item == CLOSE) {
+            return null;
+        }
+        return token(node.item);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return getValue() != null;
+    }
+
+    @Override
+    public boolean isClosed() {
+        if (closing == 0 || pushedBack != null) {
+            return false;
+        }
+        if (ended) {
+            return true;
+        }
+        Node node = peekNode();
+        return node != null && node.item == CLOSE;
+    }
+
+    /**
+     * @return the item of a node, which is a token unless it is {@link #CLOSE}
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T token(Object item) {
+        return (T) item;
+    }
+
+    static final class Node {
+        Object item;
+        volatile Node next;
+
+        Node(Object item) {
+            this.item = item;
+        }
+    }
+}
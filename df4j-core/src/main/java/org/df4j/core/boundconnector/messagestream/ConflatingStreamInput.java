@@ -0,0 +1,74 @@
+package org.df4j.core.boundconnector.messagestream;
+
+import org.df4j.core.tasknode.AsyncProc;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A Queue of tokens which keeps at most one token per key: a token replaces the pending token
+ * with the same key in place, and the replaced token is never delivered.
+ * Keys are delivered in the order their first pending token arrived.
+ * <p>
+ * Suits streams of updates, like prices or states, where only the latest value per key matters.
+ * The memory used is bounded by the number of distinct keys rather than by the rate of tokens,
+ * and a slow consumer skips stale updates instead of processing them.
+ *
+ * @param <K> type of keys
+ * @param <V> type of tokens
+ */
+public class ConflatingStreamInput<K, V> extends OrderedStreamInput<V> {
+    protected final Function<? super V, ? extends K> keyFunction;
+    private final LinkedHashMap<K, V> pending = new LinkedHashMap<>();
+    private long conflatedCount = 0;
+
+    /**
+     * @param actor parent node
+     * @param keyFunction extracts the key of a token
+     */
+    public ConflatingStreamInput(AsyncProc actor, Function<? super V, ? extends K> keyFunction) {
+        super(actor);
+        if (keyFunction == null) {
+            throw new NullPointerException();
+        }
+        this.keyFunction = keyFunction;
+    }
+
+    /**
+     * @return number of tokens replaced by a later token with the same key
+     */
+    public synchronized long getConflatedCount() {
+        return conflatedCount;
+    }
+
+    @Override
+    protected void offer(V token) {
+        if (pending.put(keyFunction.apply(token), token) != null) {
+            conflatedCount++;
+        }
+    }
+
+    @Override
+    protected V poll() {
+        Iterator<Map.Entry<K, V>> it = pending.entrySet().iterator();
+        if (!it.hasNext()) {
+            return null;
+        }
+        V res = it.next().getValue();
+        it.remove();
+        return res;
+    }
+
+    @Override
+    protected V peek() {
+        Iterator<V> it = pending.values().iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    @Override
+    protected int queueSize() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,17 @@
+package org.df4j.core.boundconnector.messagestream;
+
+import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
+
+/**
+ * subscription to a bounded message stream.
+ * The publisher may post no more messages than the subscriber has released.
+ */
+public interface CreditSubscription extends SimpleSubscription {
+
+    /**
+     * allows the publisher to post more messages
+     *
+     * @param delta number of messages the subscriber is ready to accept
+     */
+    void release(long delta);
+}
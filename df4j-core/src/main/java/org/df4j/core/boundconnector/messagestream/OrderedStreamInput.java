@@ -0,0 +1,201 @@
+package org.df4j.core.boundconnector.messagestream;
+
+import org.df4j.core.tasknode.AsyncProc;
+
+import java.util.Queue;
+import java.util.function.Consumer;
+
+/**
+ * Base of stream inputs which keep pending tokens in their own storage, and deliver them in an order
+ * other than FIFO. Subclasses define the storage with {@link #offer(Object)}, {@link #poll()},
+ * {@link #peek()} and {@link #queueSize()}; this class handles the pin, pushback and the end of stream.
+ * All methods are called under the lock of this input.
+ *
+ * @param <T> type of tokens
+ */
+public abstract class OrderedStreamInput<T> extends StreamInput<T> {
+    private T pushedBack;
+    private T last;
+
+    protected OrderedStreamInput(AsyncProc actor) {
+        super(actor, (Queue<T>) null);
+    }
+
+    /**
+     * @param token token to store
+     */
+    protected abstract void offer(T token);
+
+    /**
+     * @return the next stored token, removed from the storage, or null if there is none
+     */
+    protected abstract T poll();
+
+    /**
+     * @return the next stored token, or null if there is none
+     */
+    protected abstract T peek();
+
+    /**
+     * @return number of stored tokens
+     */
+    protected abstract int queueSize();
+
+    @Override
+    protected synchronized int size() {
+        return queueSize() + (pushedBack == null ? 0 : 1);
+    }
+
+    protected void checkOpen() {
+        if (closeRequested) {
+            throw new IllegalStateException("closed already");
+        }
+        if (exception != null) {
+            throw new IllegalStateException("token set already");
+        }
+    }
+
+    @Override
+    public synchronized void post(T token) {
+        if (token == null) {
+            throw new NullPointerException();
+        }
+        checkOpen();
+        boolean wasEmpty = size() == 0;
+        offer(token);
+        if (wasEmpty) {
+            turnOn();
+        }
+    }
+
+    @Override
+    public synchronized void postBatch(T[] items, int off, int len) {
+        checkBatch(items, off, len);
+        checkOpen();
+        if (len == 0) {
+            return;
+        }
+        boolean wasEmpty = size() == 0;
+        for (int k = off; k < off + len; k++) {
+            offer(items[k]);
+        }
+        if (wasEmpty) {
+            turnOn();
+        }
+    }
+
+    @Override
+    public synchronized void complete() {
+        if (closeRequested) {
+            return;
+        }
+        closeRequested = true;
+        if (size() == 0) {
+            turnOn();
+        }
+    }
+
+    private T take() {
+        if (pushedBack != null) {
+            T res = pushedBack;
+            pushedBack = null;
+            return res;
+        }
+        return poll();
+    }
+
+    private void afterConsume() {
+        if (size() == 0 && !closeRequested) {
+            turnOff();
+        }
+    }
+
+    @Override
+    public synchronized T next() {
+        T res = take();
+        if (res == null) {
+            if (closeRequested) {
+                turnOff(); // end of stream is consumed
+            }
+            last = null;
+            return null;
+        }
+        afterConsume();
+        last = res;
+        return res;
+    }
+
+    @Override
+    public synchronized int drainTo(Consumer<? super T> consumer, int max) {
+        int count = 0;
+        try {
+            while (count < max) {
+                T token = take();
+                if (token == null) {
+                    break;
+                }
+                count++;
+                consumer.accept(token);
+            }
+        } finally {
+            afterConsume();
+        }
+        return count;
+    }
+
+    /**
+     * the token returned by the last call to {@link #next()} will be returned again
+     */
+    @Override
+    protected synchronized void pushback() {
+        if (last == null) {
+            throw new IllegalStateException();
+        }
+        pushback(last);
+    }
+
+    /**
+     * @param value token to be returned by the next call to {@link #next()}, before stored tokens.
+     *              It is not passed to {@link #offer(Object)}.
+     */
+    @Override
+    protected synchronized void pushback(T value) {
+        if (value == null) {
+            throw new IllegalArgumentException();
+        }
+        if (pushedBack != null) {
+            throw new IllegalStateException();
+        }
+        boolean wasEmpty = size() == 0;
+        pushedBack = value;
+        if (wasEmpty) {
+            turnOn();
+        }
+    }
+
+    @Override
+    public synchronized T current() {
+        if (exception != null) {
+            throw new IllegalStateException(exception);
+        }
+        return getValue();
+    }
+
+    @Override
+    public synchronized T getValue() {
+        if (pushedBack != null) {
+            return pushedBack;
+        }
+        return peek();
+    }
+
+    @Override
+    public synchronized boolean hasNext() {
+        return size() > 0;
+    }
+
+    @Override
+    public synchronized boolean isClosed() {
+        return closeRequested && size() == 0;
+    }
+}
@@ -0,0 +1,165 @@
+package org.df4j.core.boundconnector.messagestream;
+
+import org.df4j.core.tasknode.AsyncProc;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Predicate;
+
+/**
+ * A Queue of tokens with two lanes: control tokens are delivered first, in FIFO order,
+ * and other tokens are delivered in the order of the comparator.
+ * Tokens which are equal by the comparator are delivered in FIFO order.
+ * <p>
+ * Control tokens are selected by a predicate given at construction, or posted with {@link #postControl(Object)}.
+ * So cancellations and health checks overtake the backlog of ordinary messages.
+ * Ordinary tokens are kept in a binary heap in arrays, which grow when full,
+ * with arrival numbers to keep the order stable; no objects are allocated per token.
+ *
+ * @param <T> type of tokens
+ */
+public class PriorityStreamInput<T> extends OrderedStreamInput<T> {
+    protected final Comparator<? super T> comparator;
+    protected final Predicate<? super T> isControl;
+    private final ArrayDeque<T> controlLane = new ArrayDeque<>();
+    private Object[] heap;
+    private long[] arrivals;
+    private int heapSize = 0;
+    private long arrival = 0;
+
+    /**
+     * @param actor parent node
+     * @param comparator order of ordinary tokens
+     * @param isControl selects control tokens; may be null
+     */
+    public PriorityStreamInput(AsyncProc actor, Comparator<? super T> comparator, Predicate<? super T> isControl) {
+        super(actor);
+        if (comparator == null) {
+            throw new NullPointerException();
+        }
+        this.comparator = comparator;
+        this.isControl = isControl;
+        heap = new Object[16];
+        arrivals = new long[16];
+    }
+
+    public PriorityStreamInput(AsyncProc actor, Comparator<? super T> comparator) {
+        this(actor, comparator, null);
+    }
+
+    @Override
+    protected int queueSize() {
+        return controlLane.size() + heapSize;
+    }
+
+    @Override
+    protected void offer(T token) {
+        if (isControl != null && isControl.test(token)) {
+            controlLane.add(token);
+        } else {
+            push(token);
+        }
+    }
+
+    /**
+     * posts a token to the control lane, before all ordinary tokens
+     *
+     * @param token control token
+     */
+    public synchronized void postControl(T token) {
+        if (token == null) {
+            throw new NullPointerException();
+        }
+        checkOpen();
+        boolean wasEmpty = size() == 0;
+        controlLane.add(token);
+        if (wasEmpty) {
+            turnOn();
+        }
+    }
+
+    @Override
+    protected T poll() {
+        T res = controlLane.poll();
+        if (res != null) {
+            return res;
+        }
+        if (heapSize == 0) {
+            return null;
+        }
+        return pollHeap();
+    }
+
+    @Override
+    protected T peek() {
+        T res = controlLane.peek();
+        if (res != null) {
+            return res;
+        }
+        return heapSize == 0 ? null : element(0);
+    }
+
+    /* ------------- binary heap ordered by comparator, then by arrival */
+
+    @SuppressWarnings("unchecked") // the heap holds only tokens
+    private T element(int index) {
+        return (T) heap[index];
+    }
+
+    private boolean less(int i, int j) {
+        int c = comparator.compare(element(i), element(j));
+        return c < 0 || c == 0 && arrivals[i] < arrivals[j];
+    }
+
+    private void swap(int i, int j) {
+        Object item = heap[i];
+        heap[i] = heap[j];
+        heap[j] = item;
+        long a = arrivals[i];
+        arrivals[i] = arrivals[j];
+        arrivals[j] = a;
+    }
+
+    private void push(T token) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heapSize * 2);
+            arrivals = Arrays.copyOf(arrivals, heapSize * 2);
+        }
+        int k = heapSize++;
+        heap[k] = token;
+        arrivals[k] = arrival++;
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            if (!less(k, parent)) {
+                break;
+            }
+            swap(k, parent);
+            k = parent;
+        }
+    }
+
+    private T pollHeap() {
+        T res = element(0);
+        int n = --heapSize;
+        heap[0] = heap[n];
+        arrivals[0] = arrivals[n];
+        heap[n] = null;
+        int k = 0;
+        for (;;) {
+            int child = 2 * k + 1;
+            if (child >= n) {
+                break;
+            }
+            if (child + 1 < n && less(child + 1, child)) {
+                child++;
+            }
+            if (!less(child, k)) {
+                break;
+            }
+            swap(k, child);
+            k = child;
+        }
+        return res;
+    }
+}
@@ -6,6 +6,7 @@ import org.df4j.core.tasknode.AsyncProc;
 import java.util.ArrayDeque;
 import java.util.Queue;
 import java.util.Iterator;
+import java.util.function.Consumer;
 
 /**
  * A Queue of tokens
@@ -26,6 +27,14 @@ public class StreamInput<T> extends ScalarInput<T> implements StreamSubscriber<T
         this.queue = new ArrayDeque<>(capacity);
     }
 
+    /**
+     * The earliest pending token is kept out of the queue, so a queue which reorders tokens,
+     * like {@link java.util.PriorityQueue}, cannot let later tokens overtake it.
+     * Use {@link PriorityStreamInput} to deliver tokens in priority order.
+     *
+     * @param actor parent node
+     * @param queue FIFO queue for pending tokens
+     */
     public StreamInput(AsyncProc actor, Queue<T> queue) {
         super(actor);
         this.queue = queue;
@@ -54,6 +63,70 @@ public class StreamInput<T> extends ScalarInput<T> implements StreamSubscriber<T
         }
     }
 
+    static void checkBatch(Object[] items, int off, int len) {
+        if (off < 0 || len < 0 || off > items.length - len) {
+            throw new IndexOutOfBoundsException();
+        }
+        for (int k = off; k < off + len; k++) {
+            if (items[k] == null) {
+                throw new NullPointerException();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void postBatch(T[] items, int off, int len) {
+        checkBatch(items, off, len);
+        if (closeRequested) {
+            throw new IllegalStateException("closed already");
+        }
+        if (exception != null) {
+            throw new IllegalStateException("token set already");
+        }
+        if (len == 0) {
+            return;
+        }
+        int k = off;
+        boolean wasEmpty = (value == null);
+        if (wasEmpty) {
+            value = items[k++];
+        }
+        for (; k < off + len; k++) {
+            queue.add(items[k]);
+        }
+        if (wasEmpty) {
+            turnOn();
+        }
+    }
+
+    /**
+     * Removes up to max tokens and passes them to the consumer, under a single lock.
+     * Called from the action of the parent node, instead of {@link #next()}.
+     * The end of stream is not passed to the consumer: when the stream is closed and empty,
+     * the pin remains on, and {@link #next()} returns null.
+     *
+     * @param consumer receiver of tokens, should return quickly
+     * @param max max number of tokens to remove
+     * @return number of removed tokens
+     */
+    public synchronized int drainTo(Consumer<? super T> consumer, int max) {
+        pushback = false;
+        int count = 0;
+        try {
+            while (count < max && value != null) {
+                T token = value;
+                value = queue.poll();
+                count++;
+                consumer.accept(token);
+            }
+        } finally {
+            if (value == null && !closeRequested) {
+                turnOff();
+            }
+        }
+        return count;
+    }
+
     /**
      * Signals the end of the stream. Turns this pin on. Removed value is
      * null (null cannot be send with Subscriber.add(message)).
@@ -2,10 +2,11 @@ package org.df4j.core.boundconnector.messagestream;
 
 import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
 import org.df4j.core.tasknode.AsyncProc;
+import org.df4j.core.util.CopyOnWriteArray;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Collection;
 import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
 /**
  * serves multiple subscribers
@@ -14,7 +15,7 @@ import java.util.function.Consumer;
  */
 public class StreamOutput<M> extends AsyncProc.Lock implements StreamPublisher<M>, StreamCollector<M> {
     protected AsyncProc actor;
-    protected Set<SimpleSubscriptionImpl> subscriptions = new HashSet<>();
+    protected final CopyOnWriteArray<SimpleSubscriptionImpl> subscriptions = new CopyOnWriteArray<>();
 
     public StreamOutput(AsyncProc actor) {
         actor.super(false);
@@ -30,11 +31,11 @@ public class StreamOutput<M> extends AsyncProc.Lock implements StreamPublisher<M
     }
 
     public synchronized void close() {
-        subscriptions = null;
+        subscriptions.clear();
         super.turnOff();
     }
 
-    public synchronized boolean closed() {
+    public boolean closed() {
         return super.isBlocked();
     }
 
@@ -42,15 +43,61 @@ public class StreamOutput<M> extends AsyncProc.Lock implements StreamPublisher<M
         if (closed()) {
             return; // completed already
         }
-        subscriptions.forEach(operator);
+        Object[] subs = subscriptions.snapshot();
+        for (int k = 0; k < subs.length; k++) {
+            SimpleSubscriptionImpl subscription = CopyOnWriteArray.get(subs, k);
+            operator.accept(subscription);
+        }
     }
 
+    /**
+     * iterates over a snapshot of subscriptions, so a subscriber which cancels concurrently
+     * may receive this item
+     */
     @Override
     public void post(M item) {
         if (item == null) {
             throw new NullPointerException();
         }
-        forEachSubscription((subscription) -> subscription.post(item));
+        if (closed()) {
+            return;
+        }
+        Object[] subs = subscriptions.snapshot();
+        for (int k = 0; k < subs.length; k++) {
+            SimpleSubscriptionImpl subscription = CopyOnWriteArray.get(subs, k);
+            subscription.post(item);
+        }
+    }
+
+    /**
+     * passes the messages to each subscriber as a single batch
+     *
+     * @param items array of messages, not kept by subscribers
+     * @param off index of the first message
+     * @param len number of messages
+     */
+    public void post(M[] items, int off, int len) {
+        StreamInput.checkBatch(items, off, len);
+        if (closed() || len == 0) {
+            return;
+        }
+        Object[] subs = subscriptions.snapshot();
+        for (int k = 0; k < subs.length; k++) {
+            SimpleSubscriptionImpl subscription = CopyOnWriteArray.get(subs, k);
+            subscription.postBatch(items, off, len);
+        }
+    }
+
+    /**
+     * passes the messages to each subscriber as a single batch
+     *
+     * @param items messages
+     * @param generator creates an array of the element type, as subscribers may take the batch
+     *                  as an array of a concrete type, e.g. {@code String[]::new}
+     */
+    public void postAll(Collection<? extends M> items, IntFunction<M[]> generator) {
+        M[] array = items.toArray(generator.apply(items.size()));
+        post(array, 0, array.length);
     }
 
     @Override
@@ -65,7 +112,7 @@ public class StreamOutput<M> extends AsyncProc.Lock implements StreamPublisher<M
     }
 
     class SimpleSubscriptionImpl implements SimpleSubscription {
-        protected StreamSubscriber<? super M> subscriber;
+        protected volatile StreamSubscriber<? super M> subscriber;
         private volatile boolean closed = false;
 
         public SimpleSubscriptionImpl(StreamSubscriber<? super M> subscriber) {
@@ -73,7 +120,17 @@ public class StreamOutput<M> extends AsyncProc.Lock implements StreamPublisher<M
         }
 
         public void post(M message) {
-            subscriber.post(message);
+            StreamSubscriber<? super M> subscriber = this.subscriber;
+            if (subscriber != null) {
+                subscriber.post(message);
+            }
+        }
+
+        public void postBatch(M[] items, int off, int len) {
+            StreamSubscriber<? super M> subscriber = this.subscriber;
+            if (subscriber != null) {
+                subscriber.postBatch(items, off, len);
+            }
         }
 
         public void postFailure(Throwable throwable) {
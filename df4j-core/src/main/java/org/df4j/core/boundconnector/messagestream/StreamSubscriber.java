@@ -6,4 +6,19 @@ public interface StreamSubscriber<T> extends StreamCollector<T> {
 
     void onSubscribe(SimpleSubscription subscription);
 
+    /**
+     * posts several messages at once.
+     * Implementations should take locks and change pin state once per batch.
+     * The array belongs to the caller, and should not be kept after return.
+     *
+     * @param items array of messages
+     * @param off index of the first message
+     * @param len number of messages
+     */
+    default void postBatch(T[] items, int off, int len) {
+        for (int k = off; k < off + len; k++) {
+            post(items[k]);
+        }
+    }
+
 }
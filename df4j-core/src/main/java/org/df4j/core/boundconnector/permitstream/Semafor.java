@@ -3,14 +3,24 @@ package org.df4j.core.boundconnector.permitstream;
 import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
 import org.df4j.core.tasknode.AsyncProc;
 
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
 /**
  * Counting semaphore
  * holds token counter without data.
  * counter can be negative.
+ * <p>
+ * The counter is changed with atomic operations, without locks.
+ * The thread which moves the counter across zero sets the pin according to the sign of the counter,
+ * and then checks the counter again: if another thread moved it back meanwhile, the pin is set once more.
+ * So the last pin transition always agrees with the final value of the counter.
  */
 public class Semafor extends AsyncProc.Lock implements PermitSubscriber {
+    private static final AtomicLongFieldUpdater<Semafor> countUpdater
+            = AtomicLongFieldUpdater.newUpdater(Semafor.class, "count");
+
     protected final AsyncProc actor;
-    private long count = 0;
+    private volatile long count = 0;
     protected SimpleSubscription subscription;
 
     public Semafor(AsyncProc actor, int count) {
@@ -29,14 +39,13 @@ public class Semafor extends AsyncProc.Lock implements PermitSubscriber {
 
     /** increments resource counter by delta */
     @Override
-    public synchronized void release(long delta) {
+    public void release(long delta) {
         if (delta < 0) {
             throw new IllegalArgumentException("resource counter delta must be >= 0");
         }
-        long prev = count;
-        count+= delta;
-        if (prev <= 0 && count > 0 ) {
-            turnOn();
+        long prev = countUpdater.getAndAdd(this, delta);
+        if (prev <= 0 && prev + delta > 0) {
+            adjustPin();
         }
     }
 
@@ -49,24 +58,63 @@ public class Semafor extends AsyncProc.Lock implements PermitSubscriber {
      *
      * @param delta number of permissions to aquire
      */
-    protected synchronized void acquire(long delta) {
+    protected void acquire(long delta) {
         if (delta <= 0) {
             throw  new IllegalArgumentException("resource counter delta must be > 0");
         }
-        long prev = count;
-        count -= delta;
-        if (prev > 0 && count <= 0 ) {
-            turnOff();
+        long prev = countUpdater.getAndAdd(this, -delta);
+        if (prev > 0 && prev - delta <= 0) {
+            adjustPin();
         }
     }
 
-    public synchronized void drainPermits() {
-        count = 0;
-        turnOff();
+    /** decrements resource counter by delta, if it has at least delta permissions
+     *
+     * @param delta number of permissions to aquire
+     * @return false if there were not enough permissions, and the counter is not changed
+     */
+    protected boolean tryAcquire(long delta) {
+        if (delta <= 0) {
+            throw  new IllegalArgumentException("resource counter delta must be > 0");
+        }
+        for (;;) {
+            long prev = count;
+            if (prev < delta) {
+                return false;
+            }
+            if (countUpdater.compareAndSet(this, prev, prev - delta)) {
+                if (prev == delta) {
+                    adjustPin();
+                }
+                return true;
+            }
+        }
+    }
+
+    public void drainPermits() {
+        countUpdater.set(this, 0);
+        adjustPin();
+    }
+
+    /**
+     * sets the pin according to the counter, until they agree
+     */
+    private void adjustPin() {
+        for (;;) {
+            boolean on = count > 0;
+            if (on) {
+                turnOn();
+            } else {
+                turnOff();
+            }
+            if ((count > 0) == on) {
+                return;
+            }
+        }
     }
 
     @Override
-    public synchronized void purge() {
+    public void purge() {
         acquire(1);
     }
 }
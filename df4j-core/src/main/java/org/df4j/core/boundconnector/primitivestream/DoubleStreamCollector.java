@@ -0,0 +1,16 @@
+package org.df4j.core.boundconnector.primitivestream;
+
+/**
+ * inlet for a stream of double values
+ */
+public interface DoubleStreamCollector {
+
+    void post(double value);
+
+    /** closes the stream */
+    void complete();
+
+    default boolean completeExceptionally(Throwable ex) {
+        return false;
+    }
+}
@@ -0,0 +1,7 @@
+package org.df4j.core.boundconnector.primitivestream;
+
+public interface DoubleStreamPublisher {
+
+    <S extends DoubleStreamSubscriber> S subscribe(S subscriber);
+
+}
@@ -0,0 +1,9 @@
+package org.df4j.core.boundconnector.primitivestream;
+
+import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
+
+public interface DoubleStreamSubscriber extends DoubleStreamCollector {
+
+    void onSubscribe(SimpleSubscription subscription);
+
+}
@@ -0,0 +1,16 @@
+package org.df4j.core.boundconnector.primitivestream;
+
+/**
+ * inlet for a stream of int values
+ */
+public interface IntStreamCollector {
+
+    void post(int value);
+
+    /** closes the stream */
+    void complete();
+
+    default boolean completeExceptionally(Throwable ex) {
+        return false;
+    }
+}
@@ -0,0 +1,7 @@
+package org.df4j.core.boundconnector.primitivestream;
+
+public interface IntStreamPublisher {
+
+    <S extends IntStreamSubscriber> S subscribe(S subscriber);
+
+}
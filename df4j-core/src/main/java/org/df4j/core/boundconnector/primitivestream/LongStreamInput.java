@@ -0,0 +1,153 @@
+package org.df4j.core.boundconnector.primitivestream;
+
+import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
+import org.df4j.core.tasknode.AsyncProc;
+
+/**
+ * A Queue of long values, kept in a ring array which grows when full.
+ * <p>
+ * The pin is on when there are values in the queue, or the stream is completed.
+ * The consumer checks {@link #isClosed()} before taking the next value with {@link #nextLong()}.
+ */
+public class LongStreamInput extends AsyncProc.AsyncParam<Long> implements LongStreamSubscriber {
+    protected SimpleSubscription subscription;
+    protected long[] buffer;
+    protected int head = 0;
+    protected int count = 0;
+    protected boolean closeRequested = false;
+    protected Throwable exception;
+
+    public LongStreamInput(AsyncProc actor, int capacity) {
+        actor.super();
+        if (capacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+        int length = 2;
+        while (length < capacity) {
+            length <<= 1;
+        }
+        buffer = new long[length];
+    }
+
+    public LongStreamInput(AsyncProc actor) {
+        this(actor, 16);
+    }
+
+    @Override
+    public synchronized void onSubscribe(SimpleSubscription subscription) {
+        if (closeRequested) {
+            subscription.cancel();
+        } else {
+            this.subscription = subscription;
+        }
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    @Override
+    public synchronized void post(long value) {
+        if (closeRequested) {
+            throw new IllegalStateException("closed already");
+        }
+        if (count == buffer.length) {
+            grow();
+        }
+        buffer[(head + count) & (buffer.length - 1)] = value;
+        count++;
+        if (count == 1) {
+            turnOn();
+        }
+    }
+
+    private void grow() {
+        long[] newBuffer = new long[buffer.length * 2];
+        int first = buffer.length - head;
+        System.arraycopy(buffer, head, newBuffer, 0, first);
+        System.arraycopy(buffer, 0, newBuffer, first, head);
+        buffer = newBuffer;
+        head = 0;
+    }
+
+    /**
+     * Signals the end of the stream. Turns this pin on.
+     */
+    @Override
+    public synchronized void complete() {
+        if (closeRequested) {
+            return;
+        }
+        closeRequested = true;
+        if (count == 0) {
+            turnOn();
+        }
+    }
+
+    @Override
+    public synchronized boolean completeExceptionally(Throwable ex) {
+        if (closeRequested) {
+            return false;
+        }
+        exception = ex;
+        complete();
+        return true;
+    }
+
+    public Throwable getException() {
+        return exception;
+    }
+
+    public synchronized boolean hasNext() {
+        return count > 0;
+    }
+
+    /**
+     * @return true if the stream is completed and all values are consumed
+     */
+    public synchronized boolean isClosed() {
+        return closeRequested && count == 0;
+    }
+
+    /**
+     * removes and returns the next value
+     *
+     * @return the next value
+     * @throws IllegalStateException if there are no values
+     */
+    public synchronized long nextLong() {
+        if (count == 0) {
+            throw new IllegalStateException("no values");
+        }
+        long res = buffer[head];
+        head = (head + 1) & (buffer.length - 1);
+        count--;
+        if (count == 0 && !closeRequested) {
+            turnOff();
+        }
+        return res;
+    }
+
+    /**
+     * boxed access, for the actions called by reflection
+     *
+     * @return next value, or null if the stream is closed
+     */
+    @Override
+    public synchronized Long next() {
+        if (count == 0) {
+            turnOff();
+            return null;
+        }
+        return nextLong();
+    }
+
+    public synchronized boolean cancel() {
+        if (subscription == null) {
+            return false;
+        }
+        SimpleSubscription subscription = this.subscription;
+        this.subscription = null;
+        return subscription.cancel();
+    }
+}
@@ -0,0 +1,85 @@
+package org.df4j.core.boundconnector.primitivestream;
+
+import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
+import org.df4j.core.tasknode.AsyncProc;
+import org.df4j.core.util.CopyOnWriteArray;
+
+/**
+ * serves multiple subscribers of a stream of long values
+ */
+public class LongStreamOutput extends AsyncProc.Lock implements LongStreamPublisher, LongStreamCollector {
+    protected AsyncProc actor;
+    protected final CopyOnWriteArray<Subscription> subscriptions = new CopyOnWriteArray<>();
+
+    public LongStreamOutput(AsyncProc actor) {
+        actor.super(false);
+        this.actor = actor;
+    }
+
+    @Override
+    public <S extends LongStreamSubscriber> S subscribe(S subscriber) {
+        Subscription newSubscription = new Subscription(subscriber);
+        subscriptions.add(newSubscription);
+        subscriber.onSubscribe(newSubscription);
+        return subscriber;
+    }
+
+    public synchronized void close() {
+        subscriptions.clear();
+        super.turnOff();
+    }
+
+    public boolean closed() {
+        return super.isBlocked();
+    }
+
+    @Override
+    public void post(long value) {
+        if (closed()) {
+            return;
+        }
+        Object[] subs = subscriptions.snapshot();
+        for (int k = 0; k < subs.length; k++) {
+            ((Subscription) subs[k]).subscriber.post(value);
+        }
+    }
+
+    @Override
+    public synchronized boolean completeExceptionally(Throwable throwable) {
+        if (closed()) {
+            return false;
+        }
+        Object[] subs = subscriptions.snapshot();
+        for (int k = 0; k < subs.length; k++) {
+            ((Subscription) subs[k]).subscriber.completeExceptionally(throwable);
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void complete() {
+        if (closed()) {
+            return;
+        }
+        Object[] subs = subscriptions.snapshot();
+        for (int k = 0; k < subs.length; k++) {
+            ((Subscription) subs[k]).subscriber.complete();
+        }
+    }
+
+    class Subscription implements SimpleSubscription {
+        final LongStreamSubscriber subscriber;
+
+        Subscription(LongStreamSubscriber subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        /**
+         * subscription closed by request of subscriber
+         */
+        @Override
+        public boolean cancel() {
+            return subscriptions.remove(this);
+        }
+    }
+}
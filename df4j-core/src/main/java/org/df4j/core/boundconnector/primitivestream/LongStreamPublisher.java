@@ -0,0 +1,7 @@
+package org.df4j.core.boundconnector.primitivestream;
+
+public interface LongStreamPublisher {
+
+    <S extends LongStreamSubscriber> S subscribe(S subscriber);
+
+}
@@ -0,0 +1,6 @@
+/**
+ * This package contains connectors for unbounded streams of primitive values: int, long and double.
+ * They follow the protocol of {@link org.df4j.core.boundconnector.messagestream},
+ * but keep values in primitive arrays, so that values are not boxed on the way from producer to consumer.
+ */
+package org.df4j.core.boundconnector.primitivestream;
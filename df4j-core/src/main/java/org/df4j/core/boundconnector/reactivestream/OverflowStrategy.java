@@ -0,0 +1,18 @@
+package org.df4j.core.boundconnector.reactivestream;
+
+/**
+ * What a {@link ReactiveOutput} does with a message for a subscriber which has no demand for it.
+ * Chosen per subscription, so that a slow subscriber does not hold back the others.
+ */
+public enum OverflowStrategy {
+    /** the publisher is blocked until the subscriber requests more; the default */
+    BLOCK,
+    /** messages are kept in a buffer of given size; the publisher is blocked when the buffer is full */
+    BUFFER,
+    /** messages are kept in a buffer of given size; when the buffer is full, the oldest message is dropped */
+    DROP_OLDEST,
+    /** messages are kept in a buffer of given size; when the buffer is full, the new message is dropped */
+    DROP_NEWEST,
+    /** only the latest message is kept until the subscriber requests it */
+    CONFLATE_LATEST
+}
@@ -0,0 +1,24 @@
+package org.df4j.core.boundconnector.reactivestream;
+
+/**
+ * subscription of a {@link ReactiveOutput}, with statistics of its overflow buffer
+ */
+public interface OverflowSubscription extends ReactiveSubscription {
+
+    OverflowStrategy getStrategy();
+
+    /**
+     * @return number of messages waiting in the buffer for demand
+     */
+    int getBufferedSize();
+
+    /**
+     * @return total number of messages which have been put into the buffer
+     */
+    long getBufferedCount();
+
+    /**
+     * @return total number of messages dropped or replaced by a later message
+     */
+    long getDroppedCount();
+}
@@ -3,59 +3,266 @@ package org.df4j.core.boundconnector.reactivestream;
 import org.df4j.core.boundconnector.messagestream.StreamInput;
 import org.df4j.core.tasknode.AsyncProc;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
 import java.util.Iterator;
+import java.util.Queue;
+import java.util.function.Consumer;
 
 /**
- * A Queue of tokens
+ * A Queue of tokens with fixed capacity, kept in a ring array.
+ * <p>
+ * Requests capacity tokens on subscription. Consumed tokens are not requested one by one:
+ * the demand is accumulated and sent to the publisher when it reaches requestBatch tokens,
+ * half of the capacity by default. Since the consumer holds the rest of the window,
+ * the stream cannot stall: while the publisher has no demand, there are tokens to consume.
  *
  * @param <T> the type of tokens
  */
 public class ReactiveInput<T> extends StreamInput<T> implements ReactiveSubscriber<T>, Iterator<T> {
-    protected Deque<T> queue;
-    protected boolean closeRequested = false;
-    protected int capacity;
+    protected final int capacity;
+    protected final int requestBatch;
     protected ReactiveSubscription subscription;
 
-    public ReactiveInput(AsyncProc actor, int capacity) {
-        super(actor);
-        this.queue = new ArrayDeque<>(capacity);
+    /** ring buffer, one slot more than capacity for a pushed back token */
+    private final Object[] buffer;
+    private final int mask;
+    private int head = 0;
+    private int count = 0;
+    /**
+     * consumed tokens, not yet requested again; negative after a pushback of an already requested token.
+     * The demand of the publisher plus count plus consumed is always equal to capacity.
+     */
+    private int consumed = 0;
+    private T last;
+
+    /**
+     * @param actor parent node
+     * @param capacity max number of tokens
+     * @param requestBatch number of consumed tokens to request at once, from 1 to capacity
+     */
+    public ReactiveInput(AsyncProc actor, int capacity, int requestBatch) {
+        super(actor, (Queue<T>) null);
+        if (capacity <= 0 || requestBatch <= 0 || requestBatch > capacity) {
+            throw new IllegalArgumentException();
+        }
         this.capacity = capacity;
+        this.requestBatch = requestBatch;
+        int length = 2;
+        while (length <= capacity) {
+            length <<= 1;
+        }
+        buffer = new Object[length];
+        mask = length - 1;
+    }
+
+    public ReactiveInput(AsyncProc actor, int capacity) {
+        this(actor, capacity, Math.max(capacity / 2, 1));
     }
 
     public ReactiveInput(AsyncProc actor) {
         this(actor, 8);
     }
 
-    protected int size() {
-        return queue.size();
+    @Override
+    protected synchronized int size() {
+        return count;
     }
 
     @Override
     public void onSubscribe(ReactiveSubscription subscription) {
-        this.subscription = subscription;
+        synchronized (this) {
+            super.onSubscribe(subscription);
+            if (this.subscription != null) {
+                throw new IllegalStateException("subscribed already");
+            }
+            this.subscription = subscription;
+        }
         subscription.request(capacity);
     }
 
+    private void add(T token) {
+        if (count + consumed >= capacity) {
+            throw new IllegalStateException("no space for next token");
+        }
+        buffer[(head + count) & mask] = token;
+        count++;
+    }
+
     @Override
     public synchronized void post(T token) {
+        if (token == null) {
+            throw new NullPointerException();
+        }
         if (subscription == null) {
             throw new IllegalStateException("not yet subscribed");
         }
-        if (queue.size() >= capacity) {
-            throw new IllegalStateException("no space for next token");
+        if (closeRequested) {
+            throw new IllegalStateException("closed already");
+        }
+        add(token);
+        if (count == 1) {
+            turnOn();
         }
-        super.complete(token);
     }
 
     @Override
-    public synchronized T next() {
-        subscription.request(1);
-        return super.next();
+    public synchronized void postBatch(T[] items, int off, int len) {
+        if (subscription == null) {
+            throw new IllegalStateException("not yet subscribed");
+        }
+        if (closeRequested) {
+            throw new IllegalStateException("closed already");
+        }
+        if (count + consumed + len > capacity) {
+            throw new IllegalStateException("no space for next tokens");
+        }
+        boolean wasEmpty = count == 0;
+        for (int k = off; k < off + len; k++) {
+            if (items[k] == null) {
+                throw new NullPointerException();
+            }
+            add(items[k]);
+        }
+        if (wasEmpty && len > 0) {
+            turnOn();
+        }
+    }
+
+    @Override
+    public synchronized void complete() {
+        if (closeRequested) {
+            return;
+        }
+        closeRequested = true;
+        if (count == 0) {
+            turnOn();
+        }
+    }
+
+    @SuppressWarnings("unchecked") // the buffer holds only tokens
+    private T first() {
+        return (T) buffer[head];
+    }
+
+    private T poll() {
+        T res = first();
+        buffer[head] = null;
+        head = (head + 1) & mask;
+        count--;
+        consumed++;
+        return res;
+    }
+
+    /**
+     * @return demand to send to the publisher, or 0
+     */
+    private int takeDemand() {
+        if (consumed < requestBatch || subscription == null) {
+            return 0;
+        }
+        int res = consumed;
+        consumed = 0;
+        return res;
     }
 
-    public synchronized boolean  isClosed() {
-        return closeRequested && (value == null);
+    private void afterConsume() {
+        if (count == 0 && !closeRequested) {
+            turnOff();
+        }
+    }
+
+    @Override
+    public T next() {
+        T res;
+        int demand;
+        synchronized (this) {
+            if (count == 0) {
+                if (closeRequested) {
+                    turnOff(); // end of stream is consumed
+                }
+                last = null;
+                return null;
+            }
+            res = poll();
+            afterConsume();
+            demand = takeDemand();
+            last = res;
+        }
+        if (demand > 0) {
+            subscription.request(demand);
+        }
+        return res;
+    }
+
+    @Override
+    public int drainTo(Consumer<? super T> consumer, int max) {
+        int n = 0;
+        int demand;
+        synchronized (this) {
+            try {
+                while (n < max && count > 0) {
+                    T token = poll();
+                    n++;
+                    consumer.accept(token);
+                }
+            } finally {
+                afterConsume();
+                demand = takeDemand();
+            }
+        }
+        if (demand > 0) {
+            subscription.request(demand);
+        }
+        return n;
+    }
+
+    /**
+     * the token returned by the last call to {@link #next()} will be returned again
+     */
+    @Override
+    protected synchronized void pushback() {
+        if (last == null) {
+            throw new IllegalStateException();
+        }
+        pushback(last);
+    }
+
+    @Override
+    protected synchronized void pushback(T value) {
+        if (value == null) {
+            throw new IllegalArgumentException();
+        }
+        if (count == buffer.length) {
+            throw new IllegalStateException();
+        }
+        head = (head - 1) & mask;
+        buffer[head] = value;
+        count++;
+        consumed--;
+        if (count == 1) {
+            turnOn();
+        }
+    }
+
+    @Override
+    public synchronized T current() {
+        if (exception != null) {
+            throw new IllegalStateException(exception);
+        }
+        return getValue();
+    }
+
+    @Override
+    public synchronized T getValue() {
+        return count == 0 ? null : first();
+    }
+
+    @Override
+    public synchronized boolean hasNext() {
+        return count > 0;
+    }
+
+    @Override
+    public synchronized boolean isClosed() {
+        return closeRequested && count == 0;
     }
 }
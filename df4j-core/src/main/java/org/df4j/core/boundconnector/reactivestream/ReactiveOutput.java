@@ -3,9 +3,9 @@ package org.df4j.core.boundconnector.reactivestream;
 import org.df4j.core.boundconnector.messagestream.StreamCollector;
 import org.df4j.core.boundconnector.permitstream.Semafor;
 import org.df4j.core.tasknode.AsyncProc;
+import org.df4j.core.util.CopyOnWriteArray;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Arrays;
 import java.util.function.Consumer;
 
 /**
@@ -14,31 +14,77 @@ import java.util.function.Consumer;
  *
  * An equivalent to java.util.concurrent.SubmissionPublisher
  *
+ * By default, a subscriber without demand blocks the parent node. A subscriber may choose
+ * another {@link OverflowStrategy} at subscription, to buffer or drop messages instead.
+ *
  * @param <M> the type of broadcasted values
  */
 public class ReactiveOutput<M> extends AsyncProc.Lock implements ReactivePublisher<M>, StreamCollector<M> {
+    public static final int DEFAULT_BUFFER_SIZE = 16;
+
     protected AsyncProc actor;
-    protected Set<SimpleReactiveSubscriptionImpl> subscriptions = new HashSet<>();
+    protected final CopyOnWriteArray<SimpleReactiveSubscriptionImpl> subscriptions = new CopyOnWriteArray<>();
 
     public ReactiveOutput(AsyncProc actor) {
         actor.super(false);
         this.actor = actor;
     }
 
+    /**
+     * subscribes with {@link OverflowStrategy#BLOCK}
+     */
     @Override
     public <S extends ReactiveSubscriber<? super M>> S subscribe(S subscriber) {
-        SimpleReactiveSubscriptionImpl newSubscription = new SimpleReactiveSubscriptionImpl(subscriber);
+        return subscribe(new SimpleReactiveSubscriptionImpl(subscriber), subscriber);
+    }
+
+    /**
+     * @param subscriber the subscriber
+     * @param strategy what to do with messages when the subscriber has no demand
+     * @param bufferSize size of the overflow buffer; ignored for {@link OverflowStrategy#BLOCK},
+     *                   and is 1 for {@link OverflowStrategy#CONFLATE_LATEST}
+     * @param <S> type of the subscriber
+     * @return the subscriber
+     */
+    public <S extends ReactiveSubscriber<? super M>> S subscribe(S subscriber, OverflowStrategy strategy, int bufferSize) {
+        if (strategy == OverflowStrategy.BLOCK) {
+            return subscribe(subscriber);
+        }
+        if (strategy == OverflowStrategy.CONFLATE_LATEST) {
+            bufferSize = 1;
+        }
+        return subscribe(new OverflowSubscriptionImpl(subscriber, strategy, bufferSize), subscriber);
+    }
+
+    public <S extends ReactiveSubscriber<? super M>> S subscribe(S subscriber, OverflowStrategy strategy) {
+        return subscribe(subscriber, strategy, DEFAULT_BUFFER_SIZE);
+    }
+
+    private <S extends ReactiveSubscriber<? super M>> S subscribe(SimpleReactiveSubscriptionImpl newSubscription, S subscriber) {
         subscriptions.add(newSubscription);
         subscriber.onSubscribe(newSubscription);
         return subscriber;
     }
 
+    /**
+     * @return total number of messages dropped by the current subscriptions
+     */
+    public long getDroppedCount() {
+        long res = 0;
+        Object[] subs = subscriptions.snapshot();
+        for (int k = 0; k < subs.length; k++) {
+            SimpleReactiveSubscriptionImpl subscription = CopyOnWriteArray.get(subs, k);
+            res += subscription.getDroppedCount();
+        }
+        return res;
+    }
+
     public synchronized void close() {
-        subscriptions = null;
+        subscriptions.clear();
         super.turnOff();
     }
 
-    public synchronized boolean closed() {
+    public boolean closed() {
         return super.isBlocked();
     }
 
@@ -46,12 +92,27 @@ public class ReactiveOutput<M> extends AsyncProc.Lock implements ReactivePublish
         if (closed()) {
             return; // completed already
         }
-        subscriptions.forEach(operator);
+        Object[] subs = subscriptions.snapshot();
+        for (int k = 0; k < subs.length; k++) {
+            SimpleReactiveSubscriptionImpl subscription = CopyOnWriteArray.get(subs, k);
+            operator.accept(subscription);
+        }
     }
 
+    /**
+     * iterates over a snapshot of subscriptions, so a subscriber which cancels concurrently
+     * may receive this item
+     */
     @Override
     public void post(M item) {
-        forEachSubscription((subscription) -> subscription.post(item));
+        if (closed()) {
+            return;
+        }
+        Object[] subs = subscriptions.snapshot();
+        for (int k = 0; k < subs.length; k++) {
+            SimpleReactiveSubscriptionImpl subscription = CopyOnWriteArray.get(subs, k);
+            subscription.post(item);
+        }
     }
 
     public synchronized void complete() {
@@ -64,12 +125,16 @@ public class ReactiveOutput<M> extends AsyncProc.Lock implements ReactivePublish
         return false;
     }
 
-    class SimpleReactiveSubscriptionImpl extends Semafor implements ReactiveSubscription {
-        protected ReactiveSubscriber<? super M> subscriber;
-        private volatile boolean closed = false;
+    class SimpleReactiveSubscriptionImpl extends Semafor implements OverflowSubscription {
+        protected volatile ReactiveSubscriber<? super M> subscriber;
+        protected volatile boolean closed = false;
 
         public SimpleReactiveSubscriptionImpl(ReactiveSubscriber<? super M> subscriber) {
-            super(ReactiveOutput.this.actor);
+            this(subscriber, 0);
+        }
+
+        protected SimpleReactiveSubscriptionImpl(ReactiveSubscriber<? super M> subscriber, int count) {
+            super(ReactiveOutput.this.actor, count);
             if (subscriber == null) {
                 throw new NullPointerException();
             }
@@ -77,9 +142,16 @@ public class ReactiveOutput<M> extends AsyncProc.Lock implements ReactivePublish
         }
 
         public void post(M message) {
-            if (isCompleted()) {
+            ReactiveSubscriber<? super M> subscriber = this.subscriber;
+            if (subscriber == null) {
                 throw new IllegalStateException("post to completed connector");
             }
+            if (closed) {
+                return;
+            }
+            if (!tryAcquire(1)) {
+                throw new IllegalStateException("no demand for next message");
+            }
             subscriber.post(message);
         }
 
@@ -110,7 +182,7 @@ public class ReactiveOutput<M> extends AsyncProc.Lock implements ReactivePublish
             subscriber = null;
         }
 
-        private boolean isCompleted() {
+        protected boolean isCompleted() {
             return subscriber == null;
         }
 
@@ -131,6 +203,154 @@ public class ReactiveOutput<M> extends AsyncProc.Lock implements ReactivePublish
         public void request(long n) {
             super.release(n);
         }
+
+        @Override
+        public OverflowStrategy getStrategy() {
+            return OverflowStrategy.BLOCK;
+        }
+
+        @Override
+        public int getBufferedSize() {
+            return 0;
+        }
+
+        @Override
+        public long getBufferedCount() {
+            return 0;
+        }
+
+        @Override
+        public long getDroppedCount() {
+            return 0;
+        }
+    }
+
+    /**
+     * Keeps messages for which the subscriber has no demand in a bounded ring buffer, and passes them
+     * to the subscriber when demand comes. The semaphore counts demand plus free slots for {@link OverflowStrategy#BUFFER},
+     * so the publisher is blocked only when the buffer is full; for other strategies it is never blocked.
+     * <p>
+     * Messages are passed to the subscriber under the lock of this subscription, so they are delivered in order
+     * both by the publisher and by the thread requesting demand. Fast subscribers have an empty buffer and
+     * take the lock without contention.
+     */
+    class OverflowSubscriptionImpl extends SimpleReactiveSubscriptionImpl {
+        private final OverflowStrategy strategy;
+        private final Object[] buffer;
+        private int head = 0;
+        private volatile int size = 0;
+        private long demand = 0;
+        private boolean completeRequested = false;
+        private volatile long bufferedCount = 0;
+        private volatile long droppedCount = 0;
+
+        OverflowSubscriptionImpl(ReactiveSubscriber<? super M> subscriber, OverflowStrategy strategy, int bufferSize) {
+            super(subscriber, strategy == OverflowStrategy.BUFFER ? bufferSize : 1);
+            if (bufferSize <= 0) {
+                throw new IllegalArgumentException("buffer size must be > 0");
+            }
+            this.strategy = strategy;
+            buffer = new Object[bufferSize];
+        }
+
+        @Override
+        public void post(M message) {
+            if (isCompleted()) {
+                throw new IllegalStateException("post to completed connector");
+            }
+            if (closed) {
+                return;
+            }
+            if (strategy == OverflowStrategy.BUFFER && !tryAcquire(1)) {
+                throw new IllegalStateException("no space for next message");
+            }
+            synchronized (this) {
+                if (size == 0 && demand > 0) {
+                    demand--;
+                    subscriber.post(message);
+                    return;
+                }
+                if (size == buffer.length) {
+                    droppedCount++;
+                    if (strategy == OverflowStrategy.DROP_NEWEST) {
+                        return;
+                    }
+                    poll(); // DROP_OLDEST, CONFLATE_LATEST
+                }
+                buffer[(head + size) % buffer.length] = message;
+                size++;
+                bufferedCount++;
+            }
+        }
+
+        @SuppressWarnings("unchecked") // the buffer holds only posted messages
+        private M poll() {
+            M res = (M) buffer[head];
+            buffer[head] = null;
+            head = (head + 1) % buffer.length;
+            size--;
+            return res;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                throw new IllegalArgumentException("request must be > 0");
+            }
+            synchronized (this) {
+                demand += n;
+                drain();
+            }
+            if (strategy == OverflowStrategy.BUFFER) {
+                release(n); // after the demand is seen by the publisher, so the buffer cannot overflow
+            }
+        }
+
+        private void drain() {
+            while (demand > 0 && size > 0 && !isCompleted()) {
+                demand--;
+                subscriber.post(poll());
+            }
+            if (size == 0 && completeRequested) {
+                super.complete();
+            }
+        }
+
+        /**
+         * completes the subscriber after the buffered messages are delivered
+         */
+        @Override
+        public synchronized void complete() {
+            completeRequested = true;
+            drain();
+        }
+
+        @Override
+        public synchronized void postFailure(Throwable throwable) {
+            size = 0;
+            Arrays.fill(buffer, null);
+            super.postFailure(throwable);
+        }
+
+        @Override
+        public OverflowStrategy getStrategy() {
+            return strategy;
+        }
+
+        @Override
+        public int getBufferedSize() {
+            return size;
+        }
+
+        @Override
+        public long getBufferedCount() {
+            return bufferedCount;
+        }
+
+        @Override
+        public long getDroppedCount() {
+            return droppedCount;
+        }
     }
 
 }
@@ -0,0 +1,156 @@
+package org.df4j.core.boundconnector.ringstream;
+
+import org.df4j.core.tasknode.AsyncProc;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * A reader of the ring buffer of a {@link RingOutput}. Keeps no messages of its own, only the sequence number
+ * of the next message to read.
+ * <p>
+ * The pin is on when there are unread messages, or the stream is completed.
+ * When the reader catches up with the publisher, it turns the pin off and then checks the publisher's cursor again,
+ * so a message published in between is not missed.
+ * {@link #next()} and {@link #drainTo(Consumer, int)} must be called from the action of the parent node only.
+ *
+ * @param <T> type of messages
+ */
+public class RingInput<T> extends AsyncProc.AsyncParam<T> implements RingSubscriber<T>, Iterator<T> {
+    protected volatile RingSubscription<? extends T> subscription;
+    /** local copy of the sequence of the subscription */
+    private long sequence;
+
+    public RingInput(AsyncProc actor) {
+        actor.super();
+    }
+
+    @Override
+    public void onSubscribe(RingSubscription<? extends T> subscription) {
+        if (this.subscription != null) {
+            throw new IllegalStateException("subscribed already");
+        }
+        sequence = subscription.getSequence();
+        this.subscription = subscription;
+        if (subscription.getCursor() > sequence || subscription.isCompleted()) {
+            turnOn();
+        }
+    }
+
+    @Override
+    public void onPublish() {
+        turnOn();
+    }
+
+    /**
+     * @return number of messages published but not yet read
+     */
+    public int size() {
+        RingSubscription<? extends T> subscription = this.subscription;
+        if (subscription == null) {
+            return 0;
+        }
+        return (int) (subscription.getCursor() - sequence);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return size() > 0;
+    }
+
+    /**
+     * @return true if the stream is completed and all messages are read
+     */
+    public boolean isClosed() {
+        RingSubscription<? extends T> subscription = this.subscription;
+        return subscription != null && subscription.isCompleted() && subscription.getCursor() == sequence;
+    }
+
+    public Throwable getException() {
+        RingSubscription<? extends T> subscription = this.subscription;
+        return subscription == null ? null : subscription.getException();
+    }
+
+    /**
+     * @return the next message without removing it, or null
+     */
+    public T current() {
+        if (!hasNext()) {
+            return null;
+        }
+        return subscription.get(sequence);
+    }
+
+    /**
+     * turns the pin off when all messages are read, and then checks again
+     */
+    private void afterRead() {
+        RingSubscription<? extends T> subscription = this.subscription;
+        if (subscription.getCursor() > sequence || subscription.isCompleted()) {
+            return;
+        }
+        turnOff();
+        if (subscription.getCursor() > sequence || subscription.isCompleted()) { // published in between
+            turnOn();
+        }
+    }
+
+    /**
+     * removes and returns the next message
+     *
+     * @return the next message, or null if the stream is completed
+     */
+    @Override
+    public T next() {
+        RingSubscription<? extends T> subscription = this.subscription;
+        if (subscription == null || subscription.getCursor() == sequence) {
+            turnOff(); // end of stream is consumed
+            return null;
+        }
+        T res = subscription.get(sequence);
+        sequence++;
+        subscription.advance(sequence);
+        afterRead();
+        return res;
+    }
+
+    /**
+     * Passes up to max messages to the consumer, and then releases them in the ring at once.
+     * The end of stream is not passed to the consumer.
+     *
+     * @param consumer receiver of messages
+     * @param max max number of messages to read
+     * @return number of read messages
+     */
+    public int drainTo(Consumer<? super T> consumer, int max) {
+        RingSubscription<? extends T> subscription = this.subscription;
+        if (subscription == null) {
+            return 0;
+        }
+        long end = Math.min(subscription.getCursor(), sequence + max);
+        int count = 0;
+        try {
+            while (sequence < end) {
+                T message = subscription.get(sequence);
+                sequence++;
+                count++;
+                consumer.accept(message);
+            }
+        } finally {
+            if (count > 0) {
+                subscription.advance(sequence);
+                afterRead();
+            }
+        }
+        return count;
+    }
+
+    public boolean cancel() {
+        RingSubscription<? extends T> subscription = this.subscription;
+        if (subscription == null) {
+            return false;
+        }
+        this.subscription = null;
+        return subscription.cancel();
+    }
+}
@@ -0,0 +1,250 @@
+package org.df4j.core.boundconnector.ringstream;
+
+import org.df4j.core.boundconnector.messagestream.StreamCollector;
+import org.df4j.core.tasknode.AsyncProc;
+import org.df4j.core.util.CopyOnWriteArray;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * serves multiple subscribers from a single ring buffer, allocated once.
+ * <p>
+ * Each message is written once, and is not copied to subscribers: each subscriber
+ * reads the ring with its own sequence number. The pin is turned off when the ring is full,
+ * that is, when the slowest subscriber has not yet read the message which is one capacity behind.
+ * The publisher caches the sequence of the slowest subscriber, and reads the sequences
+ * of all subscribers only when the cached value says the ring is full.
+ * <p>
+ * Messages must be posted from the action of the parent node only, as with other outputs.
+ * A new subscriber receives messages posted after subscription.
+ * Slots are not cleared after reading, so up to capacity messages remain reachable.
+ *
+ * @param <M> the type of broadcasted values
+ */
+public class RingOutput<M> extends AsyncProc.Lock implements RingPublisher<M>, StreamCollector<M> {
+    // field updaters are created for the raw class
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<RingOutput> fullUpdater
+            = AtomicIntegerFieldUpdater.newUpdater(RingOutput.class, "full");
+
+    protected final AsyncProc actor;
+    protected final CopyOnWriteArray<RingSubscriptionImpl> subscriptions = new CopyOnWriteArray<>();
+    protected final int capacity;
+    private final Object[] buffer;
+    private final int mask;
+
+    /** number of published messages */
+    private volatile long cursor = 0;
+    /** sequence of the slowest subscriber, as seen by the publisher last time */
+    private long cachedMin = 0;
+    /** 1 when the pin is turned off because the ring is full */
+    private volatile int full = 0;
+    private volatile boolean completed = false;
+    private volatile Throwable exception;
+
+    /**
+     * @param actor parent node
+     * @param capacity size of the ring, rounded up to a power of two
+     */
+    public RingOutput(AsyncProc actor, int capacity) {
+        actor.super(false);
+        if (capacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.actor = actor;
+        int length = 1;
+        while (length < capacity) {
+            length <<= 1;
+        }
+        this.capacity = length;
+        buffer = new Object[length];
+        mask = length - 1;
+    }
+
+    public RingOutput(AsyncProc actor) {
+        this(actor, 1024);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getCursor() {
+        return cursor;
+    }
+
+    @Override
+    public <S extends RingSubscriber<? super M>> S subscribe(S subscriber) {
+        RingSubscriptionImpl newSubscription = new RingSubscriptionImpl(subscriber);
+        subscriptions.add(newSubscription);
+        // the publisher sees the new subscription from now on, so no message from the cursor on is overwritten
+        newSubscription.sequence = cursor;
+        subscriber.onSubscribe(newSubscription);
+        return subscriber;
+    }
+
+    /**
+     * @param next sequence of the next message to publish
+     * @return sequence of the slowest subscriber, or next if there are no subscribers
+     */
+    private long minSequence(long next) {
+        long min = next;
+        Object[] subs = subscriptions.snapshot();
+        for (int k = 0; k < subs.length; k++) {
+            RingSubscriptionImpl subscription = CopyOnWriteArray.get(subs, k);
+            long sequence = subscription.sequence;
+            if (sequence < min) {
+                min = sequence;
+            }
+        }
+        return min;
+    }
+
+    @Override
+    public void post(M item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+        if (completed) {
+            throw new IllegalStateException("closed already");
+        }
+        long seq = cursor;
+        if (seq - cachedMin >= capacity) {
+            cachedMin = minSequence(seq);
+            if (seq - cachedMin >= capacity) {
+                throw new IllegalStateException("no space for next message");
+            }
+        }
+        buffer[(int) seq & mask] = item;
+        cursor = seq + 1;
+        Object[] subs = subscriptions.snapshot();
+        for (int k = 0; k < subs.length; k++) {
+            RingSubscriptionImpl subscription = CopyOnWriteArray.get(subs, k);
+            if (subscription.sequence == seq) {
+                subscription.subscriber.onPublish();
+            }
+        }
+        checkSpace(seq + 1);
+    }
+
+    /**
+     * turns the pin off if the ring is full. The flag is raised after the pin is turned off,
+     * so a subscriber which sees the flag turns the pin on after it was turned off.
+     */
+    private void checkSpace(long next) {
+        if (next - cachedMin < capacity) {
+            return;
+        }
+        cachedMin = minSequence(next);
+        if (next - cachedMin < capacity) {
+            return;
+        }
+        turnOff();
+        full = 1;
+        onRelease();
+    }
+
+    /**
+     * called after a subscriber moved its sequence or left
+     */
+    private void onRelease() {
+        if (full == 0) {
+            return;
+        }
+        long next = cursor;
+        if (next - minSequence(next) < capacity && fullUpdater.compareAndSet(this, 1, 0)) {
+            turnOn();
+        }
+    }
+
+    @Override
+    public void complete() {
+        if (completed) {
+            return;
+        }
+        completed = true;
+        Object[] subs = subscriptions.snapshot();
+        for (int k = 0; k < subs.length; k++) {
+            RingSubscriptionImpl subscription = CopyOnWriteArray.get(subs, k);
+            subscription.subscriber.onPublish();
+        }
+    }
+
+    @Override
+    public boolean completeExceptionally(Throwable throwable) {
+        if (completed) {
+            return false;
+        }
+        exception = throwable;
+        complete();
+        return true;
+    }
+
+    class RingSubscriptionImpl implements RingSubscription<M> {
+        protected final RingSubscriber<? super M> subscriber;
+        /** next message to read; infinite until the subscription is registered */
+        protected volatile long sequence = Long.MAX_VALUE;
+        private volatile boolean closed = false;
+
+        public RingSubscriptionImpl(RingSubscriber<? super M> subscriber) {
+            if (subscriber == null) {
+                throw new NullPointerException();
+            }
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public long getSequence() {
+            return sequence;
+        }
+
+        @Override
+        public long getCursor() {
+            return cursor;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked") // the buffer holds only posted messages
+        public M get(long sequence) {
+            if (sequence < this.sequence || sequence >= cursor) {
+                throw new IndexOutOfBoundsException();
+            }
+            return (M) buffer[(int) sequence & mask];
+        }
+
+        @Override
+        public void advance(long sequence) {
+            if (sequence < this.sequence || sequence > cursor) {
+                throw new IndexOutOfBoundsException();
+            }
+            this.sequence = sequence;
+            onRelease();
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return completed;
+        }
+
+        @Override
+        public Throwable getException() {
+            return exception;
+        }
+
+        /**
+         * subscription closed by request of subscriber
+         */
+        @Override
+        public boolean cancel() {
+            synchronized (RingOutput.this) {
+                if (closed) {
+                    return false;
+                }
+                closed = true;
+                subscriptions.remove(this);
+            }
+            onRelease();
+            return true;
+        }
+    }
+}
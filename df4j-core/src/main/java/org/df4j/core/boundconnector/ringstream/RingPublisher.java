@@ -0,0 +1,7 @@
+package org.df4j.core.boundconnector.ringstream;
+
+public interface RingPublisher<M> {
+
+    <S extends RingSubscriber<? super M>> S subscribe(S subscriber);
+
+}
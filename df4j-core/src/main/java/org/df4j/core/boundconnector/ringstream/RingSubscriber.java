@@ -0,0 +1,17 @@
+package org.df4j.core.boundconnector.ringstream;
+
+/**
+ * reader of a shared ring buffer
+ *
+ * @param <T> type of messages
+ */
+public interface RingSubscriber<T> {
+
+    void onSubscribe(RingSubscription<? extends T> subscription);
+
+    /**
+     * called by the publisher after a message is published to a subscriber which has read all previous messages,
+     * and after the stream is completed
+     */
+    void onPublish();
+}
@@ -0,0 +1,43 @@
+package org.df4j.core.boundconnector.ringstream;
+
+import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
+
+/**
+ * position of a subscriber in the ring buffer of the publisher.
+ * Messages are numbered from 0; the subscriber reads messages from {@link #getSequence()}
+ * up to {@link #getCursor()} (exclusive), and then moves its sequence with {@link #advance(long)}.
+ *
+ * @param <T> type of messages
+ */
+public interface RingSubscription<T> extends SimpleSubscription {
+
+    /**
+     * @return number of the next message to read by this subscriber
+     */
+    long getSequence();
+
+    /**
+     * @return number of published messages
+     */
+    long getCursor();
+
+    /**
+     * @param sequence number of a published message, not yet released by this subscriber
+     * @return the message
+     */
+    T get(long sequence);
+
+    /**
+     * releases messages before the given sequence, so that the publisher can reuse their slots
+     *
+     * @param sequence number of the next message to read
+     */
+    void advance(long sequence);
+
+    /**
+     * @return true if no more messages will be published
+     */
+    boolean isCompleted();
+
+    Throwable getException();
+}
@@ -0,0 +1,8 @@
+/**
+ * This package contains a multicast stream with back pressure, kept in a single ring buffer shared by all subscribers.
+ * <p>
+ * The publisher writes each message once, and each subscriber reads it with its own sequence number.
+ * The publisher's pin is turned off when the ring is full, that is, when the slowest subscriber
+ * is one capacity behind, and is turned on again when that subscriber moves on.
+ */
+package org.df4j.core.boundconnector.ringstream;
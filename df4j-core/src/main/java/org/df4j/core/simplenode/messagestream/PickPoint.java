@@ -4,32 +4,84 @@ import org.df4j.core.boundconnector.messagescalar.ScalarPublisher;
 import org.df4j.core.boundconnector.messagescalar.ScalarSubscriber;
 import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
 import org.df4j.core.boundconnector.messagestream.StreamSubscriber;
-import org.df4j.core.simplenode.messagescalar.SubscriberPromise;
 import org.df4j.core.tasknode.messagestream.StreamCompletedException;
 
-import java.util.ArrayDeque;
+import java.util.AbstractQueue;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  *  An asynchronous analogue of BlockingQueue
  *  (only on output end, while from the input side it does not block)
+ *  <p>
+ *  A dual queue: it holds either tokens or waiters, threads and asynchronous subscribers.
+ *  The balance counter is the number of tokens minus the number of waiters, and is changed with atomic operations:
+ *  a producer which increments a negative balance hands its token to a waiter,
+ *  and a consumer which decrements a positive balance takes a token.
+ *  Tokens and waiters are kept in lock-free linked queues.
+ *  <p>
+ *  A waiter which times out or is cancelled withdraws from the balance and from the queue of waiters
+ *  if no producer has counted on it yet; otherwise the producer which meets it posts its token again.
+ *  So tokens are never passed to dead waiters, and dead waiters do not pile up in the queue.
+ *  Waiters of blocked threads are reused by the same thread, once no producer can see them.
+ *  Only producers blocked in {@link #put(Object)} on a full queue use a lock.
  *
  * @param <T> the type of the values passed through this token container
  */
-public class PickPoint<T> extends ArrayDeque<T> implements StreamSubscriber<T>, ScalarPublisher<T>, BlockingQueue<T> {
-    private boolean completed = false;
-	/** place for demands */
-	private Queue<ScalarSubscriber<? super T>> requests = new ArrayDeque<>();
+public class PickPoint<T> extends AbstractQueue<T> implements StreamSubscriber<T>, ScalarPublisher<T>, BlockingQueue<T> {
+    // field updaters are created for the raw classes
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<PickPoint> balanceUpdater
+            = AtomicLongFieldUpdater.newUpdater(PickPoint.class, "balance");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<PickPoint.Waiter> stateUpdater
+            = AtomicIntegerFieldUpdater.newUpdater(PickPoint.Waiter.class, "state");
+
+    private static final int WAITING = 0;
+    private static final int FULFILLED = 1;
+    private static final int COMPLETED = 2;
+    /** cancellation in progress: the waiter decides if it is still counted in the balance */
+    private static final int CANCELLING = 3;
+    /** cancelled, but a producer has counted on this waiter and should post its token again */
+    private static final int CANCELLED_COUNTED = 4;
+    /** cancelled and withdrawn from the balance; producers skip it */
+    private static final int CANCELLED = 5;
+
+    protected final int capacity;
+    private final ConcurrentLinkedQueue<T> tokens = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    /** number of tokens minus number of waiters */
+    private volatile long balance = 0;
+    private volatile boolean completed = false;
+    /** lock and counter for producers blocked on a full queue */
+    private final Object notFull = new Object();
+    private volatile int blockedProducers = 0;
+    /** reusable waiter of a blocked thread */
+    private final ThreadLocal<Waiter> threadWaiter = new ThreadLocal<>();
 
 	private SimpleSubscription subscription;
 
-    public synchronized boolean isCompleted() {
+    /**
+     * @param capacity max number of tokens
+     */
+    public PickPoint(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.capacity = capacity;
+    }
+
+    public PickPoint() {
+        this(Integer.MAX_VALUE);
+    }
+
+    public boolean isCompleted() {
         return completed;
     }
 
@@ -37,116 +89,483 @@ public class PickPoint<T> extends ArrayDeque<T> implements StreamSubscriber<T>,
         this.subscription = subscription;
     }
 
+    /**
+     * @param token token to pass to a waiter or to keep in the queue
+     * @throws IllegalStateException if completed, or the queue is full
+     */
     @Override
-	public synchronized void post(T token) {
-        if (completed) {
-            throw new IllegalStateException();
-        }
-	    if (requests.isEmpty()) {
-	        super.add(token);
-        } else {
-	        requests.poll().complete(token);
+	public void post(T token) {
+        if (!offer(token)) {
+            throw new IllegalStateException("no space for next token");
         }
 	}
 
 	@Override
-	public synchronized void complete() {
+	public void complete() {
         if (completed) {
             return;
         }
         completed = true;
-        for (ScalarSubscriber<? super T> subscriber: requests) {
-            subscriber.completeExceptionally(new StreamCompletedException());
+        Waiter waiter;
+        while ((waiter = waiters.poll()) != null) {
+            if (stateUpdater.compareAndSet(waiter, WAITING, COMPLETED)) {
+                waiter.wake();
+            }
+        }
+        synchronized (notFull) {
+            notFull.notifyAll();
         }
-        requests = null;
 	}
 
+    /**
+     * takes the counted token. The producer may have counted it, but not yet added to the queue.
+     */
+    private T pollCounted() {
+        T token;
+        while ((token = tokens.poll()) == null) {
+            Thread.yield();
+        }
+        return token;
+    }
+
+    private void tokensRemoved() {
+        if (blockedProducers != 0) {
+            synchronized (notFull) {
+                notFull.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return a counted token, or null if the queue is empty
+     */
+    private T tryTake() {
+        for (;;) {
+            long b = balance;
+            if (b <= 0) {
+                return null;
+            }
+            if (balanceUpdater.compareAndSet(this, b, b - 1)) {
+                T token = pollCounted();
+                tokensRemoved();
+                return token;
+            }
+        }
+    }
+
+    /**
+     * @return a counted token, or null if the queue is empty and the waiter is registered
+     */
+    private T takeOrRegister(Waiter waiter) {
+        for (;;) {
+            long b = balance;
+            if (b > 0) {
+                if (balanceUpdater.compareAndSet(this, b, b - 1)) {
+                    T token = pollCounted();
+                    tokensRemoved();
+                    return token;
+                }
+            } else if (balanceUpdater.compareAndSet(this, b, b - 1)) {
+                waiters.add(waiter);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Withdraws the waiter from the balance and from the queue of waiters, if the balance still has unmatched waiters.
+     * Otherwise, a producer has counted on this waiter, and it will post its token again when it meets the waiter.
+     *
+     * @return true if the waiter was removed from the queue, so no producer can see it any more
+     */
+    private boolean uncount(Waiter waiter) {
+        for (;;) {
+            long b = balance;
+            if (b >= 0) {
+                waiter.state = CANCELLED_COUNTED;
+                return false;
+            }
+            if (balanceUpdater.compareAndSet(this, b, b + 1)) {
+                waiter.state = CANCELLED;
+                // false if a producer or complete() has polled it meanwhile
+                return waiters.remove(waiter);
+            }
+        }
+    }
+
+    /**
+     * passes the token to a waiter counted by the caller
+     *
+     * @return false if the waiter met was cancelled after being counted, so the token should be posted again
+     */
+    private boolean handToWaiter(T token) {
+        for (;;) {
+            Waiter waiter = waiters.poll();
+            if (waiter == null) {
+                if (completed) {
+                    balanceUpdater.getAndDecrement(this);
+                    throw new IllegalStateException("completed already");
+                }
+                Thread.yield(); // the waiter is counted, but not yet added to the queue
+                continue;
+            }
+            for (;;) {
+                int state = waiter.state;
+                if (state == WAITING) {
+                    waiter.token = token;
+                    if (stateUpdater.compareAndSet(waiter, WAITING, FULFILLED)) {
+                        waiter.wake();
+                        return true;
+                    }
+                    waiter.token = null;
+                } else if (state == CANCELLING) {
+                    Thread.yield();
+                } else if (state == CANCELLED_COUNTED) {
+                    return false;
+                } else { // CANCELLED: not counted, try next waiter
+                    break;
+                }
+            }
+        }
+    }
+
+    /**====================== implementation of synchronous BlockingQueu interface  ====================*/
+
+    @Override
+    public boolean offer(T token) {
+        if (token == null) {
+            throw new NullPointerException();
+        }
+        for (;;) {
+            if (completed) {
+                throw new IllegalStateException("completed already");
+            }
+            long b = balance;
+            if (b >= capacity) {
+                return false;
+            }
+            if (!balanceUpdater.compareAndSet(this, b, b + 1)) {
+                continue;
+            }
+            if (b >= 0) {
+                tokens.add(token);
+                return true;
+            }
+            if (handToWaiter(token)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void put(T token) throws InterruptedException {
+        offer(token, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public boolean offer(T token, long timeout, TimeUnit unit) throws InterruptedException {
+        if (offer(token)) {
+            return true;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (notFull) {
+            blockedProducers++;
+            try {
+                while (!offer(token)) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(notFull, remaining);
+                }
+                return true;
+            } finally {
+                blockedProducers--;
+            }
+        }
+    }
+
 	@Override
 	public <S extends ScalarSubscriber<? super T>> S subscribe(S subscriber) {
         if (completed) {
             throw new IllegalStateException();
         }
-		if (super.isEmpty()) {
-			requests.add(subscriber);
-		} else {
-			subscriber.complete(super.poll());
-		}
+        Waiter waiter = new Waiter(subscriber);
+        synchronized (waiter) { // the token or completion is passed after onSubscribe
+            T token = takeOrRegister(waiter);
+            if (token != null) {
+                subscriber.complete(token);
+                return subscriber;
+            }
+            subscriber.onSubscribe(waiter);
+            if (completed) {
+                waiter.cancel(); // complete() may have missed it
+            }
+        }
         return subscriber;
 	}
 
-    /**====================== implementation of synchronous BlockingQueu interface  ====================*/
+    @Override
+    public T poll() {
+        return tryTake();
+    }
 
     @Override
-    public boolean add(T t) {
-        post(t);
-        return true;
+    public T peek() {
+        return tokens.peek();
+    }
+
+    @Override
+    public T take() throws InterruptedException {
+        T token = await(false, 0);
+        if (token == null) { // completed
+            throw new RuntimeException(new StreamCompletedException());
+        }
+        return token;
+    }
+
+    /**
+     * @return the next token, or null if timed out or completed
+     */
+    @Override
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return await(true, System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    private T await(boolean timed, long deadline) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        T token = tryTake();
+        if (token != null || completed) {
+            return token;
+        }
+        Waiter waiter = threadWaiter.get();
+        if (waiter == null) {
+            waiter = new Waiter(Thread.currentThread());
+        } else {
+            threadWaiter.set(null);
+            waiter.state = WAITING;
+            waiter.removed = false;
+        }
+        token = takeOrRegister(waiter);
+        if (token != null) {
+            threadWaiter.set(waiter); // was not registered
+            return token;
+        }
+        for (;;) {
+            int state = waiter.state;
+            if (state == FULFILLED || state == COMPLETED) {
+                token = waiter.token;
+                waiter.token = null;
+                threadWaiter.set(waiter); // taken out of the queue of waiters
+                return token;
+            }
+            if (state != WAITING) { // cancelled because completed
+                return null;
+            }
+            if (completed) {
+                waiter.cancel(); // complete() may have missed it
+                continue;
+            }
+            if (Thread.interrupted()) {
+                if (waiter.cancel()) {
+                    if (waiter.removed) {
+                        threadWaiter.set(waiter);
+                    }
+                    throw new InterruptedException();
+                }
+                Thread.currentThread().interrupt(); // fulfilled meanwhile; keep the interrupt for later
+                continue;
+            }
+            if (timed) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    if (waiter.cancel()) {
+                        if (waiter.removed) {
+                            threadWaiter.set(waiter);
+                        }
+                        return null;
+                    }
+                    continue;
+                }
+                LockSupport.parkNanos(this, remaining);
+            } else {
+                LockSupport.park(this);
+            }
+        }
     }
 
     @Override
-    public boolean offer(T t) {
-        post(t);
-        return true;
+    public int size() {
+        return (int) Math.max(balance, 0);
     }
 
     @Override
-    public void put(T t) throws InterruptedException {
-        post(t);
+    public boolean isEmpty() {
+        return balance <= 0;
     }
 
     @Override
-    public synchronized boolean offer(T t, long timeout, TimeUnit unit) throws InterruptedException {
-        post(t);
-        return true;
+    public int remainingCapacity() {
+        return capacity - size();
     }
 
+    /**
+     * @return weakly consistent iterator over tokens; removal is done with {@link #remove(Object)}
+     */
     @Override
-    public T take() throws InterruptedException {
-        synchronized(this) {
-            if (!super.isEmpty() && requests.isEmpty()) {
-                return super.remove();
+    public Iterator<T> iterator() {
+        Iterator<T> it = tokens.iterator();
+        return new Iterator<T>() {
+            private T last;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
             }
-        }
-        SubscriberPromise<T> future = new SubscriberPromise<>();
-        subscribe(future);
-        try {
-            return future.get();
-        } catch (ExecutionException e) {
-            throw new RuntimeException(e);
-        }
+
+            @Override
+            public T next() {
+                return last = it.next();
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                PickPoint.this.remove(last);
+                last = null;
+            }
+        };
     }
 
+    /**
+     * Removes a token equal to o, if present.
+     * A token is counted first, as by a consumer, so that no other consumer waits for it; if another consumer
+     * has taken that token meanwhile, the token taken instead is posted again, at the tail of the queue.
+     */
     @Override
-    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
-        synchronized(this) {
-            if (!super.isEmpty() && requests.isEmpty()) {
-                return super.remove();
+    public boolean remove(Object o) {
+        if (o == null || !tokens.contains(o)) {
+            return false;
+        }
+        for (;;) {
+            long b = balance;
+            if (b <= 0) {
+                return false;
+            }
+            if (balanceUpdater.compareAndSet(this, b, b - 1)) {
+                break;
             }
         }
-        SubscriberPromise<T> future = new SubscriberPromise<>();
-        subscribe(future);
-        try {
-            return future.get(timeout, unit);
-        } catch (ExecutionException | TimeoutException e) {
-            throw new RuntimeException(e);
+        if (tokens.remove(o)) {
+            tokensRemoved();
+            return true;
         }
+        repost(pollCounted());
+        return false;
     }
 
-    @Override
-    public synchronized int remainingCapacity() {
-        return 1;
+    /**
+     * posts a counted token again, regardless of capacity and completion
+     */
+    private void repost(T token) {
+        for (;;) {
+            long b = balance;
+            if (!balanceUpdater.compareAndSet(this, b, b + 1)) {
+                continue;
+            }
+            if (b >= 0) {
+                tokens.add(token);
+                return;
+            }
+            if (handToWaiter(token)) {
+                return;
+            }
+        }
     }
 
     @Override
-    public synchronized int drainTo(Collection<? super T> c) {
-        throw new UnsupportedOperationException();
+    public int drainTo(Collection<? super T> c) {
+        return drainTo(c, Integer.MAX_VALUE);
     }
 
+    /**
+     * counts up to maxElements tokens with single atomic operation, and then moves them to the collection
+     */
     @Override
-    public synchronized int drainTo(Collection<? super T> c, int maxElements) {
-        throw new UnsupportedOperationException();
+    public int drainTo(Collection<? super T> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        for (;;) {
+            long b = balance;
+            if (b <= 0 || maxElements <= 0) {
+                return 0;
+            }
+            int n = (int) Math.min(b, maxElements);
+            if (balanceUpdater.compareAndSet(this, b, b - n)) {
+                for (int k = 0; k < n; k++) {
+                    c.add(pollCounted());
+                }
+                tokensRemoved();
+                return n;
+            }
+        }
     }
 
-    static class ThreadSupscriber {
+    /**
+     * a blocked thread, or an asynchronous subscriber
+     */
+    class Waiter implements SimpleSubscription {
+        volatile int state = WAITING;
+        T token;
+        /** cancelled and removed from the queue of waiters */
+        boolean removed;
+        final Thread thread;
+        final ScalarSubscriber<? super T> subscriber;
+
+        Waiter(Thread thread) {
+            this.thread = thread;
+            this.subscriber = null;
+        }
+
+        Waiter(ScalarSubscriber<? super T> subscriber) {
+            this.thread = null;
+            this.subscriber = subscriber;
+        }
+
+        void wake() {
+            if (subscriber == null) {
+                LockSupport.unpark(thread);
+                return;
+            }
+            synchronized (this) {
+                if (state == FULFILLED) {
+                    T token = this.token;
+                    this.token = null;
+                    subscriber.complete(token);
+                } else {
+                    subscriber.completeExceptionally(new StreamCompletedException());
+                }
+            }
+        }
 
+        /**
+         * @return true if cancelled, false if fulfilled or completed already
+         */
+        @Override
+        public boolean cancel() {
+            if (!stateUpdater.compareAndSet(this, WAITING, CANCELLING)) {
+                return false;
+            }
+            removed = uncount(this);
+            if (subscriber != null && completed) {
+                subscriber.completeExceptionally(new StreamCompletedException());
+            }
+            return true;
+        }
     }
 }
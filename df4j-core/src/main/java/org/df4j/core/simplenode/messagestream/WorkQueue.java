@@ -0,0 +1,369 @@
+package org.df4j.core.simplenode.messagestream;
+
+import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
+import org.df4j.core.boundconnector.messagestream.CreditSubscription;
+import org.df4j.core.boundconnector.messagestream.StreamSubscriber;
+import org.df4j.core.tasknode.messagestream.Actor1;
+import org.df4j.core.util.CopyOnWriteArray;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.function.Supplier;
+
+/**
+ * A queue of tokens served by a pool of competing workers: each token is passed to exactly one worker.
+ * <p>
+ * Workers subscribe with {@link #subscribe(StreamSubscriber)} and signal demand with credits,
+ * as {@link org.df4j.core.boundconnector.messagestream.BoundedStreamInput} does, so the usual worker is
+ * an {@link Actor1} created with a capacity. A token is passed to a worker with credit, chosen by the {@link Dispatch} policy;
+ * when no worker has credit, tokens wait in the queue, and go to the next worker which releases credit.
+ * <p>
+ * When created with a worker factory, the pool size can be changed at runtime with {@link #setPoolSize(int)}.
+ * Removed workers are unsubscribed at once, and completed when the tokens being passed to them are delivered,
+ * so they process the tokens passed to them already and stop.
+ *
+ * @param <T> the type of tokens
+ */
+public class WorkQueue<T> implements StreamSubscriber<T> {
+
+    public enum Dispatch {
+        /** the next worker with credit, after the one which got the previous token */
+        ROUND_ROBIN,
+        /** the worker with most credit, that is, with fewest tokens waiting for it */
+        LEAST_LOADED
+    }
+
+    protected final Dispatch dispatch;
+    protected final Supplier<? extends Actor1<T>> workerFactory;
+    protected final CopyOnWriteArray<WorkerSubscription> workers = new CopyOnWriteArray<>();
+    private final ArrayList<Actor1<T>> pool = new ArrayList<>();
+    private final ArrayDeque<T> backlog = new ArrayDeque<>();
+    private int next = 0;
+    /** tokens taken for a worker, but not yet posted to it */
+    private int delivering = 0;
+    private boolean completeRequested = false;
+    private boolean completed = false;
+    private SimpleSubscription subscription;
+
+    /**
+     * @param dispatch choice of the worker for the next token
+     * @param workerFactory creates workers for {@link #setPoolSize(int)}; may be null
+     */
+    public WorkQueue(Dispatch dispatch, Supplier<? extends Actor1<T>> workerFactory) {
+        if (dispatch == null) {
+            throw new NullPointerException();
+        }
+        this.dispatch = dispatch;
+        this.workerFactory = workerFactory;
+    }
+
+    public WorkQueue(Dispatch dispatch) {
+        this(dispatch, null);
+    }
+
+    public WorkQueue() {
+        this(Dispatch.ROUND_ROBIN);
+    }
+
+    @Override
+    public void onSubscribe(SimpleSubscription subscription) {
+        this.subscription = subscription;
+    }
+
+    /**
+     * @param worker subscriber which releases credits for tokens
+     * @param <S> type of the worker
+     * @return the worker
+     */
+    public <S extends StreamSubscriber<? super T>> S subscribe(S worker) {
+        WorkerSubscription subscription = new WorkerSubscription(worker);
+        workers.add(subscription);
+        worker.onSubscribe(subscription);
+        return worker;
+    }
+
+    /**
+     * @return number of tokens waiting for a worker
+     */
+    public synchronized int getBacklog() {
+        return backlog.size();
+    }
+
+    /**
+     * @return statistics of current workers
+     */
+    public WorkerMetrics[] getWorkerMetrics() {
+        Object[] subs = workers.snapshot();
+        WorkerMetrics[] res = new WorkerMetrics[subs.length];
+        for (int k = 0; k < subs.length; k++) {
+            res[k] = (WorkerMetrics) subs[k];
+        }
+        return res;
+    }
+
+    public synchronized int getPoolSize() {
+        return pool.size();
+    }
+
+    /**
+     * Creates and starts new workers, or unsubscribes and completes the most recently created ones.
+     *
+     * @param size new number of workers created by the factory
+     */
+    public void setPoolSize(int size) {
+        if (workerFactory == null) {
+            throw new IllegalStateException("no worker factory");
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException();
+        }
+        ArrayList<Actor1<T>> added = new ArrayList<>();
+        ArrayList<Actor1<T>> removed = new ArrayList<>();
+        synchronized (this) {
+            while (pool.size() < size) {
+                Actor1<T> worker = workerFactory.get();
+                pool.add(worker);
+                added.add(worker);
+            }
+            while (pool.size() > size) {
+                removed.add(pool.remove(pool.size() - 1));
+            }
+        }
+        for (int k = 0; k < added.size(); k++) {
+            Actor1<T> worker = added.get(k);
+            subscribe(worker);
+            worker.start();
+        }
+        for (int k = 0; k < removed.size(); k++) {
+            retire(removed.get(k));
+        }
+    }
+
+    /**
+     * unsubscribes the worker, and completes it when no token is being posted to it
+     */
+    private void retire(StreamSubscriber<? super T> worker) {
+        Object[] subs = workers.snapshot();
+        for (int k = 0; k < subs.length; k++) {
+            WorkerSubscription subscription = CopyOnWriteArray.get(subs, k);
+            if (subscription.subscriber == worker) {
+                boolean idle;
+                synchronized (this) {
+                    subscription.retired = true;
+                    idle = subscription.inFlight == 0;
+                }
+                subscription.cancel();
+                if (idle) {
+                    worker.complete();
+                }
+                return;
+            }
+        }
+        worker.complete();
+    }
+
+    /**
+     * @return worker with credit, with the credit taken, or null
+     */
+    private WorkerSubscription takeWorker() {
+        Object[] subs = workers.snapshot();
+        int n = subs.length;
+        if (n == 0) {
+            return null;
+        }
+        WorkerSubscription res = null;
+        if (dispatch == Dispatch.ROUND_ROBIN) {
+            for (int k = 0; k < n; k++) {
+                int index = (next + k) % n;
+                WorkerSubscription worker = CopyOnWriteArray.get(subs, index);
+                if (worker.credit > 0) {
+                    res = worker;
+                    next = index + 1;
+                    break;
+                }
+            }
+        } else {
+            for (int k = 0; k < n; k++) {
+                WorkerSubscription worker = CopyOnWriteArray.get(subs, k);
+                if (worker.credit > 0 && (res == null || worker.credit > res.credit)) {
+                    res = worker;
+                }
+            }
+        }
+        if (res != null) {
+            res.credit--;
+            res.dispatched++;
+            res.inFlight++;
+        }
+        return res;
+    }
+
+    /**
+     * passes the token to a worker with credit, or keeps it until a worker releases credit
+     */
+    @Override
+    public void post(T token) {
+        if (token == null) {
+            throw new NullPointerException();
+        }
+        WorkerSubscription worker;
+        synchronized (this) {
+            if (completeRequested) {
+                throw new IllegalStateException("completed already");
+            }
+            worker = backlog.isEmpty() ? takeWorker() : null;
+            if (worker == null) {
+                backlog.add(token);
+                return;
+            }
+            delivering++;
+        }
+        deliver(worker, token);
+    }
+
+    private void deliver(WorkerSubscription worker, T token) {
+        try {
+            worker.subscriber.post(token);
+        } finally {
+            boolean retired;
+            boolean drained;
+            synchronized (this) {
+                drained = --delivering == 0 && completeRequested;
+                retired = --worker.inFlight == 0 && worker.retired;
+            }
+            if (retired) {
+                worker.subscriber.complete();
+            }
+            if (drained) {
+                completeIfDrained(); // complete() was deferred by this delivery
+            }
+        }
+    }
+
+    /**
+     * Completes all the workers after the tokens in the queue are passed to them.
+     */
+    @Override
+    public void complete() {
+        synchronized (this) {
+            if (completeRequested) {
+                return;
+            }
+            completeRequested = true;
+        }
+        completeIfDrained();
+    }
+
+    private void completeIfDrained() {
+        synchronized (this) {
+            if (completed || !completeRequested || !backlog.isEmpty() || delivering > 0) {
+                return;
+            }
+            completed = true;
+        }
+        Object[] subs = workers.snapshot();
+        for (int k = 0; k < subs.length; k++) {
+            WorkerSubscription subscription = CopyOnWriteArray.get(subs, k);
+            subscription.subscriber.complete();
+        }
+    }
+
+    /**
+     * passes tokens from the queue to the worker while it has credit
+     */
+    private void drainTo(WorkerSubscription worker) {
+        for (;;) {
+            T token;
+            synchronized (this) {
+                if (worker.cancelled || worker.credit <= 0 || backlog.isEmpty()) {
+                    break;
+                }
+                token = backlog.poll();
+                worker.credit--;
+                worker.dispatched++;
+                worker.inFlight++;
+                delivering++;
+            }
+            deliver(worker, token);
+        }
+        completeIfDrained();
+    }
+
+    /**
+     * statistics of a worker
+     */
+    public interface WorkerMetrics {
+
+        StreamSubscriber<?> getWorker();
+
+        /**
+         * @return number of tokens passed to the worker
+         */
+        long getDispatched();
+
+        /**
+         * @return number of tokens the worker is ready to accept
+         */
+        long getCredit();
+    }
+
+    class WorkerSubscription implements CreditSubscription, WorkerMetrics {
+        final StreamSubscriber<? super T> subscriber;
+        /** guarded by the lock of the queue */
+        long credit = 0;
+        volatile long dispatched = 0;
+        volatile boolean cancelled = false;
+        /** tokens taken for this worker, but not yet posted to it; guarded by the lock of the queue */
+        int inFlight = 0;
+        /** removed from the pool: complete when no token is in flight */
+        boolean retired = false;
+
+        WorkerSubscription(StreamSubscriber<? super T> subscriber) {
+            if (subscriber == null) {
+                throw new NullPointerException();
+            }
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void release(long delta) {
+            if (delta < 0) {
+                throw new IllegalArgumentException("credit delta must be >= 0");
+            }
+            synchronized (WorkQueue.this) {
+                credit += delta;
+            }
+            drainTo(this);
+        }
+
+        @Override
+        public boolean cancel() {
+            synchronized (WorkQueue.this) {
+                if (cancelled) {
+                    return false;
+                }
+                cancelled = true;
+                credit = 0;
+            }
+            workers.remove(this);
+            return true;
+        }
+
+        @Override
+        public StreamSubscriber<?> getWorker() {
+            return subscriber;
+        }
+
+        @Override
+        public long getDispatched() {
+            return dispatched;
+        }
+
+        @Override
+        public long getCredit() {
+            synchronized (WorkQueue.this) {
+                return credit;
+            }
+        }
+    }
+}
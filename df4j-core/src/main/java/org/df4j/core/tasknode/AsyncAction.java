@@ -57,7 +57,7 @@ public class AsyncAction<R> extends AsyncProc {
         if (!isStarted()) {
             throw new IllegalStateException("not started");
         }
-        locks.forEach(lock -> lock.purge());
+        purgeLocks();
         Object[] args = new Object[asyncParams.size()];
         for (int k = 0; k< asyncParams.size(); k++) {
             AsyncParam asyncParam = asyncParams.get(k);
@@ -66,6 +66,16 @@ public class AsyncAction<R> extends AsyncProc {
         return args;
     }
 
+    /**
+     * purges all locks after the tokens were consumed.
+     * Does not allocate, so can be called from typed actors on each firing.
+     */
+    protected void purgeLocks() {
+        for (int k = 0; k < locks.size(); k++) {
+            locks.get(k).purge();
+        }
+    }
+
     protected R runAction() throws Exception {
         if (actionCaller == null) {
             try {
@@ -13,9 +13,10 @@ import org.df4j.core.util.executor.DirectExecutor;
 import org.df4j.core.util.executor.CurrentThreadExecutor;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 /**
  * AsyncProc is an Asynchronous Procedure.
@@ -25,6 +26,14 @@ import java.util.concurrent.atomic.AtomicInteger;
  * using supplied {@link java.util.concurrent.Executor} as soon as all connectors are unblocked.
  *
  * This class contains base classes for locks and connectors
+ *
+ * The state of all pins is kept in a single word, {@link #pinState}, which is updated with CAS only.
+ * While the node has no more than {@link #MASK_CAPACITY} pins, each pin owns a bit in that word,
+ * and the bit is set when the pin is blocked.
+ * When the next pin is created, the node switches once and forever to counting mode:
+ * the sign bit of the word is set, the rest of the word is the number of blocked pins,
+ * and each pin keeps its own state in {@link BaseLock#pinFlag}.
+ * In both modes, the thread which turns the word to zero is the only one to call {@link #fire()}.
  */
 public abstract class AsyncProc implements Runnable {
     public static final DirectExecutor directExecutor = DirectExecutor.directExecutor;
@@ -32,10 +41,28 @@ public abstract class AsyncProc implements Runnable {
     public static final Executor asyncExec = ForkJoinPool.commonPool();
     public static final Executor newThreadExec = (Runnable r)->new Thread(r).start();
 
+    /**
+     * max number of pins which can be represented as bits of {@link #pinState}
+     */
+    protected static final int MASK_CAPACITY = 63;
+    /**
+     * set in {@link #pinState} when the node works in counting mode
+     */
+    private static final long COUNTING = Long.MIN_VALUE;
+
+    private static final int UNKNOWN = -1;
+    private static final int READY = 0;
+    private static final int BLOCKED = 1;
+
+    private static final AtomicLongFieldUpdater<AsyncProc> pinStateUpdater
+            = AtomicLongFieldUpdater.newUpdater(AsyncProc.class, "pinState");
+    private static final AtomicIntegerFieldUpdater<BaseLock> pinFlagUpdater
+            = AtomicIntegerFieldUpdater.newUpdater(BaseLock.class, "pinFlag");
+
     /**
      * the set of all b/w Pins
      */
-    protected final HashSet<Lock> locks = new HashSet<>();
+    protected final ArrayList<Lock> locks = new ArrayList<>();
     /**
      * the set of all colored Pins, to form array of arguments
      */
@@ -43,11 +70,15 @@ public abstract class AsyncProc implements Runnable {
     /**
      * total number of created pins
      */
-    protected AtomicInteger pinCount = new AtomicInteger();
+    protected final AtomicInteger pinCount = new AtomicInteger();
     /**
-     * total number of created pins
+     * bit mask of blocked pins, or, in counting mode, {@link #COUNTING} plus number of blocked pins
+     */
+    private volatile long pinState;
+    /**
+     * the bit mask at the moment of switching to counting mode
      */
-    protected AtomicInteger blockedPinCount = new AtomicInteger();
+    private volatile long migratedPins;
 
     protected Executor executor = asyncExec;
 
@@ -76,6 +107,40 @@ public abstract class AsyncProc implements Runnable {
 
     protected abstract boolean isStarted();
 
+    /**
+     * @return true if all pins are unblocked
+     */
+    public boolean isReady() {
+        return (pinState & ~COUNTING) == 0;
+    }
+
+    /**
+     * @param pin a pin of this node
+     * @return true if all pins except the given one are unblocked
+     */
+    protected boolean isReadyExcept(Lock pin) {
+        long state = pinState;
+        if (state >= 0) {
+            return (state & ~pin.pinBit) == 0;
+        }
+        long blocked = state & ~COUNTING;
+        return blocked == 0 || blocked == 1 && pin.isBlocked();
+    }
+
+    /**
+     * switches this node to counting mode.
+     * Called only by the creator of the pin number {@link #MASK_CAPACITY}.
+     */
+    private void migrate() {
+        for (;;) {
+            long mask = pinState;
+            migratedPins = mask;
+            if (pinStateUpdater.compareAndSet(this, mask, COUNTING | Long.bitCount(mask))) {
+                return;
+            }
+        }
+    }
+
     /**
      * Basic class for all locs and connectors (places for tokens).
      * Asynchronous version of binary semaphore.
@@ -83,14 +148,32 @@ public abstract class AsyncProc implements Runnable {
      * initially in non-blocked state
      */
     private abstract class BaseLock {
-        int pinNumber; // distinct for all other connectors of this node
-        boolean blocked;
+        final int pinNumber; // distinct for all other connectors of this node
+        /**
+         * the bit of this pin in mask mode, 0 for pins created in counting mode
+         */
+        final long pinBit;
+        /**
+         * the state of this pin in counting mode, UNKNOWN until first used in that mode
+         */
+        volatile int pinFlag = UNKNOWN;
 
         public BaseLock(boolean blocked) {
             this.pinNumber = pinCount.getAndIncrement();
-            this.blocked = blocked;
+            if (pinNumber < MASK_CAPACITY) {
+                pinBit = 1L << pinNumber;
+            } else {
+                pinBit = 0;
+                if (pinNumber == MASK_CAPACITY) {
+                    migrate();
+                } else {
+                    while (pinState >= 0) { // migration in progress
+                        Thread.yield();
+                    }
+                }
+            }
             if (blocked) {
-                blockedPinCount.incrementAndGet();
+                turnOff();
             }
             register();
         }
@@ -102,8 +185,25 @@ public abstract class AsyncProc implements Runnable {
             this(true);
         }
 
+        /**
+         * @return the state of this pin in counting mode
+         */
+        private int pinFlag() {
+            int flag = pinFlag;
+            if (flag == UNKNOWN) {
+                flag = (migratedPins & pinBit) == 0? READY: BLOCKED;
+                pinFlagUpdater.compareAndSet(this, UNKNOWN, flag);
+                flag = pinFlag;
+            }
+            return flag;
+        }
+
         public boolean isBlocked() {
-            return blocked;
+            long state = pinState;
+            if (state >= 0) {
+                return (state & pinBit) != 0;
+            }
+            return pinFlag() == BLOCKED;
         }
 
         /**
@@ -111,20 +211,72 @@ public abstract class AsyncProc implements Runnable {
          * called when a token is consumed and the pin become empty
          */
         public void turnOff() {
-            if (blocked) {
-                return;
+            for (;;) {
+                long state = pinState;
+                if (state < 0) {
+                    countingTurnOff();
+                    return;
+                }
+                if ((state & pinBit) != 0) {
+                    return;
+                }
+                if (pinStateUpdater.compareAndSet(AsyncProc.this, state, state | pinBit)) {
+                    return;
+                }
             }
-            blocked = true;
-            blockedPinCount.incrementAndGet();
         }
 
+        /**
+         * unlocks the pin
+         * and fires the node if this was the last blocked pin
+         *
+         * @return true if this call changed the pin state
+         */
         public boolean turnOn() {
-            if (!blocked) {
+            for (;;) {
+                long state = pinState;
+                if (state < 0) {
+                    return countingTurnOn();
+                }
+                if ((state & pinBit) == 0) {
+                    return false;
+                }
+                long newState = state & ~pinBit;
+                if (pinStateUpdater.compareAndSet(AsyncProc.this, state, newState)) {
+                    if (newState == 0) {
+                        fire();
+                    }
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * The counter is incremented before the pin flag is set,
+         * so the counter is never less than the number of blocked pins,
+         * and cannot reach zero while any pin is blocked.
+         */
+        private void countingTurnOff() {
+            if (pinFlag() != READY) {
+                return;
+            }
+            pinStateUpdater.incrementAndGet(AsyncProc.this);
+            if (!pinFlagUpdater.compareAndSet(this, READY, BLOCKED)) {
+                // blocked concurrently by other thread, undo
+                if (pinStateUpdater.decrementAndGet(AsyncProc.this) == COUNTING) {
+                    fire();
+                }
+            }
+        }
+
+        private boolean countingTurnOn() {
+            if (pinFlag() != BLOCKED) {
+                return false;
+            }
+            if (!pinFlagUpdater.compareAndSet(this, BLOCKED, READY)) {
                 return false;
             }
-            blocked = false;
-            long res = blockedPinCount.decrementAndGet();
-            if (res == 0) {
+            if (pinStateUpdater.decrementAndGet(AsyncProc.this) == COUNTING) {
                 fire();
             }
             return true;
@@ -158,9 +310,7 @@ public abstract class AsyncProc implements Runnable {
         }
 
         protected void unRegister() {
-            if (blocked) {
-                turnOn();
-            }
+            turnOn();
             locks.remove(this);
         }
 
@@ -201,9 +351,7 @@ public abstract class AsyncProc implements Runnable {
             if (isStarted()) {
                 throw new IllegalStateException("cannot unregister connector after start");
             }
-            if (blocked) {
-                turnOn();
-            }
+            turnOn();
             asyncParams.remove(this);
         }
 
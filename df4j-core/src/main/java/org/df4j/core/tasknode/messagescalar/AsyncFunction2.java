@@ -0,0 +1,26 @@
+package org.df4j.core.tasknode.messagescalar;
+
+import org.df4j.core.boundconnector.messagescalar.ConstInput;
+
+/**
+ * Scalar node with two typed parameters.
+ * Unlike {@link AsyncBiFunction}, calls {@link #apply} directly, without an invoker and an array of arguments.
+ *
+ * @param <A> type of the first parameter
+ * @param <B> type of the second parameter
+ * @param <R> type of the result
+ */
+public abstract class AsyncFunction2<A, B, R> extends AsyncSupplier<R> {
+    public final ConstInput<A> param1 = new ConstInput<>(this);
+    public final ConstInput<B> param2 = new ConstInput<>(this);
+
+    @Override
+    protected R runAction() throws Exception {
+        purgeLocks();
+        R value = apply(param1.current(), param2.current());
+        completeResult(value);
+        return value;
+    }
+
+    protected abstract R apply(A a, B b) throws Exception;
+}
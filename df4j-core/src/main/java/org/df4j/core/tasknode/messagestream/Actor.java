@@ -2,15 +2,101 @@ package org.df4j.core.tasknode.messagestream;
 
 import org.df4j.core.tasknode.AsyncAction;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Actor is a reusable AsyncProc: after execution, it executes again as soon as new array of arguments is ready.
+ * <p>
+ * By default, each execution is submitted to the executor separately.
+ * To reduce the cost of submission, an actor can process a batch of ready token sets in a single run:
+ * see {@link #setBatchSize(int)} and {@link #setTimeQuantum(long, TimeUnit)}.
+ * The run ends when the batch is full, the time quantum expired, or some input is empty,
+ * so other actors sharing the executor still get their turn.
  */
 public class Actor extends AsyncAction<Void> {
+    private int batchSize = 1;
+    private long timeQuantum = 0;
+
+    /* statistics, updated only by the running actor */
+    private volatile long runCount;
+    private volatile long actionCount;
+    private volatile int maxBatch;
+
+    /**
+     * @param batchSize max number of action executions in a single run, 1 by default
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * limits the duration of a single run. The limit is checked after each action execution.
+     *
+     * @param time max duration of a run, 0 means no limit
+     * @param unit time unit of the duration
+     */
+    public void setTimeQuantum(long time, TimeUnit unit) {
+        if (time < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.timeQuantum = unit.toNanos(time);
+    }
+
+    /**
+     * @return number of times this actor was run by the executor
+     */
+    public long getRunCount() {
+        return runCount;
+    }
+
+    /**
+     * @return number of action executions
+     */
+    public long getActionCount() {
+        return actionCount;
+    }
+
+    /**
+     * @return the largest number of action executions in a single run
+     */
+    public int getMaxBatch() {
+        return maxBatch;
+    }
+
+    /**
+     * @return average number of action executions in a single run
+     */
+    public double getAverageBatch() {
+        long runs = runCount;
+        return runs == 0 ? 0 : (double) actionCount / runs;
+    }
+
     @Override
     public void run() {
         try {
             controlLock.turnOff();
-            runAction();
+            int count = 0;
+            try {
+                long deadline = timeQuantum == 0 ? 0 : System.nanoTime() + timeQuantum;
+                do {
+                    runAction();
+                    count++;
+                } while (count < batchSize && !stopped && isReadyExcept(controlLock)
+                        && (deadline == 0 || System.nanoTime() - deadline < 0));
+            } finally {
+                runCount++;
+                actionCount += count;
+                if (count > maxBatch) {
+                    maxBatch = count;
+                }
+            }
             start(); // restart execution
         } catch (Throwable e) {
             stop();
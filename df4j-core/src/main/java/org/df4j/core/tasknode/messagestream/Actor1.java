@@ -10,8 +10,17 @@
 package org.df4j.core.tasknode.messagestream;
 
 import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
+import org.df4j.core.boundconnector.messagestream.BoundedStreamInput;
+import org.df4j.core.boundconnector.messagestream.ConcurrentStreamInput;
+import org.df4j.core.boundconnector.messagestream.ConflatingStreamInput;
+import org.df4j.core.boundconnector.messagestream.PriorityStreamInput;
 import org.df4j.core.boundconnector.messagestream.StreamSubscriber;
 import org.df4j.core.boundconnector.messagestream.StreamInput;
+import org.df4j.core.tasknode.AsyncProc;
+
+import java.util.Comparator;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * A dataflow Actor with one predefined input stream port.
@@ -20,7 +29,55 @@ import org.df4j.core.boundconnector.messagestream.StreamInput;
  * @param <M> the type of messages, accepted via predefined port.
  */
 public abstract class Actor1<M> extends Actor implements StreamSubscriber<M> {
-    protected final StreamInput<M> mainInput = new StreamInput<M>(this);
+    protected final StreamInput<M> mainInput;
+
+    public Actor1() {
+        this(StreamInput::new);
+    }
+
+    /**
+     * @param inputFactory creates the predefined port for this actor;
+     *                     see {@link #concurrent()}, {@link #bounded(int)}, {@link #conflating(Function)}
+     *                     and {@link #priority(Comparator, Predicate)}
+     */
+    protected Actor1(Function<AsyncProc, ? extends StreamInput<M>> inputFactory) {
+        mainInput = inputFactory.apply(this);
+    }
+
+    /**
+     * @return factory of {@link ConcurrentStreamInput},
+     * which scales better when many threads post messages to the actor
+     */
+    public static <M> Function<AsyncProc, StreamInput<M>> concurrent() {
+        return ConcurrentStreamInput::new;
+    }
+
+    /**
+     * @param capacity capacity of the port
+     * @return factory of {@link BoundedStreamInput} with given capacity, so that a publisher like
+     * {@link org.df4j.core.boundconnector.messagestream.BoundedStreamOutput} cannot overflow it
+     */
+    public static <M> Function<AsyncProc, StreamInput<M>> bounded(int capacity) {
+        return (actor) -> new BoundedStreamInput<>(actor, capacity);
+    }
+
+    /**
+     * @param keyFunction key of messages
+     * @return factory of {@link ConflatingStreamInput}, where a message replaces the pending message
+     * with the same key, and the actor skips stale messages
+     */
+    public static <M> Function<AsyncProc, StreamInput<M>> conflating(Function<? super M, ?> keyFunction) {
+        return (actor) -> new ConflatingStreamInput<>(actor, keyFunction);
+    }
+
+    /**
+     * @param comparator order of ordinary messages
+     * @param isControl selects control messages, which overtake all other messages; may be null
+     * @return factory of {@link PriorityStreamInput}
+     */
+    public static <M> Function<AsyncProc, StreamInput<M>> priority(Comparator<? super M> comparator, Predicate<? super M> isControl) {
+        return (actor) -> new PriorityStreamInput<>(actor, comparator, isControl);
+    }
 
     @Override
     public synchronized void onSubscribe(SimpleSubscription subscription) {
@@ -29,7 +86,12 @@ public abstract class Actor1<M> extends Actor implements StreamSubscriber<M> {
 
     @Override
     public void post(M m) {
-        mainInput.complete(m);
+        mainInput.post(m);
+    }
+
+    @Override
+    public void postBatch(M[] items, int off, int len) {
+        mainInput.postBatch(items, off, len);
     }
 
     @Override
@@ -0,0 +1,28 @@
+package org.df4j.core.tasknode.messagestream;
+
+import org.df4j.core.boundconnector.messagestream.StreamInput;
+
+/**
+ * A dataflow Actor with two predefined input stream ports.
+ * Tokens are passed to {@link #act} directly, without packing them into an array of arguments,
+ * so that firing does not allocate memory.
+ * When a stream is closed, the corresponding argument is null.
+ *
+ * @param <A> the type of messages, accepted via the first port
+ * @param <B> the type of messages, accepted via the second port
+ */
+public abstract class Actor2<A, B> extends Actor {
+    public final StreamInput<A> param1 = new StreamInput<>(this);
+    public final StreamInput<B> param2 = new StreamInput<>(this);
+
+    @Override
+    protected Void runAction() throws Exception {
+        purgeLocks();
+        A a = param1.next();
+        B b = param2.next();
+        act(a, b);
+        return null;
+    }
+
+    protected abstract void act(A a, B b) throws Exception;
+}
@@ -0,0 +1,30 @@
+package org.df4j.core.tasknode.messagestream;
+
+import org.df4j.core.boundconnector.messagestream.StreamInput;
+
+/**
+ * A dataflow Actor with three predefined input stream ports.
+ * Like {@link Actor2}, passes tokens to {@link #act} without allocating an array of arguments.
+ * When a stream is closed, the corresponding argument is null.
+ *
+ * @param <A> the type of messages, accepted via the first port
+ * @param <B> the type of messages, accepted via the second port
+ * @param <C> the type of messages, accepted via the third port
+ */
+public abstract class Actor3<A, B, C> extends Actor {
+    public final StreamInput<A> param1 = new StreamInput<>(this);
+    public final StreamInput<B> param2 = new StreamInput<>(this);
+    public final StreamInput<C> param3 = new StreamInput<>(this);
+
+    @Override
+    protected Void runAction() throws Exception {
+        purgeLocks();
+        A a = param1.next();
+        B b = param2.next();
+        C c = param3.next();
+        act(a, b, c);
+        return null;
+    }
+
+    protected abstract void act(A a, B b, C c) throws Exception;
+}
@@ -0,0 +1,61 @@
+package org.df4j.core.tasknode.messagestream;
+
+import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
+import org.df4j.core.boundconnector.primitivestream.DoubleStreamInput;
+import org.df4j.core.boundconnector.primitivestream.DoubleStreamOutput;
+import org.df4j.core.boundconnector.primitivestream.DoubleStreamPublisher;
+import org.df4j.core.boundconnector.primitivestream.DoubleStreamSubscriber;
+
+/**
+ * Transforms a stream of double values without boxing.
+ * When the input stream is completed, completes the output stream and stops.
+ */
+public abstract class DoubleStreamProcessor extends Actor implements DoubleStreamSubscriber, DoubleStreamPublisher {
+    protected final DoubleStreamInput input = new DoubleStreamInput(this);
+    protected final DoubleStreamOutput output = new DoubleStreamOutput(this);
+
+    @Override
+    public void onSubscribe(SimpleSubscription subscription) {
+        input.onSubscribe(subscription);
+    }
+
+    @Override
+    public void post(double value) {
+        input.post(value);
+    }
+
+    @Override
+    public void complete() {
+        input.complete();
+    }
+
+    @Override
+    public boolean completeExceptionally(Throwable ex) {
+        return input.completeExceptionally(ex);
+    }
+
+    @Override
+    public <S extends DoubleStreamSubscriber> S subscribe(S subscriber) {
+        output.subscribe(subscriber);
+        return subscriber;
+    }
+
+    @Override
+    protected Void runAction() throws Exception {
+        if (input.isClosed()) {
+            Throwable exception = input.getException();
+            if (exception == null) {
+                output.complete();
+            } else {
+                output.completeExceptionally(exception);
+            }
+            stop();
+            return null;
+        }
+        output.post(process(input.nextDouble()));
+        return null;
+    }
+
+    protected abstract double process(double value);
+
+}
@@ -0,0 +1,61 @@
+package org.df4j.core.tasknode.messagestream;
+
+import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
+import org.df4j.core.boundconnector.primitivestream.IntStreamInput;
+import org.df4j.core.boundconnector.primitivestream.IntStreamOutput;
+import org.df4j.core.boundconnector.primitivestream.IntStreamPublisher;
+import org.df4j.core.boundconnector.primitivestream.IntStreamSubscriber;
+
+/**
+ * Transforms a stream of int values without boxing.
+ * When the input stream is completed, completes the output stream and stops.
+ */
+public abstract class IntStreamProcessor extends Actor implements IntStreamSubscriber, IntStreamPublisher {
+    protected final IntStreamInput input = new IntStreamInput(this);
+    protected final IntStreamOutput output = new IntStreamOutput(this);
+
+    @Override
+    public void onSubscribe(SimpleSubscription subscription) {
+        input.onSubscribe(subscription);
+    }
+
+    @Override
+    public void post(int value) {
+        input.post(value);
+    }
+
+    @Override
+    public void complete() {
+        input.complete();
+    }
+
+    @Override
+    public boolean completeExceptionally(Throwable ex) {
+        return input.completeExceptionally(ex);
+    }
+
+    @Override
+    public <S extends IntStreamSubscriber> S subscribe(S subscriber) {
+        output.subscribe(subscriber);
+        return subscriber;
+    }
+
+    @Override
+    protected Void runAction() throws Exception {
+        if (input.isClosed()) {
+            Throwable exception = input.getException();
+            if (exception == null) {
+                output.complete();
+            } else {
+                output.completeExceptionally(exception);
+            }
+            stop();
+            return null;
+        }
+        output.post(process(input.nextInt()));
+        return null;
+    }
+
+    protected abstract int process(int value);
+
+}
@@ -0,0 +1,61 @@
+package org.df4j.core.tasknode.messagestream;
+
+import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
+import org.df4j.core.boundconnector.primitivestream.LongStreamInput;
+import org.df4j.core.boundconnector.primitivestream.LongStreamOutput;
+import org.df4j.core.boundconnector.primitivestream.LongStreamPublisher;
+import org.df4j.core.boundconnector.primitivestream.LongStreamSubscriber;
+
+/**
+ * Transforms a stream of long values without boxing.
+ * When the input stream is completed, completes the output stream and stops.
+ */
+public abstract class LongStreamProcessor extends Actor implements LongStreamSubscriber, LongStreamPublisher {
+    protected final LongStreamInput input = new LongStreamInput(this);
+    protected final LongStreamOutput output = new LongStreamOutput(this);
+
+    @Override
+    public void onSubscribe(SimpleSubscription subscription) {
+        input.onSubscribe(subscription);
+    }
+
+    @Override
+    public void post(long value) {
+        input.post(value);
+    }
+
+    @Override
+    public void complete() {
+        input.complete();
+    }
+
+    @Override
+    public boolean completeExceptionally(Throwable ex) {
+        return input.completeExceptionally(ex);
+    }
+
+    @Override
+    public <S extends LongStreamSubscriber> S subscribe(S subscriber) {
+        output.subscribe(subscriber);
+        return subscriber;
+    }
+
+    @Override
+    protected Void runAction() throws Exception {
+        if (input.isClosed()) {
+            Throwable exception = input.getException();
+            if (exception == null) {
+                output.complete();
+            } else {
+                output.completeExceptionally(exception);
+            }
+            stop();
+            return null;
+        }
+        output.post(process(input.nextLong()));
+        return null;
+    }
+
+    protected abstract long process(long value);
+
+}
@@ -0,0 +1,193 @@
+package org.df4j.core.tasknode.messagestream;
+
+import org.df4j.core.boundconnector.messagestream.StreamOutput;
+import org.df4j.core.boundconnector.messagestream.StreamPublisher;
+import org.df4j.core.boundconnector.messagestream.StreamSubscriber;
+import org.df4j.core.boundconnector.permitstream.Semafor;
+
+/**
+ * A stream processor which runs {@link #process(Object)} for several messages at once, on the executor of this node,
+ * and still posts the results in the order of the messages.
+ * <p>
+ * Each message gets a sequence number, and its result is kept in a reorder buffer until the results
+ * of all previous messages are posted. The buffer has a fixed size, the window: when a slow message
+ * holds back that many results, no more messages are taken, so the memory used is bounded.
+ * Suits CPU-heavy stateless transformations, like parsing or compression.
+ * <p>
+ * Null results are not posted. If {@link #process(Object)} throws an exception, or the input stream fails,
+ * the output is completed exceptionally when the results before it are posted.
+ *
+ * @param <M> type of messages
+ * @param <R> type of results
+ */
+public abstract class ParallelStreamProcessor<M, R> extends Actor1<M> implements StreamPublisher<R> {
+    private static final Object NULL = new Object();
+
+    protected final StreamOutput<R> output = new StreamOutput<>(this);
+    /** limits the number of concurrent invocations of {@link #process(Object)} */
+    private final Semafor running;
+    /** limits the number of messages taken, but with results not yet posted */
+    private final Semafor window;
+    /** reorder buffer, indexed by sequence number modulo its size; guards the fields below */
+    private final Object[] slots;
+    /** accessed by the actor only */
+    private long nextSeq = 0;
+    /** sequence number of the next result to post */
+    private long emitSeq = 0;
+    private long endSeq = -1;
+    private int pending = 0;
+    private boolean emitting = false;
+    private boolean failed = false;
+    /** failure of the input stream */
+    private volatile Throwable inputFailure;
+
+    /**
+     * @param parallelism max number of concurrent invocations of {@link #process(Object)}
+     * @param windowSize size of the reorder buffer, not less than parallelism
+     */
+    public ParallelStreamProcessor(int parallelism, int windowSize) {
+        if (parallelism < 1 || windowSize < parallelism) {
+            throw new IllegalArgumentException("expected 0 < parallelism <= windowSize");
+        }
+        running = new Semafor(this, parallelism);
+        window = new Semafor(this, windowSize);
+        slots = new Object[windowSize];
+    }
+
+    /**
+     * @param parallelism max number of concurrent invocations of {@link #process(Object)};
+     *                    the reorder buffer is 4 times larger
+     */
+    public ParallelStreamProcessor(int parallelism) {
+        this(parallelism, parallelism * 4);
+    }
+
+    @Override
+    public <S extends StreamSubscriber<? super R>> S subscribe(S subscriber) {
+        output.subscribe(subscriber);
+        return subscriber;
+    }
+
+    /**
+     * @return number of results waiting in the reorder buffer for the result of an earlier message
+     */
+    public int getPendingResults() {
+        synchronized (slots) {
+            return pending;
+        }
+    }
+
+    /**
+     * the output is completed exceptionally after the results of messages posted before the failure
+     */
+    @Override
+    public boolean completeExceptionally(Throwable throwable) {
+        inputFailure = throwable;
+        mainInput.complete();
+        return true;
+    }
+
+    @Override
+    protected void runAction(M message) {
+        if (message == null) {
+            synchronized (slots) {
+                endSeq = nextSeq;
+            }
+            emit();
+            return;
+        }
+        running.purge(); // takes a permit
+        window.purge();
+        long seq = nextSeq++;
+        getExecutor().execute(() -> runTask(seq, message));
+    }
+
+    private void runTask(long seq, M message) {
+        Object res;
+        try {
+            R r = process(message);
+            res = r == null ? NULL : r;
+        } catch (Throwable e) {
+            res = new Failure(e);
+        }
+        running.release(1);
+        synchronized (slots) {
+            slots[(int) (seq % slots.length)] = res;
+            pending++;
+        }
+        emit();
+    }
+
+    /**
+     * posts ready results in sequence order. Only one thread emits at a time;
+     * others leave their results in the buffer for it.
+     */
+    private void emit() {
+        synchronized (slots) {
+            if (emitting) {
+                return;
+            }
+            emitting = true;
+        }
+        for (;;) {
+            Object res;
+            boolean end;
+            synchronized (slots) {
+                int index = (int) (emitSeq % slots.length);
+                res = slots[index];
+                if (res == null) {
+                    emitting = false;
+                    end = emitSeq == endSeq && !failed;
+                    if (end) {
+                        endSeq = -1;
+                    }
+                } else {
+                    end = false;
+                    slots[index] = null;
+                    pending--;
+                    emitSeq++;
+                }
+            }
+            if (res == null) {
+                if (end) {
+                    Throwable failure = inputFailure;
+                    if (failure != null) {
+                        output.completeExceptionally(failure);
+                    } else {
+                        output.complete();
+                    }
+                }
+                return;
+            }
+            if (failed) {
+                continue; // results after the failure are dropped
+            }
+            if (res instanceof Failure) {
+                failed = true;
+                output.completeExceptionally(((Failure) res).exception);
+                stop();
+            } else if (res != NULL) {
+                output.post(result(res));
+            }
+            window.release(1);
+        }
+    }
+
+    protected abstract R process(M message) throws Exception;
+
+    /**
+     * @return a slot value which is neither {@link #NULL} nor a {@link Failure}
+     */
+    @SuppressWarnings("unchecked")
+    private static <R> R result(Object slot) {
+        return (R) slot;
+    }
+
+    private static class Failure {
+        final Throwable exception;
+
+        Failure(Throwable exception) {
+            this.exception = exception;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package org.df4j.core.tasknode.messagestream;
+
+import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
+import org.df4j.core.boundconnector.messagestream.StreamOutput;
+import org.df4j.core.boundconnector.messagestream.StreamPublisher;
+import org.df4j.core.boundconnector.messagestream.StreamSubscriber;
+import org.df4j.core.tasknode.AsyncAction;
+import org.df4j.core.tasknode.AsyncProc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * A stream processor which runs on several shards in parallel, and still processes the messages
+ * with the same key in the order they were posted.
+ * <p>
+ * Each message is routed by the hash of its key to one of the shards, which are {@link Actor1}s
+ * with their own input queues. Results of all shards are merged into the single {@link #output}.
+ * {@link #process(Object)} is called concurrently for different keys, but never concurrently
+ * for the same key, so per-key state can be kept in a concurrent map.
+ * <p>
+ * Keys are assigned to shards by consistent hashing, so when the number of shards is changed with
+ * {@link #setPartitions(int)}, only the keys of added or removed shards move to other shards.
+ * Messages of moved keys are held until the shards have processed all messages posted before the change,
+ * so the order of each key is kept across the change; messages of other keys are not delayed.
+ * <p>
+ * If {@link #process(Object)} throws an exception, or the input stream fails, the output is completed
+ * exceptionally at once. Shards then skip the remaining messages, so rebalancing and completion still end.
+ *
+ * @param <K> type of keys
+ * @param <M> type of messages
+ * @param <R> type of results
+ */
+public abstract class PartitionedProcessor<K, M, R> implements StreamSubscriber<M>, StreamPublisher<R> {
+    /** number of points of each shard on the hash ring */
+    protected static final int VIRTUAL_NODES = 64;
+
+    protected final Function<? super M, ? extends K> keyFunction;
+    /** owner of the output pin; never started */
+    private final AsyncProc outputNode = new AsyncAction<Void>();
+    protected final StreamOutput<R> output = new StreamOutput<>(outputNode);
+    private Executor executor = AsyncProc.asyncExec;
+    private int nextShardId = 0;
+    /** shards of the current ring */
+    private final ArrayList<Shard> shards = new ArrayList<>();
+    /** shards removed from the current ring, to be completed when the rebalance is over */
+    private final ArrayList<Shard> retiring = new ArrayList<>();
+    /** the ring before the rebalance, followed by the rings set since */
+    private final ArrayList<Ring> rings = new ArrayList<>();
+    /** messages of moved keys, posted during the rebalance */
+    private final ArrayList<M> held = new ArrayList<>();
+    private volatile boolean rebalancing = false;
+    private boolean completeRequested = false;
+    private volatile boolean failed = false;
+    private int activeShards;
+
+    /**
+     * @param partitions initial number of shards
+     * @param keyFunction extracts the key of a message
+     */
+    public PartitionedProcessor(int partitions, Function<? super M, ? extends K> keyFunction) {
+        if (keyFunction == null) {
+            throw new NullPointerException();
+        }
+        this.keyFunction = keyFunction;
+        setPartitions(partitions);
+    }
+
+    /**
+     * @param executor executor of current and future shards
+     */
+    public synchronized void setExecutor(Executor executor) {
+        this.executor = executor;
+        for (int k = 0; k < shards.size(); k++) {
+            shards.get(k).setExecutor(executor);
+        }
+    }
+
+    @Override
+    public <S extends StreamSubscriber<? super R>> S subscribe(S subscriber) {
+        output.subscribe(subscriber);
+        return subscriber;
+    }
+
+    @Override
+    public void onSubscribe(SimpleSubscription subscription) {
+    }
+
+    public synchronized int getPartitions() {
+        return shards.size();
+    }
+
+    /**
+     * @return true while messages of moved keys are held after {@link #setPartitions(int)}
+     */
+    public boolean isRebalancing() {
+        return rebalancing;
+    }
+
+    /**
+     * @return numbers of messages processed by each shard of the current ring
+     */
+    public synchronized long[] getProcessedCounts() {
+        long[] res = new long[shards.size()];
+        for (int k = 0; k < res.length; k++) {
+            res[k] = shards.get(k).processed;
+        }
+        return res;
+    }
+
+    /**
+     * Adds new shards or removes the most recently added ones.
+     * Removed shards process the messages posted to them already, and then complete.
+     *
+     * @param partitions new number of shards
+     */
+    public void setPartitions(int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("partitions must be > 0");
+        }
+        synchronized (this) {
+            if (completeRequested) {
+                throw new IllegalStateException("completed already");
+            }
+            if (partitions == shards.size()) {
+                return;
+            }
+            while (shards.size() < partitions) {
+                Shard shard = new Shard(nextShardId++);
+                shard.setExecutor(executor);
+                shards.add(shard);
+                shard.start();
+            }
+            while (shards.size() > partitions) {
+                retiring.add(shards.remove(shards.size() - 1));
+            }
+            rings.add(new Ring(shards));
+            if (rings.size() == 1) {
+                return; // first ring, nothing to move
+            }
+            for (int k = 0; k < shards.size(); k++) {
+                Shard shard = shards.get(k);
+                shard.target = shard.posted;
+            }
+            for (int k = 0; k < retiring.size(); k++) {
+                Shard shard = retiring.get(k);
+                shard.target = shard.posted;
+            }
+            rebalancing = true;
+        }
+        checkBarrier();
+    }
+
+    /**
+     * ends the rebalance, if all shards have processed the messages posted before it
+     */
+    private synchronized void checkBarrier() {
+        if (!rebalancing) {
+            return;
+        }
+        for (int k = 0; k < shards.size(); k++) {
+            if (shards.get(k).processed < shards.get(k).target) {
+                return;
+            }
+        }
+        for (int k = 0; k < retiring.size(); k++) {
+            if (retiring.get(k).processed < retiring.get(k).target) {
+                return;
+            }
+        }
+        rebalancing = false;
+        Ring ring = rings.get(rings.size() - 1);
+        rings.clear();
+        rings.add(ring);
+        for (int k = 0; k < held.size(); k++) {
+            M message = held.get(k);
+            ring.shardFor(hash(message)).send(message);
+        }
+        held.clear();
+        for (int k = 0; k < retiring.size(); k++) {
+            Shard shard = retiring.get(k);
+            shard.retired = true;
+            shard.complete();
+        }
+        retiring.clear();
+        if (completeRequested) {
+            completeShards();
+        }
+    }
+
+    private int hash(M message) {
+        K key = keyFunction.apply(message);
+        return mix(key == null ? 0 : key.hashCode());
+    }
+
+    /**
+     * routes the message to the shard of its key
+     */
+    @Override
+    public synchronized void post(M message) {
+        if (message == null) {
+            throw new NullPointerException();
+        }
+        if (completeRequested) {
+            throw new IllegalStateException("completed already");
+        }
+        int hash = hash(message);
+        Shard shard = rings.get(0).shardFor(hash);
+        for (int k = 1; k < rings.size(); k++) {
+            if (rings.get(k).shardFor(hash) != shard) {
+                held.add(message); // the key moves
+                return;
+            }
+        }
+        shard.send(message);
+    }
+
+    /**
+     * Completes the shards after the rebalance is over, and the output after all shards have completed.
+     */
+    @Override
+    public synchronized void complete() {
+        if (completeRequested) {
+            return;
+        }
+        completeRequested = true;
+        if (!rebalancing) {
+            completeShards();
+        }
+    }
+
+    private void completeShards() {
+        activeShards = shards.size();
+        for (int k = 0; k < shards.size(); k++) {
+            shards.get(k).complete();
+        }
+    }
+
+    @Override
+    public boolean completeExceptionally(Throwable throwable) {
+        return fail(throwable);
+    }
+
+    private boolean fail(Throwable throwable) {
+        synchronized (this) {
+            if (failed) {
+                return false;
+            }
+            failed = true;
+        }
+        output.completeExceptionally(throwable);
+        return true;
+    }
+
+    private void shardCompleted() {
+        synchronized (this) {
+            if (--activeShards > 0 || failed) {
+                return;
+            }
+        }
+        output.complete();
+    }
+
+    /**
+     * called concurrently by shards, but never concurrently for messages with equal keys
+     *
+     * @param message message to process
+     * @return result posted to the output
+     */
+    protected abstract R process(M message);
+
+    /**
+     * spreads the bits of a hash code, as the finalizer of MurmurHash3 does
+     */
+    static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * consistent hash ring: each shard owns the arcs ending at its points.
+     * The points of a shard depend only on its id, so other shards keep their keys when it is added or removed.
+     */
+    class Ring {
+        final int[] points;
+        final ArrayList<Shard> shards;
+        /** index in {@link #shards} of the owner of each point */
+        final int[] owners;
+
+        Ring(ArrayList<Shard> shards) {
+            int n = shards.size() * VIRTUAL_NODES;
+            long[] entries = new long[n];
+            for (int k = 0; k < shards.size(); k++) {
+                int id = shards.get(k).id;
+                for (int v = 0; v < VIRTUAL_NODES; v++) {
+                    int point = mix(id * VIRTUAL_NODES + v + 0x9e3779b9);
+                    // point in high bits, index of the shard in low bits
+                    entries[k * VIRTUAL_NODES + v] = ((long) point << 32) | k;
+                }
+            }
+            Arrays.sort(entries);
+            this.shards = new ArrayList<>(shards);
+            points = new int[n];
+            owners = new int[n];
+            for (int k = 0; k < n; k++) {
+                points[k] = (int) (entries[k] >> 32);
+                owners[k] = (int) entries[k];
+            }
+        }
+
+        Shard shardFor(int hash) {
+            int index = Arrays.binarySearch(points, hash);
+            if (index < 0) {
+                index = -index - 1;
+                if (index == points.length) {
+                    index = 0;
+                }
+            }
+            return shards.get(owners[index]);
+        }
+    }
+
+    class Shard extends Actor1<M> {
+        final int id;
+        /** guarded by the lock of the processor */
+        long posted = 0;
+        /** guarded by the lock of the processor */
+        long target = 0;
+        /** written by this shard only */
+        volatile long processed = 0;
+        volatile boolean retired = false;
+
+        Shard(int id) {
+            this.id = id;
+        }
+
+        void send(M message) {
+            posted++;
+            post(message);
+        }
+
+        @Override
+        protected void runAction(M message) {
+            if (message == null) {
+                stop();
+                if (!retired) {
+                    shardCompleted();
+                }
+                return;
+            }
+            try {
+                if (!failed) {
+                    output.post(process(message));
+                }
+            } catch (Throwable e) {
+                fail(e);
+            } finally {
+                processed++;
+                if (rebalancing) {
+                    checkBarrier();
+                }
+            }
+        }
+    }
+}
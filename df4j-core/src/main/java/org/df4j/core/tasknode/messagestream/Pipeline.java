@@ -0,0 +1,327 @@
+package org.df4j.core.tasknode.messagestream;
+
+import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
+import org.df4j.core.boundconnector.messagestream.BoundedStreamOutput;
+import org.df4j.core.boundconnector.messagestream.StreamCollector;
+import org.df4j.core.boundconnector.messagestream.StreamInput;
+import org.df4j.core.boundconnector.messagestream.StreamOutput;
+import org.df4j.core.boundconnector.messagestream.StreamPublisher;
+import org.df4j.core.boundconnector.messagestream.StreamSubscriber;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A chain of stream operators, where adjacent stateless operators are fused into a single actor.
+ * <p>
+ * A chain of {@link StreamProcessor}s costs a queue insertion, a pin transition and an executor submission
+ * per message and per processor. A pipeline built with {@link #builder()} runs all operators
+ * between two boundaries in one actor invocation, as plain method calls. Boundaries with queues are made only where requested:
+ * <ul>
+ *     <li>{@link Builder#async()} - following operators run in another actor, concurrently with preceding ones;</li>
+ *     <li>{@link Builder#executor(Executor)} - following operators run in another actor, on the given executor;</li>
+ *     <li>{@link Builder#buffer(int)} - as async(), but the queue between actors is bounded, and the preceding actor
+ *     waits for free space;</li>
+ *     <li>{@link Builder#parallel(int)} - following operators run concurrently for several messages,
+ *     with results in the order of messages, as in {@link ParallelStreamProcessor}.</li>
+ * </ul>
+ * Operators must not keep state between messages, unless the state is thread-safe.
+ * A mapping function which returns null drops the message, as a filter does.
+ *
+ * @param <I> type of input messages
+ * @param <O> type of output messages
+ */
+public class Pipeline<I, O> implements StreamSubscriber<I>, StreamPublisher<O> {
+    protected final ArrayList<Actor1<Object>> stages;
+    protected final Actor1<Object> head;
+    protected final StreamPublisher<Object> tail;
+
+    private Pipeline(ArrayList<Actor1<Object>> stages, StreamPublisher<Object> tail) {
+        this.stages = stages;
+        this.head = stages.get(0);
+        this.tail = tail;
+    }
+
+    /**
+     * @param <T> type of input messages
+     * @return builder of a pipeline without operators
+     */
+    public static <T> Builder<T, T> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * @return number of actors which run the operators
+     */
+    public int getStageCount() {
+        return stages.size();
+    }
+
+    public void start() {
+        for (int k = stages.size() - 1; k >= 0; k--) {
+            stages.get(k).start();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked") // the last stage posts messages of type O
+    public <S extends StreamSubscriber<? super O>> S subscribe(S subscriber) {
+        tail.subscribe((StreamSubscriber<Object>) subscriber);
+        return subscriber;
+    }
+
+    @Override
+    public void onSubscribe(SimpleSubscription subscription) {
+        head.onSubscribe(subscription);
+    }
+
+    @Override
+    public void post(I message) {
+        head.post(message);
+    }
+
+    @Override
+    public void complete() {
+        head.complete();
+    }
+
+    @Override
+    public boolean completeExceptionally(Throwable throwable) {
+        return head.completeExceptionally(throwable);
+    }
+
+    /**
+     * an operator; returns null to drop the message
+     */
+    interface Op {
+        Object apply(Object message) throws Exception;
+    }
+
+    static Object applyAll(Op[] ops, Object message) throws Exception {
+        for (int k = 0; k < ops.length && message != null; k++) {
+            message = ops[k].apply(message);
+        }
+        return message;
+    }
+
+    /**
+     * Fluent builder. Each operator method returns this builder, with the new output type.
+     *
+     * @param <I> type of input messages
+     * @param <O> type of output messages of the last operator
+     */
+    public static class Builder<I, O> {
+        private final ArrayList<StageSpec> specs = new ArrayList<>();
+        private StageSpec current = new StageSpec();
+
+        Builder() {
+            specs.add(current);
+        }
+
+        @SuppressWarnings("unchecked") // the builder is reused with the output type of the new operator
+        private <R> Builder<I, R> add(Op op) {
+            current.ops.add(op);
+            return (Builder<I, R>) this;
+        }
+
+        /**
+         * @return a message passed to an operator, which is of the output type of the preceding operators
+         */
+        @SuppressWarnings("unchecked")
+        private static <T> T typed(Object message) {
+            return (T) message;
+        }
+
+        private Builder<I, O> boundary(StageSpec next) {
+            specs.add(next);
+            current = next;
+            return this;
+        }
+
+        public <R> Builder<I, R> map(Function<? super O, ? extends R> mapper) {
+            return add((message) -> mapper.apply(typed(message)));
+        }
+
+        public Builder<I, O> filter(Predicate<? super O> predicate) {
+            return add((message) -> predicate.test(typed(message)) ? message : null);
+        }
+
+        public Builder<I, O> peek(Consumer<? super O> action) {
+            return add((message) -> {
+                action.accept(typed(message));
+                return message;
+            });
+        }
+
+        /**
+         * following operators run in a separate actor
+         */
+        public Builder<I, O> async() {
+            return boundary(new StageSpec());
+        }
+
+        /**
+         * following operators run in a separate actor on the given executor
+         */
+        public Builder<I, O> executor(Executor executor) {
+            StageSpec next = new StageSpec();
+            next.executor = executor;
+            return boundary(next);
+        }
+
+        /**
+         * following operators run in a separate actor, with input queue of the given capacity
+         *
+         * @throws IllegalStateException if the preceding operators run in parallel
+         */
+        public Builder<I, O> buffer(int capacity) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException();
+            }
+            if (current.parallelism > 0) {
+                throw new IllegalStateException("parallel stage cannot be followed by a bounded buffer");
+            }
+            StageSpec next = new StageSpec();
+            next.capacity = capacity;
+            current.bounded = true;
+            return boundary(next);
+        }
+
+        /**
+         * following operators run for up to the given number of messages concurrently
+         */
+        public Builder<I, O> parallel(int parallelism) {
+            if (parallelism <= 0) {
+                throw new IllegalArgumentException();
+            }
+            StageSpec next = new StageSpec();
+            next.parallelism = parallelism;
+            return boundary(next);
+        }
+
+        /**
+         * creates the actors; the pipeline is not started
+         *
+         * @return new pipeline
+         */
+        public Pipeline<I, O> build() {
+            ArrayList<Actor1<Object>> stages = new ArrayList<>();
+            StreamPublisher<Object> prev = null;
+            for (int k = 0; k < specs.size(); k++) {
+                StageSpec spec = specs.get(k);
+                Op[] ops = spec.ops.toArray(new Op[spec.ops.size()]);
+                Actor1<Object> stage;
+                StreamPublisher<Object> output;
+                if (spec.parallelism > 0) {
+                    ParallelStage parallelStage = new ParallelStage(spec.parallelism, ops);
+                    stage = parallelStage;
+                    output = parallelStage;
+                } else {
+                    FusedStage fusedStage = new FusedStage(spec.capacity, spec.bounded, ops);
+                    stage = fusedStage;
+                    output = fusedStage.publisher;
+                }
+                if (spec.executor != null) {
+                    stage.setExecutor(spec.executor);
+                }
+                if (prev != null) {
+                    prev.subscribe(stage);
+                }
+                stages.add(stage);
+                prev = output;
+            }
+            return new Pipeline<>(stages, prev);
+        }
+    }
+
+    static class StageSpec {
+        final ArrayList<Op> ops = new ArrayList<>();
+        Executor executor;
+        /** capacity of the input queue, 0 for unbounded */
+        int capacity = 0;
+        /** true if the next stage has a bounded input */
+        boolean bounded = false;
+        /** 0 for a serial stage */
+        int parallelism = 0;
+    }
+
+    /**
+     * runs a chain of operators serially, in one invocation per message
+     */
+    static class FusedStage extends Actor1<Object> {
+        final Op[] ops;
+        final StreamCollector<Object> output;
+        final StreamPublisher<Object> publisher;
+        volatile Throwable failure;
+
+        /**
+         * @param capacity capacity of the bounded input queue, or 0 for an unbounded queue
+         */
+        FusedStage(int capacity, boolean bounded, Op[] ops) {
+            super(capacity > 0 ? bounded(capacity) : StreamInput::new);
+            this.ops = ops;
+            this.output = bounded ? new BoundedStreamOutput<>(this) : new StreamOutput<>(this);
+            this.publisher = publisherOf(output);
+        }
+
+        /**
+         * @return the output as a publisher; both kinds of output publish what they collect
+         */
+        @SuppressWarnings("unchecked")
+        private static StreamPublisher<Object> publisherOf(StreamCollector<Object> output) {
+            return (StreamPublisher<Object>) output;
+        }
+
+        /**
+         * the failure is passed to the next stage after the messages posted before it
+         */
+        @Override
+        public boolean completeExceptionally(Throwable throwable) {
+            failure = throwable;
+            mainInput.complete();
+            return true;
+        }
+
+        @Override
+        protected void runAction(Object message) throws Exception {
+            if (message == null) {
+                if (failure != null) {
+                    output.completeExceptionally(failure);
+                } else {
+                    output.complete();
+                }
+                return;
+            }
+            Object res;
+            try {
+                res = applyAll(ops, message);
+            } catch (Exception e) {
+                output.completeExceptionally(e);
+                throw e;
+            }
+            if (res != null) {
+                output.post(res);
+            }
+        }
+    }
+
+    /**
+     * runs a chain of operators for several messages concurrently
+     */
+    static class ParallelStage extends ParallelStreamProcessor<Object, Object> {
+        final Op[] ops;
+
+        ParallelStage(int parallelism, Op[] ops) {
+            super(parallelism);
+            this.ops = ops;
+        }
+
+        @Override
+        protected Object process(Object message) throws Exception {
+            return applyAll(ops, message);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package org.df4j.core.tasknode.messagestream;
+
+import org.df4j.core.boundconnector.messagestream.StreamInput;
+import org.df4j.core.boundconnector.messagestream.StreamOutput;
+import org.df4j.core.boundconnector.messagestream.StreamPublisher;
+import org.df4j.core.boundconnector.messagestream.StreamSubscriber;
+import org.df4j.core.boundconnector.reactivestream.ReactiveInput;
+
+import java.util.Comparator;
+
+/**
+ * Merges several sorted streams into one sorted stream.
+ * <p>
+ * The actor fires only when every input which is not completed has a head token,
+ * so the least head among them is the least remaining token of all streams.
+ * Heads are kept in a binary heap of input indexes: each firing takes the least head,
+ * consumes it from its input, and puts that input back into the heap when its next token comes,
+ * which costs O(log N) comparisons per token for N inputs. Tokens with equal keys are posted
+ * in the order of input indexes, and in the order of arrival within an input.
+ * <p>
+ * An input is retired from the heap when its stream completes. The output is completed when all inputs
+ * are completed. When any input fails, the output is completed exceptionally at once,
+ * without waiting for the heads of other inputs.
+ * <p>
+ * With plain inputs, a fast stream may pile up tokens while the merge waits for a slow one.
+ * Constructed with a capacity, the merge has {@link ReactiveInput}s, which request tokens
+ * from their publishers as they are consumed, so no more than the capacity is buffered per input.
+ *
+ * @param <T> type of tokens
+ */
+public class SortedMerge<T> extends Actor implements StreamPublisher<T> {
+    protected final StreamInput<T>[] inputs;
+    protected final StreamOutput<T> output = new StreamOutput<>(this);
+    private final Comparator<? super T> comparator;
+    /** head token of each input in the heap */
+    private final Object[] heads;
+    /** indexes of inputs, ordered by their heads */
+    private final int[] heap;
+    private int heapSize = 0;
+    /** input consumed by the last firing, to be put back into the heap */
+    private int pending = -1;
+    private boolean initialized = false;
+    /** set when the output is completed, guarded by the output */
+    private boolean completed = false;
+
+    /**
+     * @param inputCount number of streams to merge
+     * @param comparator order of tokens in each stream and in the result
+     * @param capacity max number of buffered tokens per input, or 0 for unbounded inputs
+     */
+    public SortedMerge(int inputCount, Comparator<? super T> comparator, int capacity) {
+        if (inputCount <= 0 || capacity < 0) {
+            throw new IllegalArgumentException();
+        }
+        if (comparator == null) {
+            throw new NullPointerException();
+        }
+        this.comparator = comparator;
+        @SuppressWarnings("unchecked") // arrays of a generic type cannot be created
+        StreamInput<T>[] inputs = (StreamInput<T>[]) new StreamInput<?>[inputCount];
+        for (int k = 0; k < inputCount; k++) {
+            inputs[k] = capacity == 0 ? new Input() : new BoundedInput(capacity);
+        }
+        this.inputs = inputs;
+        heads = new Object[inputCount];
+        heap = new int[inputCount];
+    }
+
+    /**
+     * @param inputCount number of streams to merge
+     * @param comparator order of tokens in each stream and in the result
+     */
+    public SortedMerge(int inputCount, Comparator<? super T> comparator) {
+        this(inputCount, comparator, 0);
+    }
+
+    public int getInputCount() {
+        return inputs.length;
+    }
+
+    /**
+     * @param index index of the input
+     * @return the input, to subscribe to a {@link StreamPublisher} or to post tokens to
+     */
+    public StreamInput<T> getInput(int index) {
+        return inputs[index];
+    }
+
+    /**
+     * @param index index of the input
+     * @return the input, to subscribe to a {@link org.df4j.core.boundconnector.reactivestream.ReactivePublisher}
+     * @throws IllegalStateException if this merge was constructed without capacity
+     */
+    public ReactiveInput<T> getReactiveInput(int index) {
+        StreamInput<T> input = inputs[index];
+        if (!(input instanceof ReactiveInput)) {
+            throw new IllegalStateException("inputs are not bounded");
+        }
+        return (ReactiveInput<T>) input;
+    }
+
+    @Override
+    public <S extends StreamSubscriber<? super T>> S subscribe(S subscriber) {
+        output.subscribe(subscriber);
+        return subscriber;
+    }
+
+    /**
+     * the actor does not fire while other inputs are empty, so the failure is passed to the output
+     * from the thread of the failed publisher
+     */
+    private void inputFailed(Throwable throwable) {
+        synchronized (output) {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            output.completeExceptionally(throwable);
+        }
+        stop();
+    }
+
+    @Override
+    protected Void runAction() throws Exception {
+        if (!initialized) {
+            initialized = true;
+            for (int k = 0; k < inputs.length; k++) {
+                admit(k);
+            }
+        } else if (pending >= 0) {
+            admit(pending);
+        }
+        synchronized (output) {
+            if (completed) {
+                stop();
+                return null;
+            }
+            if (heapSize == 0) {
+                completed = true;
+                output.complete();
+                stop();
+                return null;
+            }
+            int index = heap[0];
+            heads[index] = null;
+            heap[0] = heap[--heapSize];
+            siftDown(0);
+            pending = index;
+            output.post(inputs[index].next());
+        }
+        return null;
+    }
+
+    /**
+     * puts the input into the heap, or retires it if its stream is completed.
+     * The pin of a retired input remains on, and it is not consumed any more.
+     */
+    private void admit(int index) {
+        StreamInput<T> input = inputs[index];
+        if (input.isClosed()) {
+            return;
+        }
+        heads[index] = input.getValue();
+        heap[heapSize] = index;
+        siftUp(heapSize++);
+    }
+
+    @SuppressWarnings("unchecked") // heads are tokens of the inputs
+    private boolean less(int i, int j) {
+        int cmp = comparator.compare((T) heads[i], (T) heads[j]);
+        return cmp < 0 || (cmp == 0 && i < j);
+    }
+
+    private void siftUp(int pos) {
+        int index = heap[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (!less(index, heap[parent])) {
+                break;
+            }
+            heap[pos] = heap[parent];
+            pos = parent;
+        }
+        heap[pos] = index;
+    }
+
+    private void siftDown(int pos) {
+        if (heapSize == 0) {
+            return;
+        }
+        int index = heap[pos];
+        int half = heapSize >>> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            if (child + 1 < heapSize && less(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!less(heap[child], index)) {
+                break;
+            }
+            heap[pos] = heap[child];
+            pos = child;
+        }
+        heap[pos] = index;
+    }
+
+    /**
+     * a failed stream fails the output, and completes its input, so that it is not waited for
+     */
+    class Input extends StreamInput<T> {
+        Input() {
+            super(SortedMerge.this);
+        }
+
+        @Override
+        public boolean completeExceptionally(Throwable throwable) {
+            inputFailed(throwable);
+            complete();
+            return true;
+        }
+    }
+
+    class BoundedInput extends ReactiveInput<T> {
+        BoundedInput(int capacity) {
+            super(SortedMerge.this, capacity);
+        }
+
+        @Override
+        public boolean completeExceptionally(Throwable throwable) {
+            inputFailed(throwable);
+            complete();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package org.df4j.core.tasknode.window;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.PriorityQueue;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Incremental aggregation of a window: elements are added to the accumulator one by one,
+ * and the result is computed when the window closes.
+ * Accumulators may be mutable; methods may return the accumulator passed in, except {@link #result(Object)}.
+ *
+ * @param <T> type of elements
+ * @param <A> type of accumulators
+ * @param <R> type of results
+ */
+public interface Aggregator<T, A, R> {
+
+    /**
+     * @return accumulator of an empty window
+     */
+    A create();
+
+    /**
+     * @param accumulator accumulator of the window
+     * @param item element added to the window
+     * @return new accumulator
+     */
+    A add(A accumulator, T item);
+
+    /**
+     * used by session windows, when a new element joins two sessions
+     *
+     * @param left accumulator of the earlier window
+     * @param right accumulator of the later window
+     * @return accumulator of the joined window
+     */
+    A merge(A left, A right);
+
+    /**
+     * @param accumulator accumulator of the window
+     * @return result, which must not share mutable state with the accumulator:
+     * {@link GroupByAggregate} posts a result after each update of a key, and keeps updating the accumulator
+     */
+    R result(A accumulator);
+
+    static <T, A, R> Aggregator<T, A, R> of(Supplier<A> create, BiFunction<A, ? super T, A> add,
+                                           BinaryOperator<A> merge, Function<A, R> result) {
+        return new Aggregator<T, A, R>() {
+            @Override
+            public A create() {
+                return create.get();
+            }
+
+            @Override
+            public A add(A accumulator, T item) {
+                return add.apply(accumulator, item);
+            }
+
+            @Override
+            public A merge(A left, A right) {
+                return merge.apply(left, right);
+            }
+
+            @Override
+            public R result(A accumulator) {
+                return result.apply(accumulator);
+            }
+        };
+    }
+
+    static <T> Aggregator<T, long[], Long> count() {
+        return of(() -> new long[1],
+                (acc, item) -> {
+                    acc[0]++;
+                    return acc;
+                },
+                (left, right) -> {
+                    left[0] += right[0];
+                    return left;
+                },
+                (acc) -> acc[0]);
+    }
+
+    static <T> Aggregator<T, long[], Long> sumLong(ToLongFunction<? super T> mapper) {
+        return of(() -> new long[1],
+                (acc, item) -> {
+                    acc[0] += mapper.applyAsLong(item);
+                    return acc;
+                },
+                (left, right) -> {
+                    left[0] += right[0];
+                    return left;
+                },
+                (acc) -> acc[0]);
+    }
+
+    /**
+     * @return average of the window, or NaN for an empty window
+     */
+    static <T> Aggregator<T, double[], Double> averageDouble(ToDoubleFunction<? super T> mapper) {
+        return of(() -> new double[2],
+                (acc, item) -> {
+                    acc[0] += mapper.applyAsDouble(item);
+                    acc[1]++;
+                    return acc;
+                },
+                (left, right) -> {
+                    left[0] += right[0];
+                    left[1] += right[1];
+                    return left;
+                },
+                (acc) -> acc[0] / acc[1]);
+    }
+
+    /**
+     * @return count, sum, min, max and average of the window
+     */
+    static <T> Aggregator<T, LongSummaryStatistics, LongSummaryStatistics> summarizingLong(ToLongFunction<? super T> mapper) {
+        return of(LongSummaryStatistics::new,
+                (acc, item) -> {
+                    acc.accept(mapper.applyAsLong(item));
+                    return acc;
+                },
+                (left, right) -> {
+                    left.combine(right);
+                    return left;
+                },
+                (acc) -> {
+                    LongSummaryStatistics res = new LongSummaryStatistics();
+                    res.combine(acc);
+                    return res;
+                });
+    }
+
+    /**
+     * @param n max number of elements in the result
+     * @param comparator order of elements
+     * @return the n greatest elements, greatest first
+     */
+    static <T> Aggregator<T, PriorityQueue<T>, List<T>> top(int n, Comparator<? super T> comparator) {
+        if (n <= 0) {
+            throw new IllegalArgumentException();
+        }
+        BiFunction<PriorityQueue<T>, T, PriorityQueue<T>> add = (acc, item) -> {
+            if (acc.size() < n) {
+                acc.add(item);
+            } else if (comparator.compare(item, acc.peek()) > 0) {
+                acc.poll(); // the least one
+                acc.add(item);
+            }
+            return acc;
+        };
+        return of(() -> new PriorityQueue<>(n, comparator),
+                add,
+                (left, right) -> {
+                    for (T item : right) {
+                        add.apply(left, item);
+                    }
+                    return left;
+                },
+                (acc) -> {
+                    List<T> res = new ArrayList<>(acc);
+                    res.sort(Collections.reverseOrder(comparator));
+                    return res;
+                });
+    }
+}
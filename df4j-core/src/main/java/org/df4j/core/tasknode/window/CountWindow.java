@@ -0,0 +1,87 @@
+package org.df4j.core.tasknode.window;
+
+import java.util.ArrayDeque;
+
+/**
+ * Count windows of fixed size, starting every slide elements.
+ * Bounds of windows are indexes of elements in the stream. Each element is added to
+ * the open windows containing it, so the state is one accumulator per open window.
+ * At the end of the stream, incomplete windows are posted with the count of elements they got.
+ *
+ * @param <T> type of elements
+ * @param <A> type of accumulators
+ * @param <R> type of window results
+ */
+public class CountWindow<T, A, R> extends WindowOperator<T, A, R> {
+    protected final long size;
+    protected final long slide;
+    private final ArrayDeque<Window> windows = new ArrayDeque<>();
+    private long index = 0;
+
+    /**
+     * @param size number of elements in a window
+     * @param slide number of elements between starts of windows
+     * @param aggregator aggregation of each window
+     */
+    public CountWindow(long size, long slide, Aggregator<? super T, A, R> aggregator) {
+        super(aggregator, null, 0);
+        if (size <= 0 || slide <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.size = size;
+        this.slide = slide;
+    }
+
+    /**
+     * tumbling count windows
+     */
+    public CountWindow(long size, Aggregator<? super T, A, R> aggregator) {
+        this(size, size, aggregator);
+    }
+
+    @Override
+    protected boolean add(T item, long timestamp) {
+        if (index % slide == 0) {
+            windows.add(new Window(index, aggregator.create()));
+        }
+        index++;
+        for (Window window : windows) {
+            window.accumulator = aggregator.add(window.accumulator, item);
+        }
+        Window first = windows.peek();
+        if (first != null && first.start + size == index) {
+            windows.poll();
+            emit(first.start, index, first.accumulator);
+        }
+        return true;
+    }
+
+    @Override
+    protected void emitUntil(long watermark) {
+        if (watermark != Long.MAX_VALUE) {
+            return; // count windows do not depend on time
+        }
+        for (;;) {
+            Window window = windows.poll();
+            if (window == null) {
+                return;
+            }
+            emit(window.start, index, window.accumulator);
+        }
+    }
+
+    @Override
+    protected long nextEnd() {
+        return Long.MAX_VALUE;
+    }
+
+    class Window {
+        final long start;
+        A accumulator;
+
+        Window(long start, A accumulator) {
+            this.start = start;
+            this.accumulator = accumulator;
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package org.df4j.core.tasknode.window;
+
+import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
+import org.df4j.core.boundconnector.messagestream.StreamOutput;
+import org.df4j.core.boundconnector.messagestream.StreamPublisher;
+import org.df4j.core.boundconnector.messagestream.StreamSubscriber;
+import org.df4j.core.tasknode.AsyncAction;
+import org.df4j.core.tasknode.messagestream.Actor1;
+import org.df4j.core.util.CopyOnWriteArray;
+import org.df4j.core.util.LongHashMap;
+import org.df4j.core.util.Pair;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Keyed aggregation of a high-rate stream, without passing every element through a single actor.
+ * <p>
+ * Each posting thread aggregates elements into its own combiner, a map from keys to partial accumulators,
+ * taking only the uncontended lock of that combiner. A combiner is flushed after a number of elements,
+ * on {@link #flush()}, periodically if a flush interval is set, and at the end of the stream.
+ * On flush, partials are split by key hash among merger shards, which are actors; each shard
+ * merges partials into the total accumulators of its keys, and posts a (key, result) update
+ * for each key it has merged. So updates of a key come in order, from a single shard.
+ * The shard keeps updating the accumulator, so {@link Aggregator#result(Object)} must return a value
+ * independent of it.
+ * <p>
+ * With {@link #byLongKey(ToLongFunction, Aggregator, int)}, keys are primitive longs, and combiners and shards
+ * use {@link LongHashMap}, so elements are aggregated without boxing keys.
+ *
+ * @param <T> type of elements
+ * @param <K> type of keys
+ * @param <A> type of accumulators
+ * @param <R> type of aggregates
+ */
+public class GroupByAggregate<T, K, A, R> implements StreamSubscriber<T>, StreamPublisher<Pair<K, R>> {
+    public static final int DEFAULT_FLUSH_SIZE = 1024;
+
+    protected final Aggregator<? super T, A, R> aggregator;
+    /** null for long keys */
+    protected final Function<? super T, ? extends K> keyFunction;
+    /** null for object keys */
+    protected final ToLongFunction<? super T> longKeyFunction;
+    /** owner of the output pin; never started */
+    private final AsyncAction<Void> outputNode = new AsyncAction<>();
+    protected final StreamOutput<Pair<K, R>> output = new StreamOutput<>(outputNode);
+    private final Merger[] mergers;
+    private final ThreadLocal<Combiner> localCombiner = new ThreadLocal<>();
+    private final CopyOnWriteArray<Combiner> combiners = new CopyOnWriteArray<>();
+    private int flushSize = DEFAULT_FLUSH_SIZE;
+    private volatile boolean completed = false;
+    private int activeMergers;
+
+    private GroupByAggregate(Function<? super T, ? extends K> keyFunction, ToLongFunction<? super T> longKeyFunction,
+                             Aggregator<? super T, A, R> aggregator, int shards) {
+        if (aggregator == null) {
+            throw new NullPointerException();
+        }
+        if (shards <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.keyFunction = keyFunction;
+        this.longKeyFunction = longKeyFunction;
+        this.aggregator = aggregator;
+        @SuppressWarnings({"rawtypes", "unchecked"}) // arrays of a generic type cannot be created
+        Merger[] mergers = new GroupByAggregate.Merger[shards];
+        this.mergers = mergers;
+        for (int k = 0; k < shards; k++) {
+            mergers[k] = new Merger();
+            mergers[k].start();
+        }
+        activeMergers = shards;
+    }
+
+    /**
+     * @param keyFunction extracts the key of an element
+     * @param aggregator aggregation of each key
+     * @param shards number of merger shards
+     */
+    public GroupByAggregate(Function<? super T, ? extends K> keyFunction, Aggregator<? super T, A, R> aggregator,
+                            int shards) {
+        this(keyFunction, null, aggregator, shards);
+        if (keyFunction == null) {
+            throw new NullPointerException();
+        }
+    }
+
+    /**
+     * @param keyFunction extracts the primitive key of an element
+     * @param aggregator aggregation of each key
+     * @param shards number of merger shards
+     * @return aggregation keyed by primitive longs
+     */
+    public static <T, A, R> GroupByAggregate<T, Long, A, R> byLongKey(ToLongFunction<? super T> keyFunction,
+                                                                    Aggregator<? super T, A, R> aggregator, int shards) {
+        if (keyFunction == null) {
+            throw new NullPointerException();
+        }
+        return new GroupByAggregate<>(null, keyFunction, aggregator, shards);
+    }
+
+    /**
+     * @param flushSize number of elements after which a combiner is flushed
+     */
+    public void setFlushSize(int flushSize) {
+        if (flushSize <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.flushSize = flushSize;
+    }
+
+    /**
+     * Flushes all combiners every interval, so that updates are posted even when few elements come.
+     *
+     * @param interval interval in milliseconds
+     */
+    public void setFlushInterval(long interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException();
+        }
+        WindowTimer.schedule(() -> {
+            if (!completed) {
+                flush();
+                setFlushInterval(interval);
+            }
+        }, interval);
+    }
+
+    @Override
+    public <S extends StreamSubscriber<? super Pair<K, R>>> S subscribe(S subscriber) {
+        output.subscribe(subscriber);
+        return subscriber;
+    }
+
+    @Override
+    public void onSubscribe(SimpleSubscription subscription) {
+    }
+
+    @Override
+    public void post(T item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+        Combiner combiner = localCombiner.get();
+        if (combiner == null) {
+            combiner = longKeyFunction == null ? new ObjectCombiner() : new LongCombiner();
+            combiners.add(combiner);
+            localCombiner.set(combiner);
+        }
+        synchronized (combiner) {
+            if (completed) {
+                throw new IllegalStateException("completed already");
+            }
+            combiner.add(item);
+            if (++combiner.count >= flushSize) {
+                combiner.flush();
+            }
+        }
+    }
+
+    /**
+     * passes partials of all combiners to merger shards
+     */
+    public void flush() {
+        Object[] snapshot = combiners.snapshot();
+        for (int k = 0; k < snapshot.length; k++) {
+            Combiner combiner = CopyOnWriteArray.get(snapshot, k);
+            synchronized (combiner) {
+                combiner.flush();
+            }
+        }
+    }
+
+    /**
+     * flushes combiners, and completes the output after all partials are merged
+     */
+    @Override
+    public void complete() {
+        synchronized (this) {
+            if (completed) {
+                return;
+            }
+            completed = true;
+        }
+        flush();
+        for (int k = 0; k < mergers.length; k++) {
+            mergers[k].complete();
+        }
+    }
+
+    @Override
+    public boolean completeExceptionally(Throwable throwable) {
+        return output.completeExceptionally(throwable);
+    }
+
+    private void mergerCompleted() {
+        synchronized (this) {
+            if (--activeMergers > 0) {
+                return;
+            }
+        }
+        output.complete();
+    }
+
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h & 0x7fffffff;
+    }
+
+    private int shardOf(long key) {
+        return spread((int) (key ^ (key >>> 32))) % mergers.length;
+    }
+
+    private int shardOf(Object key) {
+        return spread(key == null ? 0 : key.hashCode()) % mergers.length;
+    }
+
+    /**
+     * keys and accumulators passed from a combiner to a merger shard
+     */
+    static class Partial {
+        long[] longKeys;
+        Object[] keys;
+        Object[] accumulators = new Object[8];
+        int size = 0;
+
+        Partial(boolean longKeys) {
+            if (longKeys) {
+                this.longKeys = new long[8];
+            } else {
+                this.keys = new Object[8];
+            }
+        }
+
+        void add(long key, Object accumulator) {
+            if (size == accumulators.length) {
+                grow();
+            }
+            longKeys[size] = key;
+            accumulators[size++] = accumulator;
+        }
+
+        void add(Object key, Object accumulator) {
+            if (size == accumulators.length) {
+                grow();
+            }
+            keys[size] = key;
+            accumulators[size++] = accumulator;
+        }
+
+        private void grow() {
+            int capacity = size * 2;
+            accumulators = Arrays.copyOf(accumulators, capacity);
+            if (longKeys != null) {
+                longKeys = Arrays.copyOf(longKeys, capacity);
+            } else {
+                keys = Arrays.copyOf(keys, capacity);
+            }
+        }
+    }
+
+    /**
+     * accumulators of one posting thread; guarded by its own lock
+     */
+    abstract class Combiner {
+        int count = 0;
+
+        abstract void add(T item);
+
+        abstract void flush();
+
+        void send(Partial[] partials) {
+            for (int k = 0; k < partials.length; k++) {
+                if (partials[k] != null) {
+                    mergers[k].post(partials[k]);
+                }
+            }
+        }
+    }
+
+    class ObjectCombiner extends Combiner {
+        final HashMap<K, A> accumulators = new HashMap<>();
+
+        @Override
+        void add(T item) {
+            K key = keyFunction.apply(item);
+            A accumulator = accumulators.get(key);
+            if (accumulator == null) {
+                accumulators.put(key, aggregator.add(aggregator.create(), item));
+            } else {
+                A res = aggregator.add(accumulator, item);
+                if (res != accumulator) {
+                    accumulators.put(key, res);
+                }
+            }
+        }
+
+        @Override
+        void flush() {
+            if (accumulators.isEmpty()) {
+                return;
+            }
+            Partial[] partials = new Partial[mergers.length];
+            for (Map.Entry<K, A> entry : accumulators.entrySet()) {
+                int shard = shardOf(entry.getKey());
+                if (partials[shard] == null) {
+                    partials[shard] = new Partial(false);
+                }
+                partials[shard].add(entry.getKey(), entry.getValue());
+            }
+            accumulators.clear();
+            count = 0;
+            send(partials);
+        }
+    }
+
+    class LongCombiner extends Combiner {
+        final LongHashMap<A> accumulators = new LongHashMap<>();
+
+        @Override
+        void add(T item) {
+            long key = longKeyFunction.applyAsLong(item);
+            A accumulator = accumulators.get(key);
+            if (accumulator == null) {
+                accumulators.put(key, aggregator.add(aggregator.create(), item));
+            } else {
+                A res = aggregator.add(accumulator, item);
+                if (res != accumulator) {
+                    accumulators.put(key, res);
+                }
+            }
+        }
+
+        @Override
+        void flush() {
+            if (accumulators.isEmpty()) {
+                return;
+            }
+            Partial[] partials = new Partial[mergers.length];
+            accumulators.forEach((key, accumulator) -> {
+                int shard = shardOf(key);
+                if (partials[shard] == null) {
+                    partials[shard] = new Partial(true);
+                }
+                partials[shard].add(key, accumulator);
+            });
+            accumulators.clear();
+            count = 0;
+            send(partials);
+        }
+    }
+
+    /**
+     * owns the total accumulators of the keys of its shard
+     */
+    class Merger extends Actor1<Partial> {
+        final HashMap<Object, A> totals = new HashMap<>();
+        final LongHashMap<A> longTotals = new LongHashMap<>();
+
+        @Override
+        @SuppressWarnings("unchecked") // partials hold accumulators of type A, and keys of type K or long keys of Long
+        protected void runAction(Partial partial) {
+            if (partial == null) {
+                mergerCompleted();
+                return;
+            }
+            for (int k = 0; k < partial.size; k++) {
+                A accumulator = (A) partial.accumulators[k];
+                if (partial.longKeys != null) {
+                    long key = partial.longKeys[k];
+                    A total = longTotals.get(key);
+                    total = total == null ? accumulator : aggregator.merge(total, accumulator);
+                    longTotals.put(key, total);
+                    output.post(new Pair<>((K) (Long) key, aggregator.result(total)));
+                } else {
+                    Object key = partial.keys[k];
+                    A total = totals.get(key);
+                    total = total == null ? accumulator : aggregator.merge(total, accumulator);
+                    totals.put(key, total);
+                    output.post(new Pair<>((K) key, aggregator.result(total)));
+                }
+            }
+        }
+    }
+}
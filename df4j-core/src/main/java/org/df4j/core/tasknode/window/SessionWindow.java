@@ -0,0 +1,108 @@
+package org.df4j.core.tasknode.window;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Session windows: a window lasts while elements come with intervals less than the gap,
+ * and ends one gap after its last element. An element which falls between two sessions joins them,
+ * and their accumulators are merged with {@link Aggregator#merge(Object, Object)}.
+ *
+ * @param <T> type of elements
+ * @param <A> type of accumulators
+ * @param <R> type of window results
+ */
+public class SessionWindow<T, A, R> extends WindowOperator<T, A, R> {
+    protected final long gap;
+    /** open sessions by start; sessions do not overlap */
+    private final TreeMap<Long, Session> sessions = new TreeMap<>();
+
+    /**
+     * @param gap max interval between elements of a session
+     * @param aggregator aggregation of each window
+     * @param timestampFunction extracts event time of an element; null for processing time
+     * @param allowedLateness how far event time may go back, before elements become late
+     */
+    public SessionWindow(long gap, Aggregator<? super T, A, R> aggregator,
+                         ToLongFunction<? super T> timestampFunction, long allowedLateness) {
+        super(aggregator, timestampFunction, allowedLateness);
+        if (gap <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.gap = gap;
+    }
+
+    /**
+     * sessions in processing time
+     */
+    public SessionWindow(long gap, Aggregator<? super T, A, R> aggregator) {
+        this(gap, aggregator, null, 0);
+    }
+
+    /**
+     * @return number of open sessions
+     */
+    public int getOpenWindows() {
+        return sessions.size();
+    }
+
+    @Override
+    protected boolean add(T item, long timestamp) {
+        long end = timestamp + gap;
+        if (end <= watermark) {
+            return false; // its session would be closed already
+        }
+        long start = timestamp;
+        A accumulator = aggregator.add(aggregator.create(), item);
+        // sessions starting before the end of the new one, latest first
+        for (;;) {
+            Map.Entry<Long, Session> entry = sessions.lowerEntry(end);
+            if (entry == null || entry.getValue().end <= timestamp) {
+                break;
+            }
+            Session session = entry.getValue();
+            sessions.remove(entry.getKey());
+            if (session.start < start) {
+                accumulator = aggregator.merge(session.accumulator, accumulator);
+                start = session.start;
+            } else {
+                accumulator = aggregator.merge(accumulator, session.accumulator);
+            }
+            end = Math.max(end, session.end);
+        }
+        sessions.put(start, new Session(start, end, accumulator));
+        return true;
+    }
+
+    @Override
+    protected void emitUntil(long watermark) {
+        for (;;) {
+            Map.Entry<Long, Session> first = sessions.firstEntry();
+            if (first == null || first.getValue().end > watermark) {
+                return;
+            }
+            sessions.pollFirstEntry();
+            Session session = first.getValue();
+            emit(session.start, session.end, session.accumulator);
+        }
+    }
+
+    @Override
+    protected long nextEnd() {
+        Map.Entry<Long, Session> first = sessions.firstEntry();
+        return first == null ? Long.MAX_VALUE : first.getValue().end;
+    }
+
+    class Session {
+        final long start;
+        final long end;
+        final A accumulator;
+
+        Session(long start, long end, A accumulator) {
+            this.start = start;
+            this.end = end;
+            this.accumulator = accumulator;
+        }
+    }
+}
@@ -0,0 +1,509 @@
+package org.df4j.core.tasknode.window;
+
+import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
+import org.df4j.core.boundconnector.messagestream.StreamInput;
+import org.df4j.core.boundconnector.messagestream.StreamOutput;
+import org.df4j.core.boundconnector.messagestream.StreamPublisher;
+import org.df4j.core.boundconnector.messagestream.StreamSubscriber;
+import org.df4j.core.tasknode.messagestream.Actor;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Joins two streams by key within a time window: each pair of a left and a right element
+ * with equal keys and timestamps at most the window apart is posted as one joined result.
+ * <p>
+ * Each side keeps its recent elements in a hash index from keys to elements, in the order of arrival,
+ * and probes the index of the other side when an element comes. The watermark is the largest timestamp seen
+ * on either side; elements older than the watermark minus the window can not join any more, and are
+ * evicted from the oldest end, a few per arrival, without rescanning the indexes. Elements which arrive
+ * already that old are joined with what remains, but not kept. The number of elements kept by a side
+ * can be limited with {@link #setMaxEntries(int)}: the oldest are evicted first.
+ * <p>
+ * Kept and spilled elements are exposed with {@link #getRetainedCount()} and {@link #getSpilledCount()}.
+ * With {@link #setSpill(File, int)}, when both sides keep more elements in memory than the limit,
+ * the older half of the larger side is written to a spill file; only its keys and file offsets
+ * stay in memory. Spilled elements must be {@link java.io.Serializable}. A spill file is deleted
+ * when all its elements are evicted, and when the join completes.
+ * <p>
+ * Both streams come through a single input queue, because a join fires on an element of either side;
+ * {@link #left} and {@link #right} tag elements with their side. Timestamps are taken from the timestamp
+ * functions, or from the clock on arrival if a function is null. The output is completed when both sides
+ * are completed, and completed exceptionally when either side fails or a spill file can not be written.
+ *
+ * @param <K> type of keys
+ * @param <L> type of left elements
+ * @param <R> type of right elements
+ * @param <O> type of joined results
+ */
+public class StreamJoin<K, L, R, O> extends Actor implements StreamPublisher<O> {
+    private final StreamInput<Entry<K>> input = new StreamInput<>(this);
+    protected final StreamOutput<O> output = new StreamOutput<>(this);
+    public final StreamSubscriber<L> left = new Port<>(true);
+    public final StreamSubscriber<R> right = new Port<>(false);
+    private final Side<L> leftSide;
+    private final Side<R> rightSide;
+    private final long window;
+    private final BiFunction<? super L, ? super R, ? extends O> joiner;
+    /** elements with earlier timestamps can not join any more */
+    private long horizon = Long.MIN_VALUE;
+    private int maxEntries = Integer.MAX_VALUE;
+    /** null if spilling is off */
+    private File spillDirectory;
+    private int memoryLimit;
+    private int completedPorts = 0;
+    private volatile Throwable failure;
+    private volatile long retained = 0;
+    private volatile long peakRetained = 0;
+    private volatile long spilled = 0;
+    private volatile long evicted = 0;
+    private volatile long joined = 0;
+
+    /**
+     * @param leftKey extracts the key of a left element
+     * @param leftTimestamp extracts event time of a left element; null for processing time
+     * @param rightKey extracts the key of a right element
+     * @param rightTimestamp extracts event time of a right element; null for processing time
+     * @param window max distance between timestamps of joined elements
+     * @param joiner makes the result of a left and a right element
+     */
+    public StreamJoin(Function<? super L, ? extends K> leftKey, ToLongFunction<? super L> leftTimestamp,
+                      Function<? super R, ? extends K> rightKey, ToLongFunction<? super R> rightTimestamp,
+                      long window, BiFunction<? super L, ? super R, ? extends O> joiner) {
+        if (leftKey == null || rightKey == null || joiner == null) {
+            throw new NullPointerException();
+        }
+        if (window < 0) {
+            throw new IllegalArgumentException();
+        }
+        leftSide = new Side<>(leftKey, leftTimestamp);
+        rightSide = new Side<>(rightKey, rightTimestamp);
+        this.window = window;
+        this.joiner = joiner;
+    }
+
+    /**
+     * @param maxEntries max number of elements kept by each side, in memory and spilled
+     */
+    public synchronized void setMaxEntries(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param directory directory of spill files
+     * @param memoryLimit max number of elements kept in memory by both sides
+     */
+    public synchronized void setSpill(File directory, int memoryLimit) {
+        if (directory == null) {
+            throw new NullPointerException();
+        }
+        if (memoryLimit <= 1) {
+            throw new IllegalArgumentException();
+        }
+        this.spillDirectory = directory;
+        this.memoryLimit = memoryLimit;
+    }
+
+    @Override
+    public <S extends StreamSubscriber<? super O>> S subscribe(S subscriber) {
+        output.subscribe(subscriber);
+        return subscriber;
+    }
+
+    /**
+     * @return number of elements kept in memory by both sides
+     */
+    public long getRetainedCount() {
+        return retained;
+    }
+
+    /**
+     * @return max number of elements kept in memory by both sides at once
+     */
+    public long getPeakRetainedCount() {
+        return peakRetained;
+    }
+
+    /**
+     * @return number of elements kept in spill files
+     */
+    public long getSpilledCount() {
+        return spilled;
+    }
+
+    /**
+     * @return number of elements evicted, in memory and spilled
+     */
+    public long getEvictedCount() {
+        return evicted;
+    }
+
+    /**
+     * @return number of joined results posted
+     */
+    public long getJoinedCount() {
+        return joined;
+    }
+
+    private synchronized void portCompleted(Throwable throwable) {
+        if (throwable != null && failure == null) {
+            failure = throwable;
+        }
+        if (++completedPorts == 2 || throwable != null) {
+            input.complete();
+        }
+    }
+
+    @Override
+    protected Void runAction() throws Exception {
+        Entry<K> entry = input.next();
+        if (entry == null) {
+            finish();
+            return null;
+        }
+        try {
+            if (entry.left) {
+                arrive(entry, leftSide, rightSide);
+            } else {
+                arrive(entry, rightSide, leftSide);
+            }
+        } catch (IOException e) {
+            failure = e;
+            finish();
+        }
+        return null;
+    }
+
+    private void finish() {
+        leftSide.clear();
+        rightSide.clear();
+        updateMetrics();
+        Throwable failure = this.failure;
+        if (failure != null) {
+            output.completeExceptionally(failure);
+        } else {
+            output.complete();
+        }
+        stop();
+    }
+
+    private void arrive(Entry<K> entry, Side<?> side, Side<?> other) throws IOException {
+        side.stamp(entry);
+        other.probe(entry);
+        if (entry.timestamp - window > horizon) {
+            horizon = entry.timestamp - window;
+        }
+        if (entry.timestamp >= horizon) {
+            side.add(entry);
+        }
+        leftSide.evict();
+        rightSide.evict();
+        if (spillDirectory != null && leftSide.memory.size() + rightSide.memory.size() > memoryLimit) {
+            if (leftSide.memory.size() >= rightSide.memory.size()) {
+                leftSide.spill();
+            } else {
+                rightSide.spill();
+            }
+        }
+        updateMetrics();
+    }
+
+    private void updateMetrics() {
+        long retained = leftSide.memory.size() + rightSide.memory.size();
+        this.retained = retained;
+        if (retained > peakRetained) {
+            peakRetained = retained;
+        }
+        spilled = leftSide.spilledCount + rightSide.spilledCount;
+    }
+
+    @SuppressWarnings("unchecked") // values of the left side are of type L, of the right side of type R
+    private void join(Entry<K> entry, Object value, boolean valueIsLeft) {
+        O res = valueIsLeft ? joiner.apply((L) value, (R) entry.value) : joiner.apply((L) entry.value, (R) value);
+        joined++;
+        output.post(res);
+    }
+
+    /**
+     * an element tagged with its side; key and timestamp are set by the actor
+     */
+    static class Entry<K> {
+        final boolean left;
+        final Object value;
+        K key;
+        long timestamp;
+
+        Entry(boolean left, Object value) {
+            this.left = left;
+            this.value = value;
+        }
+    }
+
+    class Port<T> implements StreamSubscriber<T> {
+        final boolean isLeft;
+
+        Port(boolean isLeft) {
+            this.isLeft = isLeft;
+        }
+
+        @Override
+        public void onSubscribe(SimpleSubscription subscription) {
+        }
+
+        @Override
+        public void post(T item) {
+            if (item == null) {
+                throw new NullPointerException();
+            }
+            input.post(new Entry<>(isLeft, item));
+        }
+
+        @Override
+        public void complete() {
+            portCompleted(null);
+        }
+
+        @Override
+        public boolean completeExceptionally(Throwable throwable) {
+            portCompleted(throwable);
+            return true;
+        }
+    }
+
+    /**
+     * elements of one side; accessed by the actor only
+     */
+    class Side<V> {
+        final Function<? super V, ? extends K> keyFunction;
+        final ToLongFunction<? super V> timestampFunction;
+        /** elements in memory, in the order of arrival */
+        final ArrayDeque<Entry<K>> memory = new ArrayDeque<>();
+        /** elements in memory by key, each deque in the order of arrival */
+        final HashMap<K, ArrayDeque<Entry<K>>> index = new HashMap<>();
+        /** spill files, oldest first */
+        final ArrayDeque<Segment> segments = new ArrayDeque<>();
+        long spilledCount = 0;
+
+        Side(Function<? super V, ? extends K> keyFunction, ToLongFunction<? super V> timestampFunction) {
+            this.keyFunction = keyFunction;
+            this.timestampFunction = timestampFunction;
+        }
+
+        @SuppressWarnings("unchecked") // entries of this side hold values of type V
+        void stamp(Entry<K> entry) {
+            entry.key = keyFunction.apply((V) entry.value);
+            entry.timestamp = timestampFunction == null ? System.currentTimeMillis()
+                    : timestampFunction.applyAsLong((V) entry.value);
+        }
+
+        /**
+         * joins an element of the other side with elements of this side
+         */
+        void probe(Entry<K> entry) throws IOException {
+            boolean thisIsLeft = !entry.left;
+            for (Segment segment : segments) {
+                segment.probe(entry, thisIsLeft);
+            }
+            ArrayDeque<Entry<K>> bucket = index.get(entry.key);
+            if (bucket == null) {
+                return;
+            }
+            for (Entry<K> e : bucket) {
+                if (Math.abs(e.timestamp - entry.timestamp) <= window) {
+                    join(entry, e.value, thisIsLeft);
+                }
+            }
+        }
+
+        void add(Entry<K> entry) {
+            memory.add(entry);
+            index.computeIfAbsent(entry.key, k -> new ArrayDeque<>()).add(entry);
+        }
+
+        /**
+         * removes the oldest element in memory, which is also the oldest one of its key
+         */
+        Entry<K> removeOldest() {
+            Entry<K> entry = memory.poll();
+            ArrayDeque<Entry<K>> bucket = index.get(entry.key);
+            bucket.poll();
+            if (bucket.isEmpty()) {
+                index.remove(entry.key);
+            }
+            return entry;
+        }
+
+        /**
+         * Evicts expired elements from the oldest end, and the oldest elements beyond the max count.
+         * With out-of-order timestamps, an expired element may stay behind an older one which is not expired;
+         * it can not join, as the join checks the distance of timestamps, and is evicted later.
+         */
+        void evict() {
+            for (Iterator<Segment> it = segments.iterator(); it.hasNext(); ) {
+                Segment segment = it.next();
+                if (segment.maxTimestamp < horizon) {
+                    it.remove();
+                    dropSegment(segment);
+                }
+            }
+            while (!memory.isEmpty() && memory.peek().timestamp < horizon) {
+                removeOldest();
+                evicted++;
+            }
+            while (memory.size() + spilledCount > maxEntries) {
+                if (segments.isEmpty()) {
+                    removeOldest();
+                    evicted++;
+                } else {
+                    dropSegment(segments.poll());
+                }
+            }
+        }
+
+        private void dropSegment(Segment segment) {
+            spilledCount -= segment.size;
+            evicted += segment.size;
+            segment.delete();
+        }
+
+        /**
+         * writes the older half of elements in memory to a new spill file
+         */
+        void spill() throws IOException {
+            int n = Math.max(1, memory.size() / 2);
+            Segment segment = new Segment(spillDirectory);
+            try {
+                for (int k = 0; k < n; k++) {
+                    segment.write(removeOldest());
+                }
+                segment.close();
+            } catch (IOException e) {
+                segment.delete();
+                throw e;
+            }
+            segments.add(segment);
+            spilledCount += n;
+        }
+
+        void clear() {
+            memory.clear();
+            index.clear();
+            for (Segment segment : segments) {
+                segment.delete();
+            }
+            segments.clear();
+            spilledCount = 0;
+        }
+    }
+
+    /**
+     * Spill file of one side: records of timestamp, length and serialized value.
+     * Keys and record offsets stay in memory. The file is open only while it is written and while it is probed,
+     * so the number of open files does not grow with the number of segments.
+     */
+    class Segment {
+        final File file;
+        /** per key: number of offsets, then the offsets */
+        final HashMap<K, long[]> offsets = new HashMap<>();
+        /** writes records to the file; closed by {@link #close()} */
+        DataOutputStream out;
+        /** file offset of the next record */
+        long length = 0;
+        long minTimestamp = Long.MAX_VALUE;
+        long maxTimestamp = Long.MIN_VALUE;
+        int size = 0;
+
+        Segment(File directory) throws IOException {
+            file = File.createTempFile("join", ".spill", directory);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        }
+
+        void write(Entry<K> entry) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+                oos.writeObject(entry.value);
+            }
+            long[] keyOffsets = offsets.get(entry.key);
+            if (keyOffsets == null) {
+                keyOffsets = new long[4];
+            } else if (keyOffsets[0] + 1 == keyOffsets.length) {
+                keyOffsets = Arrays.copyOf(keyOffsets, keyOffsets.length * 2);
+            }
+            keyOffsets[(int) ++keyOffsets[0]] = length;
+            offsets.put(entry.key, keyOffsets);
+            out.writeLong(entry.timestamp);
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+            length += Long.BYTES + Integer.BYTES + bytes.size();
+            minTimestamp = Math.min(minTimestamp, entry.timestamp);
+            maxTimestamp = Math.max(maxTimestamp, entry.timestamp);
+            size++;
+        }
+
+        /**
+         * writes buffered records and closes the file
+         */
+        void close() throws IOException {
+            DataOutputStream out = this.out;
+            this.out = null;
+            out.close();
+        }
+
+        void probe(Entry<K> entry, boolean thisIsLeft) throws IOException {
+            if (entry.timestamp + window < minTimestamp || entry.timestamp - window > maxTimestamp) {
+                return;
+            }
+            long[] keyOffsets = offsets.get(entry.key);
+            if (keyOffsets == null) {
+                return;
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                for (int k = 1; k <= keyOffsets[0]; k++) {
+                    raf.seek(keyOffsets[k]);
+                    long timestamp = raf.readLong();
+                    if (Math.abs(timestamp - entry.timestamp) > window) {
+                        continue;
+                    }
+                    byte[] bytes = new byte[raf.readInt()];
+                    raf.readFully(bytes);
+                    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                        join(entry, ois.readObject(), thisIsLeft);
+                    } catch (ClassNotFoundException e) {
+                        throw new IOException(e);
+                    }
+                }
+            }
+        }
+
+        void delete() {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // nothing to do
+                }
+                out = null;
+            }
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.df4j.core.tasknode.window;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Time windows of fixed size, starting every slide: [k * slide, k * slide + size).
+ * When slide equals size, windows are tumbling: each element belongs to exactly one window.
+ * When slide is less than size, windows are sliding: each element is added to the
+ * size / slide windows containing it, so the state is one accumulator per open window.
+ *
+ * @param <T> type of elements
+ * @param <A> type of accumulators
+ * @param <R> type of window results
+ */
+public class TimeWindow<T, A, R> extends WindowOperator<T, A, R> {
+    protected final long size;
+    protected final long slide;
+    /** open windows by start */
+    private final TreeMap<Long, A> windows = new TreeMap<>();
+
+    /**
+     * @param size length of windows
+     * @param slide distance between starts of windows
+     * @param aggregator aggregation of each window
+     * @param timestampFunction extracts event time of an element; null for processing time
+     * @param allowedLateness how far event time may go back, before elements become late
+     */
+    public TimeWindow(long size, long slide, Aggregator<? super T, A, R> aggregator,
+                      ToLongFunction<? super T> timestampFunction, long allowedLateness) {
+        super(aggregator, timestampFunction, allowedLateness);
+        if (size <= 0 || slide <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.size = size;
+        this.slide = slide;
+    }
+
+    /**
+     * tumbling windows in processing time
+     */
+    public TimeWindow(long size, Aggregator<? super T, A, R> aggregator) {
+        this(size, size, aggregator, null, 0);
+    }
+
+    /**
+     * @return number of open windows
+     */
+    public int getOpenWindows() {
+        return windows.size();
+    }
+
+    @Override
+    protected boolean add(T item, long timestamp) {
+        boolean contained = false;
+        boolean added = false;
+        long lastStart = Math.floorDiv(timestamp, slide) * slide;
+        for (long start = lastStart; start > timestamp - size; start -= slide) {
+            contained = true;
+            if (start + size <= watermark) {
+                continue; // closed already
+            }
+            A accumulator = windows.get(start);
+            if (accumulator == null) {
+                accumulator = aggregator.create();
+            }
+            windows.put(start, aggregator.add(accumulator, item));
+            added = true;
+        }
+        return added || !contained;
+    }
+
+    @Override
+    protected void emitUntil(long watermark) {
+        for (;;) {
+            Map.Entry<Long, A> first = windows.firstEntry();
+            if (first == null || first.getKey() + size > watermark) {
+                return;
+            }
+            windows.pollFirstEntry();
+            long start = first.getKey();
+            emit(start, start + size, first.getValue());
+        }
+    }
+
+    @Override
+    protected long nextEnd() {
+        Map.Entry<Long, A> first = windows.firstEntry();
+        return first == null ? Long.MAX_VALUE : first.getKey() + size;
+    }
+}
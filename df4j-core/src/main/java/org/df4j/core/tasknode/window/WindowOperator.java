@@ -0,0 +1,181 @@
+package org.df4j.core.tasknode.window;
+
+import org.df4j.core.boundconnector.messagestream.StreamOutput;
+import org.df4j.core.boundconnector.messagestream.StreamPublisher;
+import org.df4j.core.boundconnector.messagestream.StreamSubscriber;
+import org.df4j.core.tasknode.messagestream.Actor1;
+
+import java.util.function.ToLongFunction;
+
+/**
+ * Base class of window actors: aggregates elements into windows, and posts the result of each window
+ * when the watermark passes its end.
+ * <p>
+ * With a timestamp function, windows follow event time: the watermark is the largest timestamp seen
+ * minus the allowed lateness, or a later time posted with {@link #postWatermark(long)}.
+ * Without it, windows follow processing time: an element is stamped with the clock on arrival,
+ * and the shared {@link WindowTimer} posts the clock as the watermark when the earliest window ends.
+ * <p>
+ * Elements which belong only to closed windows are late: they are counted, and posted to
+ * the subscribers of {@link #subscribeLate(StreamSubscriber)}.
+ * At the end of the input stream all open windows are posted.
+ * <p>
+ * The input port accepts elements of type T and watermarks, so this actor is declared as a subscriber of Object.
+ *
+ * @param <T> type of elements
+ * @param <A> type of accumulators
+ * @param <R> type of window results
+ */
+public abstract class WindowOperator<T, A, R> extends Actor1<Object> implements StreamPublisher<WindowResult<R>> {
+    protected final Aggregator<? super T, A, R> aggregator;
+    /** null for processing time */
+    protected final ToLongFunction<? super T> timestampFunction;
+    protected final long allowedLateness;
+    protected final StreamOutput<WindowResult<R>> output = new StreamOutput<>(this);
+    protected final StreamOutput<T> lateOutput = new StreamOutput<>(this);
+    /** windows ending at or before the watermark are closed */
+    protected long watermark = Long.MIN_VALUE;
+    private volatile long lateCount = 0;
+    /** time of the pending timer task */
+    private long scheduled = Long.MAX_VALUE;
+
+    /**
+     * @param aggregator aggregation of each window
+     * @param timestampFunction extracts event time of an element; null for processing time
+     * @param allowedLateness how far event time may go back, before elements become late
+     */
+    protected WindowOperator(Aggregator<? super T, A, R> aggregator, ToLongFunction<? super T> timestampFunction,
+                             long allowedLateness) {
+        if (aggregator == null) {
+            throw new NullPointerException();
+        }
+        if (allowedLateness < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.aggregator = aggregator;
+        this.timestampFunction = timestampFunction;
+        this.allowedLateness = allowedLateness;
+    }
+
+    @Override
+    public <S extends StreamSubscriber<? super WindowResult<R>>> S subscribe(S subscriber) {
+        output.subscribe(subscriber);
+        return subscriber;
+    }
+
+    /**
+     * @param subscriber receiver of late elements
+     * @param <S> type of the subscriber
+     * @return the subscriber
+     */
+    public <S extends StreamSubscriber<? super T>> S subscribeLate(S subscriber) {
+        lateOutput.subscribe(subscriber);
+        return subscriber;
+    }
+
+    /**
+     * @return number of late elements
+     */
+    public long getLateCount() {
+        return lateCount;
+    }
+
+    /**
+     * Moves the watermark of event time, so that windows end without waiting for later elements.
+     *
+     * @param time all later elements are expected to have timestamps not less than this
+     */
+    public void postWatermark(long time) {
+        post(new Watermark(time));
+    }
+
+    /**
+     * @param item element
+     * @param timestamp time of the element
+     * @return false if the element is late
+     */
+    protected abstract boolean add(T item, long timestamp);
+
+    /**
+     * posts and removes windows which end at or before the watermark
+     */
+    protected abstract void emitUntil(long watermark);
+
+    /**
+     * @return end of the earliest open window, or Long.MAX_VALUE
+     */
+    protected abstract long nextEnd();
+
+    protected void emit(long start, long end, A accumulator) {
+        output.post(new WindowResult<>(start, end, aggregator.result(accumulator)));
+    }
+
+    private void advance(long time) {
+        if (time > watermark) {
+            watermark = time;
+            emitUntil(time);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked") // messages other than watermarks are posted items
+    protected void runAction(Object message) {
+        if (message == null) {
+            emitUntil(Long.MAX_VALUE);
+            output.complete();
+            lateOutput.complete();
+            return;
+        }
+        if (message instanceof Watermark) {
+            if (((Watermark) message).timer) {
+                scheduled = Long.MAX_VALUE;
+            }
+            advance(((Watermark) message).time);
+        } else {
+            T item = (T) message;
+            long timestamp = timestampFunction == null ? System.currentTimeMillis() : timestampFunction.applyAsLong(item);
+            if (!add(item, timestamp)) {
+                lateCount++;
+                lateOutput.post(item);
+            } else if (timestampFunction != null && timestamp - allowedLateness > watermark) {
+                advance(timestamp - allowedLateness);
+            }
+        }
+        if (timestampFunction == null) {
+            schedule();
+        }
+    }
+
+    /**
+     * makes sure a timer task is pending for the earliest window end
+     */
+    private void schedule() {
+        long end = nextEnd();
+        if (end >= scheduled) {
+            return;
+        }
+        scheduled = end;
+        WindowTimer.schedule(() -> {
+            try {
+                post(new Watermark(System.currentTimeMillis(), true));
+            } catch (IllegalStateException e) {
+                // input closed already
+            }
+        }, Math.max(0, end - System.currentTimeMillis()));
+    }
+
+    static class Watermark {
+        final long time;
+        /** posted by the timer */
+        final boolean timer;
+
+        Watermark(long time, boolean timer) {
+            this.time = time;
+            this.timer = timer;
+        }
+
+        Watermark(long time) {
+            this(time, false);
+        }
+    }
+}
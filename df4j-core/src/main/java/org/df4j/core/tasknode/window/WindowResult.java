@@ -0,0 +1,26 @@
+package org.df4j.core.tasknode.window;
+
+/**
+ * Aggregate of a closed window.
+ * For time windows, bounds are timestamps; for count windows, indexes of elements in the stream.
+ *
+ * @param <R> type of the aggregate
+ */
+public class WindowResult<R> {
+    /** inclusive */
+    public final long start;
+    /** exclusive */
+    public final long end;
+    public final R value;
+
+    public WindowResult(long start, long end, R value) {
+        this.start = start;
+        this.end = end;
+        this.value = value;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + start + ", " + end + "): " + value;
+    }
+}
@@ -0,0 +1,42 @@
+package org.df4j.core.tasknode.window;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timer shared by all window actors which use processing time.
+ * An actor keeps at most one pending task, for its earliest window end, so the number of tasks
+ * does not depend on the number of windows. Tasks only post a watermark to the actor,
+ * so the single timer thread is never busy for long.
+ */
+public final class WindowTimer {
+    private static final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, (Runnable r) -> {
+        Thread thread = new Thread(r, "df4j-window-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    private WindowTimer() {
+    }
+
+    /**
+     * @param task action to run
+     * @param delay delay in milliseconds
+     * @return the scheduled task
+     */
+    public static ScheduledFuture<?> schedule(Runnable task, long delay) {
+        return timer.schedule(task, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return number of pending tasks
+     */
+    public static int getQueueSize() {
+        return timer.getQueue().size();
+    }
+}
@@ -0,0 +1,16 @@
+/**
+ * This package contains actors which aggregate a stream into windows: tumbling and sliding time windows,
+ * session windows and count windows.
+ * <p>
+ * Windows are aggregated incrementally by an {@link org.df4j.core.tasknode.window.Aggregator},
+ * so each open window keeps only the state of its aggregate, not its elements.
+ * Time windows close when the watermark passes their end. With event time the watermark follows
+ * the largest timestamp seen minus the allowed lateness, and elements for closed windows are late.
+ * With processing time the watermark follows the clock, moved by a single timer thread
+ * shared by all window actors, see {@link org.df4j.core.tasknode.window.WindowTimer}.
+ * <p>
+ * The same aggregators serve keyed aggregation without windows, in {@link org.df4j.core.tasknode.window.GroupByAggregate}.
+ * <p>
+ * Two streams are joined by key within a time window in {@link org.df4j.core.tasknode.window.StreamJoin}.
+ */
+package org.df4j.core.tasknode.window;
@@ -2,63 +2,174 @@ package org.df4j.core.util;
 
 import org.df4j.core.tasknode.Action;
 import org.df4j.core.util.invoker.AbstractInvoker;
+import org.df4j.core.util.invoker.ClassInvokerFactory;
 import org.df4j.core.util.invoker.Invoker;
-import org.df4j.core.util.invoker.MethodInvoker;
+import org.df4j.core.util.invoker.InvokerFactory;
+import org.df4j.core.util.invoker.LambdaInvoker;
+import org.df4j.core.util.invoker.MethodHandleInvoker;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 
+/**
+ * Finds the action of an object: a non-empty field annotated with {@link Action},
+ * or a method annotated with {@link Action}.
+ *
+ * Classes are scanned once, and the result of the scan is cached,
+ * so that only values of annotated fields are examined for each new object.
+ * Classes processed by the df4j-apt annotation processor are not scanned at all:
+ * their generated {@link ClassInvokerFactory} is loaded by name.
+ */
 public class ActionCaller<R> {
     private final static Class actionAnnotation = Action.class;
+    /** suffix of names of factories generated by df4j-apt */
+    private static final String GENERATED_SUFFIX = "_ActionInvoker";
+
+    private static final ClassValue<ClassInvokerFactory<?>> classActions = new ClassValue<ClassInvokerFactory<?>>() {
+        @Override
+        protected ClassInvokerFactory<?> computeValue(Class<?> type) {
+            ClassInvokerFactory<?> generated = findGenerated(type);
+            if (generated != null) {
+                return generated;
+            }
+            return new ClassActions(type);
+        }
+    };
 
     public static Invoker findAction(Object objectWithAction, int argCount) throws NoSuchMethodException {
-        Class<?> startClass = objectWithAction.getClass();
-        Invoker actionInvoker = null;
-        Method resultMethod = null;
-        classScan:
-        for (Class<?> clazz = startClass; !Object.class.equals(clazz) ;clazz = clazz.getSuperclass()) {
-            Field[] fields = clazz.getDeclaredFields();
-            for (Field field: fields) {
-                if (!field.isAnnotationPresent(actionAnnotation)) continue;
-                if (!AbstractInvoker.class.isAssignableFrom(field.getType())) {
-                    throw new NoSuchMethodException("variable annotated with @Action must have type "+AbstractInvoker.class.getSimpleName());
+        return classActions.get(objectWithAction.getClass()).findAction(objectWithAction, argCount);
+    }
+
+    /**
+     * loads the factory generated for the class with the loader of the class, so a class without a factory
+     * costs one failed class lookup, and factories are cached only in {@link #classActions}.
+     * A factory which cannot be loaded or serves another class is ignored, and the class is scanned.
+     */
+    private static ClassInvokerFactory<?> findGenerated(Class<?> type) {
+        ClassLoader loader = type.getClassLoader();
+        if (loader == null) {
+            return null;
+        }
+        String name = type.getName();
+        int dot = name.lastIndexOf('.');
+        String factoryName = name.substring(0, dot + 1) + name.substring(dot + 1).replace('$', '_') + GENERATED_SUFFIX;
+        try {
+            Class<?> factoryClass = Class.forName(factoryName, true, loader);
+            if (!ClassInvokerFactory.class.isAssignableFrom(factoryClass)) {
+                return null;
+            }
+            ClassInvokerFactory<?> factory = (ClassInvokerFactory<?>) factoryClass.getConstructor().newInstance();
+            return factory.actionClass() == type ? factory : null;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * result of the scan of a class hierarchy: annotated fields and methods,
+     * in the order they should be examined
+     */
+    static class ClassActions implements ClassInvokerFactory<Object> {
+        private final Class<?> actionClass;
+        private final ArrayList<Object> candidates = new ArrayList<>();
+
+        ClassActions(Class<?> startClass) {
+            actionClass = startClass;
+            for (Class<?> clazz = startClass; !Object.class.equals(clazz); clazz = clazz.getSuperclass()) {
+                for (Field field: clazz.getDeclaredFields()) {
+                    if (!field.isAnnotationPresent(actionAnnotation)) continue;
+                    if (!AbstractInvoker.class.isAssignableFrom(field.getType())) {
+                        candidates.add(new NoSuchMethodException("variable annotated with @Action must have type "+AbstractInvoker.class.getSimpleName()));
+                        return;
+                    }
+                    field.setAccessible(true);
+                    candidates.add(field);
                 }
-                field.setAccessible(true);
-                AbstractInvoker invoker;
-                try {
-                    invoker = (AbstractInvoker) field.get(objectWithAction);
-                } catch (IllegalAccessException e) {
-                    continue;
+                Method resultMethod = null;
+                for (Method m: clazz.getDeclaredMethods()) {
+                    if (m.isAnnotationPresent(actionAnnotation)) {
+                        if (resultMethod != null) {
+                            candidates.add(new NoSuchMethodException("in class "+actionClass.getName()+" more than one method annotated with @Action"));
+                            return;
+                        }
+                        resultMethod = m;
+                    }
                 }
-                if (invoker == null) continue;
-                if (invoker.isEmpty()) continue;
-                if (actionInvoker != null) {
-                    throw new NoSuchMethodException("class "+startClass.getName()+" has more than one non-null field annotated with @Action");
+                if (resultMethod != null) {
+                    candidates.add(new MethodAction(resultMethod));
+                    return;
                 }
-                actionInvoker = invoker;
-                break classScan;
             }
-            Method[] methods = clazz.getDeclaredMethods();
-            for (Method m: methods) {
-                if (m.isAnnotationPresent(actionAnnotation)) {
-                    if (resultMethod != null) {
-                        throw new NoSuchMethodException("in class "+startClass.getName()+" more than one method annotated with @Action");
+        }
+
+        @Override
+        public Class<?> actionClass() {
+            return actionClass;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked") // the result type of an invoker in a field is not checked
+        public Invoker<Object> findAction(Object objectWithAction, int argCount) throws NoSuchMethodException {
+            for (Object candidate: candidates) {
+                if (candidate instanceof Field) {
+                    AbstractInvoker<?, Object> invoker;
+                    try {
+                        invoker = (AbstractInvoker<?, Object>) ((Field) candidate).get(objectWithAction);
+                    } catch (IllegalAccessException e) {
+                        continue;
+                    }
+                    if (invoker == null) continue;
+                    if (invoker.isEmpty()) continue;
+                    return invoker;
+                } else if (candidate instanceof MethodAction) {
+                    MethodAction action = (MethodAction) candidate;
+                    if (action.paramCount != argCount) {
+                        throw new NoSuchMethodException("class "+actionClass.getName()+" has a method annotated with @Action but with wrong numbers of parameters");
                     }
-                    resultMethod = m;
+                    return action.getFactory().newInvoker(objectWithAction);
+                } else {
+                    NoSuchMethodException e = (NoSuchMethodException) candidate;
+                    throw new NoSuchMethodException(e.getMessage());
                 }
             }
-            if (resultMethod != null) {
-                if (resultMethod.getParameterTypes().length != argCount) {
-                    throw new NoSuchMethodException("class "+startClass.getName()+" has a method annotated with @Action but with wrong numbers of parameters");
+            throw new NoSuchMethodException("class "+actionClass.getName()+" has no field or method annotated with @Action");
+        }
+    }
+
+    /**
+     * method annotated with {@link Action}, with invoker factory created at first use
+     */
+    static class MethodAction {
+        final Method method;
+        final int paramCount;
+        private volatile InvokerFactory<Object> factory;
+
+        MethodAction(Method method) {
+            this.method = method;
+            this.paramCount = method.getParameterTypes().length;
+        }
+
+        InvokerFactory<Object> getFactory() throws NoSuchMethodException {
+            InvokerFactory<Object> res = factory;
+            if (res == null) {
+                try {
+                    res = LambdaInvoker.factory(method);
+                } catch (Throwable e) {
+                    res = null; // cannot be linked, fall back to method handle
                 }
-                resultMethod.setAccessible(true);
-                actionInvoker = new MethodInvoker(objectWithAction, resultMethod);
-                break;
+                if (res == null) {
+                    try {
+                        res = MethodHandleInvoker.factory(method);
+                    } catch (IllegalAccessException | RuntimeException e) {
+                        NoSuchMethodException ex = new NoSuchMethodException("cannot call method "+method);
+                        ex.initCause(e);
+                        throw ex;
+                    }
+                }
+                factory = res;
             }
+            return res;
         }
-        if (actionInvoker == null) {
-            throw new NoSuchMethodException("class "+startClass.getName()+" has no field or method annotated with @Action");
-        }
-        return actionInvoker;
     }
 }
@@ -0,0 +1,70 @@
+package org.df4j.core.util;
+
+import java.util.Arrays;
+
+/**
+ * Set of elements kept in an array, which is replaced on each modification.
+ * Readers take a {@link #snapshot()} and iterate over it by index, without locks and without allocation,
+ * and are not affected by concurrent modifications.
+ * Suits lists of subscribers, which are modified rarely and iterated on each message.
+ *
+ * @param <E> type of elements
+ */
+public class CopyOnWriteArray<E> {
+    private static final Object[] EMPTY = new Object[0];
+
+    private volatile Object[] array = EMPTY;
+
+    /**
+     * @return current elements; the returned array must not be modified
+     */
+    public Object[] snapshot() {
+        return array;
+    }
+
+    /**
+     * @param snapshot array returned by {@link #snapshot()}
+     * @param index index of the element
+     * @param <E> type of elements of the array the snapshot was taken from
+     * @return the element
+     */
+    @SuppressWarnings("unchecked") // a snapshot holds only elements added as E
+    public static <E> E get(Object[] snapshot, int index) {
+        return (E) snapshot[index];
+    }
+
+        public int size() {
+        return array.length;
+    }
+
+    public synchronized void add(E element) {
+        Object[] old = array;
+        Object[] res = Arrays.copyOf(old, old.length + 1);
+        res[old.length] = element;
+        array = res;
+    }
+
+    /**
+     * @param element element to remove, compared by identity
+     * @return true if the element was found
+     */
+    public synchronized boolean remove(E element) {
+        Object[] old = array;
+        int index = old.length - 1; // recent subscribers are more likely to leave
+        while (index >= 0 && old[index] != element) {
+            index--;
+        }
+        if (index < 0) {
+            return false;
+        }
+        Object[] res = new Object[old.length - 1];
+        System.arraycopy(old, 0, res, 0, index);
+        System.arraycopy(old, index + 1, res, index, res.length - index);
+        array = res;
+        return true;
+    }
+
+    public synchronized void clear() {
+        array = EMPTY;
+    }
+}
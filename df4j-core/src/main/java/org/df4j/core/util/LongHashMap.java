@@ -0,0 +1,116 @@
+package org.df4j.core.util;
+
+import java.util.Arrays;
+
+/**
+ * Hash map with primitive long keys, without boxing and without an entry object per key.
+ * Open addressing with linear probing in two parallel arrays; null values are not allowed,
+ * and keys can only be removed all at once, with {@link #clear()}.
+ * Not thread-safe.
+ *
+ * @param <V> type of values
+ */
+public class LongHashMap<V> {
+    private long[] keys;
+    private Object[] values;
+    private int size = 0;
+    private int mask;
+
+    /**
+     * @param expectedSize number of keys which fit without resizing
+     */
+    public LongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) << 1;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    public LongHashMap() {
+        this(16);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * @return index of the key, or of the free slot where it should be inserted
+     */
+    private int slot(long key) {
+        int index = hash(key) & mask;
+        while (values[index] != null && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    @SuppressWarnings("unchecked") // only values of type V are put
+    private V value(int index) {
+        return (V) values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public V get(long key) {
+        return value(slot(key));
+    }
+
+    /**
+     * @param key key
+     * @param value non-null value
+     * @return previous value, or null
+     */
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        int index = slot(key);
+        V old = value(index);
+        keys[index] = key;
+        values[index] = value;
+        if (old == null && ++size * 4 > keys.length * 3) {
+            resize();
+        }
+        return old;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new Object[oldKeys.length * 2];
+        mask = keys.length - 1;
+        for (int k = 0; k < oldKeys.length; k++) {
+            if (oldValues[k] != null) {
+                int index = slot(oldKeys[k]);
+                keys[index] = oldKeys[k];
+                values[index] = oldValues[k];
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    public void forEach(EntryConsumer<? super V> consumer) {
+        for (int k = 0; k < keys.length; k++) {
+            if (values[k] != null) {
+                consumer.accept(keys[k], value(k));
+            }
+        }
+    }
+
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+}
@@ -0,0 +1,27 @@
+package org.df4j.core.util.invoker;
+
+/**
+ * Finds the action of objects of one particular class without reflection.
+ * Implementations are generated at compile time by the df4j-apt annotation processor.
+ * The factory of class {@code p.Outer.Inner} is named {@code p.Outer_Inner_ActionInvoker}, has a public
+ * no-argument constructor, and is loaded by {@link org.df4j.core.util.ActionCaller} with the loader of the class.
+ *
+ * @param <R> type of the action result
+ */
+public interface ClassInvokerFactory<R> {
+
+    /**
+     * @return the class which objects are served by this factory
+     */
+    Class<?> actionClass();
+
+    /**
+     * does the same as {@link org.df4j.core.util.ActionCaller#findAction(Object, int)}
+     *
+     * @param actionObject object of class {@link #actionClass()}
+     * @param argCount number of arguments the action would be called with
+     * @return invoker bound to the actionObject
+     * @throws NoSuchMethodException if no suitable action found
+     */
+    Invoker<R> findAction(Object actionObject, int argCount) throws NoSuchMethodException;
+}
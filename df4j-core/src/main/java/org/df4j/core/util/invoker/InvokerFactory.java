@@ -0,0 +1,12 @@
+package org.df4j.core.util.invoker;
+
+/**
+ * creates invokers of the action of particular class, bound to an instance of that class.
+ *
+ * @param <R> type of the action result
+ */
+@FunctionalInterface
+public interface InvokerFactory<R> {
+
+    Invoker<R> newInvoker(Object actionObject);
+}
@@ -0,0 +1,249 @@
+package org.df4j.core.util.invoker;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * calls an action method through a class generated by {@link LambdaMetafactory},
+ * so that the call costs the same as a direct virtual call.
+ * Generated classes are specialized by the number of arguments (0 to {@link #MAX_ARITY}) and by
+ * presence of the result; one generated instance is shared by all objects of the same class.
+ *
+ * @param <R> type of the result
+ */
+public abstract class LambdaInvoker<R> implements Invoker<R> {
+    public static final int MAX_ARITY = 3;
+
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    private static final Class<?>[] functions = {Call0.class, Call1.class, Call2.class, Call3.class};
+    private static final Class<?>[] procedures = {Run0.class, Run1.class, Run2.class, Run3.class};
+
+    protected final Object actionObject;
+
+    protected LambdaInvoker(Object actionObject) {
+        this.actionObject = actionObject;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return false;
+    }
+
+    /**
+     * @param actionMethod method to call
+     * @return factory of invokers of that method, or null if the method cannot be linked from this class
+     * @throws Throwable if {@link LambdaMetafactory} fails
+     */
+    public static <R> InvokerFactory<R> factory(Method actionMethod) throws Throwable {
+        Class<?> declaringClass = actionMethod.getDeclaringClass();
+        Class<?>[] paramTypes = actionMethod.getParameterTypes();
+        int arity = paramTypes.length;
+        if (arity > MAX_ARITY
+                || Modifier.isStatic(actionMethod.getModifiers())
+                || !Modifier.isPublic(actionMethod.getModifiers())
+                || !isLinkable(declaringClass)
+                || !isLinkable(actionMethod.getReturnType())) {
+            return null;
+        }
+        Class<?>[] instantiatedTypes = new Class<?>[arity + 1];
+        instantiatedTypes[0] = declaringClass;
+        for (int k = 0; k < arity; k++) {
+            if (!isLinkable(paramTypes[k])) {
+                return null;
+            }
+            instantiatedTypes[k + 1] = box(paramTypes[k]);
+        }
+        Class<?> returnType = actionMethod.getReturnType();
+        boolean returnsValue = !returnType.equals(void.class);
+        Class<?> samType = returnsValue ? functions[arity] : procedures[arity];
+        Method sam = samType.getMethods()[0];
+        MethodHandle impl = lookup.unreflect(actionMethod);
+        MethodType instantiated = MethodType.methodType(returnsValue ? box(returnType) : void.class, instantiatedTypes);
+        CallSite site = LambdaMetafactory.metafactory(lookup, sam.getName(), MethodType.methodType(samType),
+                MethodType.methodType(sam.getReturnType(), sam.getParameterTypes()), impl, instantiated);
+        Object function = site.getTarget().invoke();
+        switch (arity) {
+            case 0:
+                return returnsValue
+                        ? (actionObject) -> new CallInvoker0<>(actionObject, (Call0) function)
+                        : (actionObject) -> new RunInvoker0<>(actionObject, (Run0) function);
+            case 1:
+                return returnsValue
+                        ? (actionObject) -> new CallInvoker1<>(actionObject, (Call1) function)
+                        : (actionObject) -> new RunInvoker1<>(actionObject, (Run1) function);
+            case 2:
+                return returnsValue
+                        ? (actionObject) -> new CallInvoker2<>(actionObject, (Call2) function)
+                        : (actionObject) -> new RunInvoker2<>(actionObject, (Run2) function);
+            default:
+                return returnsValue
+                        ? (actionObject) -> new CallInvoker3<>(actionObject, (Call3) function)
+                        : (actionObject) -> new RunInvoker3<>(actionObject, (Run3) function);
+        }
+    }
+
+    /**
+     * generated class is defined in the class loader of this class, and must see the type
+     */
+    private static boolean isLinkable(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        if (type.isPrimitive()) {
+            return true;
+        }
+        if (!Modifier.isPublic(type.getModifiers())) {
+            return false;
+        }
+        try {
+            return Class.forName(type.getName(), false, LambdaInvoker.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static Class<?> box(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        }
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    public interface Call0 {Object call(Object actionObject);}
+    public interface Call1 {Object call(Object actionObject, Object arg0);}
+    public interface Call2 {Object call(Object actionObject, Object arg0, Object arg1);}
+    public interface Call3 {Object call(Object actionObject, Object arg0, Object arg1, Object arg2);}
+
+    public interface Run0 {void run(Object actionObject);}
+    public interface Run1 {void run(Object actionObject, Object arg0);}
+    public interface Run2 {void run(Object actionObject, Object arg0, Object arg1);}
+    public interface Run3 {void run(Object actionObject, Object arg0, Object arg1, Object arg2);}
+
+    static abstract class CallInvoker<R> extends LambdaInvoker<R> {
+        CallInvoker(Object actionObject) {
+            super(actionObject);
+        }
+
+        @Override
+        public boolean returnsValue() {
+            return true;
+        }
+    }
+
+    static final class CallInvoker0<R> extends CallInvoker<R> {
+        private final Call0 function;
+
+        CallInvoker0(Object actionObject, Call0 function) {
+            super(actionObject);
+            this.function = function;
+        }
+
+        @SuppressWarnings("unchecked") // the action method returns R
+        public R apply(Object... args) {
+            return (R) function.call(actionObject);
+        }
+    }
+
+    static final class CallInvoker1<R> extends CallInvoker<R> {
+        private final Call1 function;
+
+        CallInvoker1(Object actionObject, Call1 function) {
+            super(actionObject);
+            this.function = function;
+        }
+
+        @SuppressWarnings("unchecked") // the action method returns R
+        public R apply(Object... args) {
+            return (R) function.call(actionObject, args[0]);
+        }
+    }
+
+    static final class CallInvoker2<R> extends CallInvoker<R> {
+        private final Call2 function;
+
+        CallInvoker2(Object actionObject, Call2 function) {
+            super(actionObject);
+            this.function = function;
+        }
+
+        @SuppressWarnings("unchecked") // the action method returns R
+        public R apply(Object... args) {
+            return (R) function.call(actionObject, args[0], args[1]);
+        }
+    }
+
+    static final class CallInvoker3<R> extends CallInvoker<R> {
+        private final Call3 function;
+
+        CallInvoker3(Object actionObject, Call3 function) {
+            super(actionObject);
+            this.function = function;
+        }
+
+        @SuppressWarnings("unchecked") // the action method returns R
+        public R apply(Object... args) {
+            return (R) function.call(actionObject, args[0], args[1], args[2]);
+        }
+    }
+
+    static final class RunInvoker0<R> extends LambdaInvoker<R> {
+        private final Run0 function;
+
+        RunInvoker0(Object actionObject, Run0 function) {
+            super(actionObject);
+            this.function = function;
+        }
+
+        public R apply(Object... args) {
+            function.run(actionObject);
+            return null;
+        }
+    }
+
+    static final class RunInvoker1<R> extends LambdaInvoker<R> {
+        private final Run1 function;
+
+        RunInvoker1(Object actionObject, Run1 function) {
+            super(actionObject);
+            this.function = function;
+        }
+
+        public R apply(Object... args) {
+            function.run(actionObject, args[0]);
+            return null;
+        }
+    }
+
+    static final class RunInvoker2<R> extends LambdaInvoker<R> {
+        private final Run2 function;
+
+        RunInvoker2(Object actionObject, Run2 function) {
+            super(actionObject);
+            this.function = function;
+        }
+
+        public R apply(Object... args) {
+            function.run(actionObject, args[0], args[1]);
+            return null;
+        }
+    }
+
+    static final class RunInvoker3<R> extends LambdaInvoker<R> {
+        private final Run3 function;
+
+        RunInvoker3(Object actionObject, Run3 function) {
+            super(actionObject);
+            this.function = function;
+        }
+
+        public R apply(Object... args) {
+            function.run(actionObject, args[0], args[1], args[2]);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.df4j.core.util.invoker;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * calls an action method through a {@link MethodHandle}.
+ * Used when the method cannot be linked by {@link LambdaInvoker}, e.g. when it is not public.
+ * Calls with up to 3 arguments use invokeExact without spreading the argument array.
+ *
+ * @param <R> type of the result
+ */
+public class MethodHandleInvoker<R> implements Invoker<R> {
+    private final Object actionObject;
+    private final MethodHandle handle;
+    private final int arity;
+    private final boolean returnsValue;
+
+    protected MethodHandleInvoker(Object actionObject, MethodHandle handle, int arity, boolean returnsValue) {
+        this.actionObject = actionObject;
+        this.handle = handle;
+        this.arity = arity;
+        this.returnsValue = returnsValue;
+    }
+
+    /**
+     * @param actionMethod method to call, instance or static
+     * @return factory of invokers of that method
+     * @throws IllegalAccessException if the method cannot be made accessible
+     */
+    public static <R> InvokerFactory<R> factory(Method actionMethod) throws IllegalAccessException {
+        actionMethod.setAccessible(true);
+        MethodHandle mh = MethodHandles.lookup().unreflect(actionMethod);
+        int arity = actionMethod.getParameterTypes().length;
+        if (Modifier.isStatic(actionMethod.getModifiers())) {
+            mh = MethodHandles.dropArguments(mh, 0, Object.class);
+        }
+        // receiver and arguments as Objects, void result becomes null
+        MethodHandle generic = mh.asType(MethodType.genericMethodType(arity + 1));
+        if (arity > 3) {
+            generic = generic.asSpreader(Object[].class, arity);
+        }
+        MethodHandle handle = generic;
+        boolean returnsValue = !actionMethod.getReturnType().equals(void.class);
+        return (actionObject) -> new MethodHandleInvoker<R>(actionObject, handle, arity, returnsValue);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked") // the action method returns R
+    public R apply(Object... args) throws Exception {
+        try {
+            Object res;
+            switch (arity) {
+                case 0:
+                    res = handle.invokeExact(actionObject);
+                    break;
+                case 1:
+                    res = handle.invokeExact(actionObject, args[0]);
+                    break;
+                case 2:
+                    res = handle.invokeExact(actionObject, args[0], args[1]);
+                    break;
+                case 3:
+                    res = handle.invokeExact(actionObject, args[0], args[1], args[2]);
+                    break;
+                default:
+                    res = handle.invokeExact(actionObject, args);
+            }
+            return (R) res;
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+
+    @Override
+    public boolean returnsValue() {
+        return returnsValue;
+    }
+}
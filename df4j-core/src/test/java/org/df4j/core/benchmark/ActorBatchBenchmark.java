@@ -0,0 +1,61 @@
+package org.df4j.core.benchmark;
+
+import org.df4j.core.tasknode.messagestream.Actor1;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Message throughput of an {@link Actor1} on the common pool, depending on the batch size.
+ * A producer thread posts messages while the actor consumes them.
+ *
+ * run with: java -cp target/test-classes:&lt;test classpath&gt; org.df4j.core.benchmark.ActorBatchBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ActorBatchBenchmark {
+    static final int MESSAGES = 10_000;
+    static final Integer TOKEN = 1;
+
+    @Param({"1", "16", "256"})
+    int batchSize;
+
+    static class Sink extends Actor1<Integer> {
+        final CountDownLatch latch = new CountDownLatch(MESSAGES);
+
+        @Override
+        protected void runAction(Integer arg) {
+            latch.countDown();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void postAndConsume() throws InterruptedException {
+        Sink sink = new Sink();
+        sink.setBatchSize(batchSize);
+        sink.start(ForkJoinPool.commonPool());
+        for (int k = 0; k < MESSAGES; k++) {
+            sink.post(TOKEN);
+        }
+        sink.latch.await();
+        sink.stop();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(ActorBatchBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
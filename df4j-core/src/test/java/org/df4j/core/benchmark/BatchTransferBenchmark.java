@@ -0,0 +1,63 @@
+package org.df4j.core.benchmark;
+
+import org.df4j.core.boundconnector.messagestream.StreamInput;
+import org.df4j.core.tasknode.messagestream.Actor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves a batch of tokens through a {@link StreamInput}, one token at a time or with batch operations.
+ *
+ * run with: java -cp target/test-classes:&lt;test classpath&gt; org.df4j.core.benchmark.BatchTransferBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchTransferBenchmark {
+    static final int BATCH = 64;
+
+    Integer[] tokens = new Integer[BATCH];
+    /** not started, so its input can be used directly */
+    StreamInput<Integer> input = new StreamInput<>(new Actor());
+
+    @Setup
+    public void setup() {
+        for (int k = 0; k < BATCH; k++) {
+            tokens[k] = k;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void single(Blackhole bh) {
+        for (int k = 0; k < BATCH; k++) {
+            input.post(tokens[k]);
+        }
+        for (int k = 0; k < BATCH; k++) {
+            bh.consume(input.next());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void batch(Blackhole bh) {
+        input.postBatch(tokens, 0, BATCH);
+        input.drainTo(bh::consume, BATCH);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(BatchTransferBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,128 @@
+package org.df4j.core.benchmark;
+
+import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
+import org.df4j.core.boundconnector.messagestream.StreamOutput;
+import org.df4j.core.boundconnector.messagestream.StreamSubscriber;
+import org.df4j.core.tasknode.messagestream.Actor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Cost of posting one message to all subscribers of an output.
+ *
+ * copyOnWrite: current {@link StreamOutput}, indexed loop over an array snapshot.
+ * hashSet: previous scheme, HashSet of subscriptions iterated with a capturing lambda.
+ *
+ * run with: java -cp target/test-classes:&lt;test classpath&gt; org.df4j.core.benchmark.BroadcastBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BroadcastBenchmark {
+    static final Integer TOKEN = 1;
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    int subscribers;
+
+    StreamOutput<Integer> output;
+    LegacyOutput legacy;
+
+    static class Sink implements StreamSubscriber<Integer> {
+        int received;
+
+        @Override
+        public void onSubscribe(SimpleSubscription subscription) {
+        }
+
+        @Override
+        public void post(Integer message) {
+            received++;
+        }
+
+        @Override
+        public void complete() {
+        }
+    }
+
+    /**
+     * replica of the previous StreamOutput
+     */
+    static class LegacyOutput {
+        final Set<LegacySubscription> subscriptions = new HashSet<>();
+
+        void subscribe(StreamSubscriber<Integer> subscriber) {
+            subscriptions.add(new LegacySubscription(subscriber));
+        }
+
+        void forEachSubscription(Consumer<? super LegacySubscription> operator) {
+            subscriptions.forEach(operator);
+        }
+
+        void post(Integer item) {
+            forEachSubscription((subscription) -> subscription.post(item));
+        }
+    }
+
+    static class LegacySubscription {
+        final StreamSubscriber<Integer> subscriber;
+
+        LegacySubscription(StreamSubscriber<Integer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void post(Integer message) {
+            subscriber.post(message);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        output = new StreamOutput<>(new Actor());
+        legacy = new LegacyOutput();
+        for (int k = 0; k < subscribers; k++) {
+            output.subscribe(new Sink());
+            legacy.subscribe(new Sink());
+        }
+    }
+
+    @Benchmark
+    public void copyOnWrite() {
+        output.post(TOKEN);
+    }
+
+    @Benchmark
+    public void hashSet() {
+        legacy.post(TOKEN);
+    }
+
+    /**
+     * subscribe and cancel at the given number of subscribers
+     */
+    @Benchmark
+    public void subscribeAndCancel() {
+        output.subscribe(new Sink() {
+            @Override
+            public void onSubscribe(SimpleSubscription subscription) {
+                subscription.cancel();
+            }
+        });
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(BroadcastBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
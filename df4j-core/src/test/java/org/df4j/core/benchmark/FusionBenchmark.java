@@ -0,0 +1,114 @@
+package org.df4j.core.benchmark;
+
+import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
+import org.df4j.core.boundconnector.messagestream.StreamSubscriber;
+import org.df4j.core.tasknode.messagestream.Pipeline;
+import org.df4j.core.tasknode.messagestream.StreamProcessor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Message throughput of a chain of five stateless operators (map, filter, map, map, map).
+ *
+ * processors: five {@link StreamProcessor}s, each with its own queue; filtered messages are mapped to a marker.
+ * fused: {@link Pipeline} with all operators fused into one actor.
+ *
+ * run with: java -cp target/test-classes:&lt;test classpath&gt; org.df4j.core.benchmark.FusionBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FusionBenchmark {
+    static final int MESSAGES = 10_000;
+    static final Integer SKIP = -1;
+
+    @Param({"processors", "fused"})
+    String chain;
+
+    static class Sink implements StreamSubscriber<Integer> {
+        final CountDownLatch done = new CountDownLatch(1);
+
+        @Override
+        public void onSubscribe(SimpleSubscription subscription) {
+        }
+
+        @Override
+        public void post(Integer message) {
+        }
+
+        @Override
+        public void complete() {
+            done.countDown();
+        }
+    }
+
+    static class Map extends StreamProcessor<Integer, Integer> {
+        final Function<Integer, Integer> function;
+
+        Map(Function<Integer, Integer> function) {
+            this.function = function;
+        }
+
+        @Override
+        protected Integer process(Integer message) {
+            return message == SKIP ? SKIP : function.apply(message);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void postAndConsume() throws InterruptedException {
+        Sink sink = new Sink();
+        StreamSubscriber<Integer> head;
+        if (chain.equals("processors")) {
+            Map[] stages = {
+                    new Map(x -> x + 1),
+                    new Map(x -> (x & 1) == 0 ? x : SKIP),
+                    new Map(x -> x * 3),
+                    new Map(x -> x - 7),
+                    new Map(x -> x ^ 5)
+            };
+            for (int k = 0; k < stages.length - 1; k++) {
+                stages[k].subscribe(stages[k + 1]);
+            }
+            stages[stages.length - 1].subscribe(sink);
+            for (Map stage : stages) {
+                stage.start();
+            }
+            head = stages[0];
+        } else {
+            Pipeline<Integer, Integer> pipeline = Pipeline.<Integer>builder()
+                    .map(x -> x + 1)
+                    .filter(x -> (x & 1) == 0)
+                    .map(x -> x * 3)
+                    .map(x -> x - 7)
+                    .map(x -> x ^ 5)
+                    .build();
+            pipeline.subscribe(sink);
+            pipeline.start();
+            head = pipeline;
+        }
+        for (int k = 0; k < MESSAGES; k++) {
+            head.post(k);
+        }
+        head.complete();
+        sink.done.await();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(FusionBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,110 @@
+package org.df4j.core.benchmark;
+
+import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
+import org.df4j.core.boundconnector.messagestream.StreamSubscriber;
+import org.df4j.core.tasknode.messagestream.Actor1;
+import org.df4j.core.tasknode.window.Aggregator;
+import org.df4j.core.tasknode.window.GroupByAggregate;
+import org.df4j.core.util.Pair;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counting elements by key, posted by 2 threads, 1000 distinct keys.
+ *
+ * actor: a single {@link Actor1} with a {@link HashMap}, every element passes through its queue.
+ * groupBy: {@link GroupByAggregate} with long keys, per-thread combiners and 2 merger shards.
+ *
+ * run with: java -cp target/test-classes:&lt;test classpath&gt; org.df4j.core.benchmark.GroupByBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GroupByBenchmark {
+    static final int MESSAGES = 100_000;
+    static final int THREADS = 2;
+    static final int KEYS = 1000;
+
+    @Param({"actor", "groupBy"})
+    String aggregation;
+
+    static class CountingActor extends Actor1<Long> {
+        final HashMap<Long, long[]> counts = new HashMap<>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        @Override
+        protected void runAction(Long key) {
+            if (key == null) {
+                done.countDown();
+                return;
+            }
+            counts.computeIfAbsent(key, k -> new long[1])[0]++;
+        }
+    }
+
+    static class Sink implements StreamSubscriber<Pair<Long, Long>> {
+        final CountDownLatch done = new CountDownLatch(1);
+
+        @Override
+        public void onSubscribe(SimpleSubscription subscription) {
+        }
+
+        @Override
+        public void post(Pair<Long, Long> update) {
+        }
+
+        @Override
+        public void complete() {
+            done.countDown();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void count() throws InterruptedException {
+        StreamSubscriber<Long> input;
+        CountDownLatch done;
+        if (aggregation.equals("actor")) {
+            CountingActor actor = new CountingActor();
+            actor.start();
+            input = actor;
+            done = actor.done;
+        } else {
+            GroupByAggregate<Long, Long, long[], Long> groupBy =
+                    GroupByAggregate.byLongKey(x -> x, Aggregator.count(), 2);
+            input = groupBy;
+            done = groupBy.subscribe(new Sink()).done;
+        }
+        Thread[] posters = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            posters[t] = new Thread(() -> {
+                for (long k = 0; k < MESSAGES / THREADS; k++) {
+                    input.post(k % KEYS);
+                }
+            });
+            posters[t].start();
+        }
+        for (Thread poster : posters) {
+            poster.join();
+        }
+        input.complete();
+        done.await();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(GroupByBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
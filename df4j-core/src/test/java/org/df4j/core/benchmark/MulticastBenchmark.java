@@ -0,0 +1,135 @@
+package org.df4j.core.benchmark;
+
+import org.df4j.core.boundconnector.reactivestream.ReactiveInput;
+import org.df4j.core.boundconnector.reactivestream.ReactiveOutput;
+import org.df4j.core.boundconnector.ringstream.RingInput;
+import org.df4j.core.boundconnector.ringstream.RingOutput;
+import org.df4j.core.tasknode.AsyncProc;
+import org.df4j.core.tasknode.messagestream.Actor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One publisher sends messages to many subscriber nodes on the common pool.
+ *
+ * reactive: {@link ReactiveOutput}, each message is copied into the queue of each {@link ReactiveInput}.
+ * ring: {@link RingOutput}, each message is written once into the shared ring, and read by each {@link RingInput}.
+ *
+ * Score is messages published per microsecond.
+ *
+ * run with: java -cp target/test-classes:&lt;test classpath&gt; org.df4j.core.benchmark.MulticastBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MulticastBenchmark {
+    static final int MESSAGES = 10_000;
+    static final int CAPACITY = 256;
+    static final Integer TOKEN = 1;
+
+    @Param({"1", "4", "20"})
+    int subscribers;
+
+    @Param({"reactive", "ring"})
+    String output;
+
+    static abstract class Source extends Actor {
+        int sent;
+
+        abstract void post(Integer message);
+
+        abstract void complete();
+
+        @Override
+        protected Void runAction() {
+            if (sent == MESSAGES) {
+                complete();
+                stop();
+            } else {
+                sent++;
+                post(TOKEN);
+            }
+            return null;
+        }
+    }
+
+    static class ReactiveSource extends Source {
+        final ReactiveOutput<Integer> output = new ReactiveOutput<>(this);
+
+        void post(Integer message) {
+            output.post(message);
+        }
+
+        void complete() {
+            output.complete();
+        }
+    }
+
+    static class RingSource extends Source {
+        final RingOutput<Integer> output = new RingOutput<>(this, CAPACITY);
+
+        void post(Integer message) {
+            output.post(message);
+        }
+
+        void complete() {
+            output.complete();
+        }
+    }
+
+    static class Sink extends Actor {
+        final AsyncProc.AsyncParam<Integer> input;
+        final CountDownLatch done;
+
+        Sink(boolean ring, CountDownLatch done) {
+            input = ring ? new RingInput<>(this) : new ReactiveInput<>(this, CAPACITY);
+            this.done = done;
+        }
+
+        @Override
+        protected Void runAction() {
+            if (input.next() == null) {
+                done.countDown();
+                stop();
+            }
+            return null;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void transfer() throws InterruptedException {
+        boolean ring = output.equals("ring");
+        Source source = ring ? new RingSource() : new ReactiveSource();
+        source.setBatchSize(16);
+        CountDownLatch done = new CountDownLatch(subscribers);
+        for (int k = 0; k < subscribers; k++) {
+            Sink sink = new Sink(ring, done);
+            sink.setBatchSize(16);
+            if (ring) {
+                ((RingSource) source).output.subscribe((RingInput<Integer>) sink.input);
+            } else {
+                ((ReactiveSource) source).output.subscribe((ReactiveInput<Integer>) sink.input);
+            }
+            sink.start();
+        }
+        source.start();
+        done.await();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(MulticastBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
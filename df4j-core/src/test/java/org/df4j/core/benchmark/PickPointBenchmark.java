@@ -0,0 +1,71 @@
+package org.df4j.core.benchmark;
+
+import org.df4j.core.simplenode.messagestream.PickPoint;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Producers and consumers exchange tokens through a bounded {@link BlockingQueue}:
+ * {@link PickPoint}, compared with the queues of java.util.concurrent.
+ * Consumers use timed poll, so that they do not hang when the iteration ends.
+ *
+ * run with: java -cp target/test-classes:&lt;test classpath&gt; org.df4j.core.benchmark.PickPointBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class PickPointBenchmark {
+    static final int CAPACITY = 1024;
+    static final Integer TOKEN = 1;
+
+    @Param({"pickPoint", "linked", "array"})
+    String queue;
+
+    BlockingQueue<Integer> q;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        switch (queue) {
+            case "pickPoint":
+                q = new PickPoint<>(CAPACITY);
+                break;
+            case "linked":
+                q = new LinkedBlockingQueue<>(CAPACITY);
+                break;
+            default:
+                q = new ArrayBlockingQueue<>(CAPACITY);
+        }
+    }
+
+    @Benchmark
+    @Group("exchange")
+    @GroupThreads(4)
+    public boolean produce() throws InterruptedException {
+        return q.offer(TOKEN, 1, TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    @Group("exchange")
+    @GroupThreads(4)
+    public Integer consume() throws InterruptedException {
+        return q.poll(1, TimeUnit.MILLISECONDS);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(PickPointBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,158 @@
+package org.df4j.core.benchmark;
+
+import org.df4j.core.tasknode.AsyncProc;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Contention benchmark for pin state transitions.
+ * Each thread toggles its own pin of a shared node, so all threads race on the node state.
+ *
+ * lockFree: current {@link AsyncProc} pins, one CAS-updated word per node.
+ * legacy: previous scheme, a plain boolean per pin and a shared AtomicInteger counter.
+ * legacySynchronized: previous scheme made safe by synchronizing on the node.
+ *
+ * run with: java -cp target/test-classes:&lt;test classpath&gt; org.df4j.core.benchmark.PinStateBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class PinStateBenchmark {
+    static final int PINS = 4;
+
+    @State(Scope.Benchmark)
+    public static class Nodes {
+        LockFreeNode lockFree = new LockFreeNode();
+        LegacyNode legacy = new LegacyNode(false);
+        LegacyNode legacySynchronized = new LegacyNode(true);
+    }
+
+    @State(Scope.Thread)
+    public static class PinIndex {
+        static final AtomicInteger counter = new AtomicInteger();
+        int index = counter.getAndIncrement() % PINS;
+    }
+
+    @Benchmark
+    public void lockFree(Nodes nodes, PinIndex pin) {
+        AsyncProc.Lock lock = nodes.lockFree.pins[pin.index];
+        lock.turnOff();
+        lock.turnOn();
+    }
+
+    @Benchmark
+    public void legacy(Nodes nodes, PinIndex pin) {
+        LegacyNode.Pin lock = nodes.legacy.pins[pin.index];
+        lock.turnOff();
+        lock.turnOn();
+    }
+
+    @Benchmark
+    public void legacySynchronized(Nodes nodes, PinIndex pin) {
+        LegacyNode.Pin lock = nodes.legacySynchronized.pins[pin.index];
+        lock.turnOff();
+        lock.turnOn();
+    }
+
+    static class LockFreeNode extends AsyncProc {
+        final Lock[] pins = new Lock[PINS];
+        int fired;
+
+        LockFreeNode() {
+            for (int k = 0; k < PINS; k++) {
+                pins[k] = new Lock(false);
+            }
+        }
+
+        @Override
+        protected boolean isStarted() {
+            return true;
+        }
+
+        @Override
+        protected void fire() {
+            fired++;
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+
+    /**
+     * a copy of the pin logic which AsyncProc used before lock-free pin state
+     */
+    static class LegacyNode {
+        final AtomicInteger blockedPinCount = new AtomicInteger();
+        final Pin[] pins = new Pin[PINS];
+        final boolean synchronizedPins;
+        int fired;
+
+        LegacyNode(boolean synchronizedPins) {
+            this.synchronizedPins = synchronizedPins;
+            for (int k = 0; k < PINS; k++) {
+                pins[k] = new Pin();
+            }
+        }
+
+        class Pin {
+            boolean blocked;
+
+            void turnOff() {
+                if (synchronizedPins) {
+                    synchronized (LegacyNode.this) {
+                        doTurnOff();
+                    }
+                } else {
+                    doTurnOff();
+                }
+            }
+
+            boolean turnOn() {
+                if (synchronizedPins) {
+                    synchronized (LegacyNode.this) {
+                        return doTurnOn();
+                    }
+                } else {
+                    return doTurnOn();
+                }
+            }
+
+            private void doTurnOff() {
+                if (blocked) {
+                    return;
+                }
+                blocked = true;
+                blockedPinCount.incrementAndGet();
+            }
+
+            private boolean doTurnOn() {
+                if (!blocked) {
+                    return false;
+                }
+                blocked = false;
+                long res = blockedPinCount.decrementAndGet();
+                if (res == 0) {
+                    fired++;
+                }
+                return true;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(PinStateBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,89 @@
+package org.df4j.core.benchmark;
+
+import org.df4j.core.boundconnector.reactivestream.ReactiveInput;
+import org.df4j.core.boundconnector.reactivestream.ReactiveOutput;
+import org.df4j.core.tasknode.messagestream.Actor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a {@link ReactiveOutput} to {@link ReactiveInput} link on the common pool,
+ * with demand requested for each element (requestBatch = 1) or for half of the window.
+ *
+ * run with: java -cp target/test-classes:&lt;test classpath&gt; org.df4j.core.benchmark.ReactiveStreamBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReactiveStreamBenchmark {
+    static final int MESSAGES = 10_000;
+    static final int CAPACITY = 64;
+    static final Integer TOKEN = 1;
+
+    @Param({"1", "32"})
+    int requestBatch;
+
+    static class Source extends Actor {
+        final ReactiveOutput<Integer> output = new ReactiveOutput<>(this);
+        int sent;
+
+        @Override
+        protected Void runAction() {
+            if (sent == MESSAGES) {
+                output.complete();
+                stop();
+            } else {
+                sent++;
+                output.post(TOKEN);
+            }
+            return null;
+        }
+    }
+
+    static class Sink extends Actor {
+        final ReactiveInput<Integer> input;
+        final CountDownLatch done = new CountDownLatch(1);
+
+        Sink(int requestBatch) {
+            input = new ReactiveInput<>(this, CAPACITY, requestBatch);
+        }
+
+        @Override
+        protected Void runAction() {
+            if (input.next() == null) {
+                done.countDown();
+                stop();
+            }
+            return null;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void transfer() throws InterruptedException {
+        Source source = new Source();
+        Sink sink = new Sink(requestBatch);
+        source.setBatchSize(16);
+        sink.setBatchSize(16);
+        source.output.subscribe(sink.input);
+        sink.start();
+        source.start();
+        sink.done.await();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(ReactiveStreamBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,95 @@
+package org.df4j.core.benchmark;
+
+import org.df4j.core.boundconnector.permitstream.Semafor;
+import org.df4j.core.tasknode.AsyncProc;
+import org.df4j.core.tasknode.messagestream.Actor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many threads release and acquire permits of a single {@link Semafor}, crossing zero on most operations.
+ * The parent node is not started, so only the counter and the pin are measured.
+ *
+ * locked: the counter updated under the monitor of the semaphore, as before.
+ * lockFree: {@link Semafor}, atomic counter.
+ *
+ * run with: java -cp target/test-classes:&lt;test classpath&gt; org.df4j.core.benchmark.SemaforBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SemaforBenchmark {
+
+    @Param({"locked", "lockFree"})
+    String semafor;
+
+    TestSemafor permits;
+
+    static class TestSemafor extends Semafor {
+        TestSemafor(AsyncProc actor) {
+            super(actor);
+        }
+
+        void take(long delta) {
+            acquire(delta);
+        }
+    }
+
+    static class LockedSemafor extends TestSemafor {
+        LockedSemafor(AsyncProc actor) {
+            super(actor);
+        }
+
+        @Override
+        public synchronized void release(long delta) {
+            super.release(delta);
+        }
+
+        @Override
+        protected synchronized void acquire(long delta) {
+            super.acquire(delta);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        Actor actor = new Actor();
+        permits = semafor.equals("locked") ? new LockedSemafor(actor) : new TestSemafor(actor);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void releaseAcquire1() {
+        permits.release(1);
+        permits.take(1);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void releaseAcquire4() {
+        permits.release(1);
+        permits.take(1);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void releaseAcquire16() {
+        permits.release(1);
+        permits.take(1);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(SemaforBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,89 @@
+package org.df4j.core.benchmark;
+
+import org.df4j.core.boundconnector.messagestream.StreamInput;
+import org.df4j.core.tasknode.messagestream.Actor1;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many producers post messages to a single {@link Actor1}.
+ *
+ * locked: {@link org.df4j.core.boundconnector.messagestream.StreamInput}, synchronized methods over ArrayDeque.
+ * lockFree: {@link org.df4j.core.boundconnector.messagestream.ConcurrentStreamInput}, linked MPSC queue.
+ *
+ * run with: java -cp target/test-classes:&lt;test classpath&gt; org.df4j.core.benchmark.StreamInputBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StreamInputBenchmark {
+    static final int MESSAGES = 64 * 1024;
+    static final Integer TOKEN = 1;
+
+    @Param({"1", "4", "16", "64"})
+    int producers;
+
+    @Param({"locked", "lockFree"})
+    String input;
+
+    ExecutorService producerPool;
+
+    static class Sink extends Actor1<Integer> {
+        final CountDownLatch latch = new CountDownLatch(MESSAGES);
+
+        Sink(boolean concurrentInput) {
+            super(concurrentInput ? concurrent() : StreamInput::new);
+            setBatchSize(256);
+        }
+
+        @Override
+        protected void runAction(Integer arg) {
+            latch.countDown();
+        }
+    }
+
+    @Setup
+    public void setup() {
+        producerPool = Executors.newFixedThreadPool(producers);
+    }
+
+    @TearDown
+    public void tearDown() {
+        producerPool.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void post() throws InterruptedException {
+        Sink sink = new Sink(input.equals("lockFree"));
+        sink.start();
+        int share = MESSAGES / producers;
+        for (int p = 0; p < producers; p++) {
+            producerPool.execute(() -> {
+                for (int k = 0; k < share; k++) {
+                    sink.post(TOKEN);
+                }
+            });
+        }
+        sink.latch.await();
+        sink.stop();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(StreamInputBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
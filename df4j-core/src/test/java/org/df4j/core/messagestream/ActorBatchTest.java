@@ -0,0 +1,100 @@
+package org.df4j.core.messagestream;
+
+import org.df4j.core.tasknode.messagestream.Actor1;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ActorBatchTest {
+
+    static class CountingExecutor implements Executor {
+        final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void execute(Runnable command) {
+            count.incrementAndGet();
+            ForkJoinPool.commonPool().execute(command);
+        }
+    }
+
+    static class Consumer extends Actor1<Integer> {
+        final CountDownLatch latch;
+        final long sleep;
+
+        Consumer(int count, long sleep) {
+            this.latch = new CountDownLatch(count);
+            this.sleep = sleep;
+        }
+
+        @Override
+        protected void runAction(Integer arg) throws Exception {
+            if (sleep > 0) {
+                Thread.sleep(sleep);
+            }
+            latch.countDown();
+        }
+    }
+
+    static Consumer run(int count, int batchSize, long quantum, long sleep, CountingExecutor executor) throws InterruptedException {
+        Consumer consumer = new Consumer(count, sleep);
+        consumer.setBatchSize(batchSize);
+        consumer.setTimeQuantum(quantum, TimeUnit.MILLISECONDS);
+        for (int k = 0; k < count; k++) {
+            consumer.post(k);
+        }
+        consumer.start(executor);
+        Assert.assertTrue(consumer.latch.await(2, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 2000;
+        while (consumer.getActionCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.yield(); // statistics are updated after the last action returns
+        }
+        Assert.assertEquals(count, consumer.getActionCount());
+        consumer.stop();
+        return consumer;
+    }
+
+    @Test
+    public void singleActionPerRun() throws InterruptedException {
+        CountingExecutor executor = new CountingExecutor();
+        Consumer consumer = run(100, 1, 0, 0, executor);
+        Assert.assertEquals(100, executor.count.get());
+        Assert.assertEquals(1, consumer.getMaxBatch());
+    }
+
+    @Test
+    public void batchedRuns() throws InterruptedException {
+        CountingExecutor executor = new CountingExecutor();
+        Consumer consumer = run(1000, 16, 0, 0, executor);
+        Assert.assertEquals(63, executor.count.get());
+        Assert.assertEquals(63, consumer.getRunCount());
+        Assert.assertEquals(1000, consumer.getActionCount());
+        Assert.assertEquals(16, consumer.getMaxBatch());
+        Assert.assertEquals(1000.0 / 63, consumer.getAverageBatch(), 1e-9);
+    }
+
+    @Test
+    public void batchEndsWhenInputIsEmpty() throws InterruptedException {
+        Consumer consumer = new Consumer(3, 0);
+        consumer.setBatchSize(100);
+        consumer.start(Runnable::run);
+        consumer.post(1);
+        consumer.post(2);
+        consumer.post(3);
+        Assert.assertEquals(0, consumer.latch.getCount());
+        Assert.assertEquals(3, consumer.getRunCount());
+        Assert.assertEquals(1, consumer.getMaxBatch());
+    }
+
+    @Test
+    public void timeQuantum() throws InterruptedException {
+        CountingExecutor executor = new CountingExecutor();
+        Consumer consumer = run(20, Integer.MAX_VALUE, 2, 1, executor);
+        Assert.assertTrue(consumer.getMaxBatch() <= 3);
+        Assert.assertTrue(executor.count.get() >= 7);
+    }
+}
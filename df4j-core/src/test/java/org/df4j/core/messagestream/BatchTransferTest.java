@@ -0,0 +1,179 @@
+package org.df4j.core.messagestream;
+
+import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
+import org.df4j.core.boundconnector.messagestream.BoundedStreamInput;
+import org.df4j.core.boundconnector.messagestream.BoundedStreamOutput;
+import org.df4j.core.boundconnector.messagestream.ConcurrentStreamInput;
+import org.df4j.core.boundconnector.messagestream.StreamInput;
+import org.df4j.core.boundconnector.messagestream.StreamOutput;
+import org.df4j.core.boundconnector.messagestream.StreamSubscriber;
+import org.df4j.core.tasknode.AsyncProc;
+import org.df4j.core.tasknode.messagestream.Actor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class BatchTransferTest {
+
+    /**
+     * takes tokens in batches
+     */
+    static class Drainer extends Actor {
+        final StreamInput<Integer> input;
+        final List<Integer> received = new ArrayList<>();
+        final CountDownLatch closed = new CountDownLatch(1);
+        final int max;
+        int batches;
+
+        Drainer(int max) {
+            this.input = new StreamInput<>(this);
+            this.max = max;
+        }
+
+        Drainer(int max, boolean concurrent) {
+            this.input = concurrent ? new ConcurrentStreamInput<>(this) : new StreamInput<>(this);
+            this.max = max;
+        }
+
+        @Override
+        protected Void runAction() {
+            int count = input.drainTo(received::add, max);
+            if (count > 0) {
+                batches++;
+            } else {
+                Assert.assertNull(input.next());
+                closed.countDown();
+            }
+            return null;
+        }
+    }
+
+    static Integer[] range(int from, int to) {
+        Integer[] res = new Integer[to - from];
+        for (int k = from; k < to; k++) {
+            res[k - from] = k;
+        }
+        return res;
+    }
+
+    @Test
+    public void outputToInputs() {
+        StreamOutput<Integer> output = new StreamOutput<>(new Actor());
+        Drainer first = new Drainer(4);
+        Drainer second = new Drainer(100, true);
+        output.subscribe(first.input);
+        output.subscribe(second.input);
+        output.post(range(0, 10), 0, 10);
+        output.postAll(Arrays.asList(range(10, 15)), Integer[]::new);
+        output.complete();
+        first.start(AsyncProc.directExecutor);
+        second.start(AsyncProc.directExecutor);
+        Assert.assertEquals(Arrays.asList(range(0, 15)), first.received);
+        Assert.assertEquals(Arrays.asList(range(0, 15)), second.received);
+        Assert.assertEquals(4, first.batches);
+        Assert.assertEquals(1, second.batches);
+        Assert.assertEquals(0, first.closed.getCount());
+        Assert.assertEquals(0, second.closed.getCount());
+    }
+
+    /**
+     * takes batches as an array of the concrete element type
+     */
+    static class TypedCollector implements StreamSubscriber<String> {
+        final List<String> received = new ArrayList<>();
+
+        @Override
+        public void onSubscribe(SimpleSubscription subscription) {
+        }
+
+        @Override
+        public void post(String message) {
+            received.add(message);
+        }
+
+        @Override
+        public void postBatch(String[] items, int off, int len) {
+            received.addAll(Arrays.asList(items).subList(off, off + len));
+        }
+
+        @Override
+        public void complete() {
+        }
+    }
+
+    @Test
+    public void postAllToTypedBatch() {
+        StreamOutput<String> output = new StreamOutput<>(new Actor());
+        TypedCollector collector = output.subscribe(new TypedCollector());
+        output.postAll(Arrays.asList("a", "b", "c"), String[]::new);
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), collector.received);
+    }
+
+    @Test
+    public void concurrentBatches() throws InterruptedException {
+        int producers = 4;
+        int batches = 200;
+        int batchSize = 50;
+        Drainer drainer = new Drainer(64, true);
+        drainer.start();
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * batches * batchSize;
+            Thread thread = new Thread(() -> {
+                for (int b = 0; b < batches; b++) {
+                    int from = base + b * batchSize;
+                    drainer.input.postBatch(range(from, from + batchSize), 0, batchSize);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        drainer.input.complete();
+        Assert.assertTrue(drainer.closed.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(producers * batches * batchSize, drainer.received.size());
+        int[] last = new int[producers];
+        Arrays.fill(last, -1);
+        for (int value : drainer.received) {
+            int producer = value / (batches * batchSize);
+            Assert.assertTrue(value > last[producer]);
+            last[producer] = value;
+        }
+    }
+
+    static class BoundedDrainer extends Actor {
+        final BoundedStreamInput<Integer> input = new BoundedStreamInput<>(this, 8);
+        final List<Integer> received = new ArrayList<>();
+
+        @Override
+        protected Void runAction() {
+            input.drainTo(received::add, 3);
+            return null;
+        }
+    }
+
+    @Test
+    public void boundedBatches() {
+        BoundedStreamOutput<Integer> output = new BoundedStreamOutput<>(new Actor());
+        BoundedDrainer drainer = new BoundedDrainer();
+        output.subscribe(drainer.input);
+        output.post(range(0, 6), 0, 6);
+        try {
+            output.post(range(6, 9), 0, 3);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // only 2 credits left
+        }
+        drainer.start(AsyncProc.directExecutor);
+        Assert.assertEquals(Arrays.asList(range(0, 6)), drainer.received);
+        output.post(range(6, 14), 0, 8);
+        Assert.assertEquals(Arrays.asList(range(0, 14)), drainer.received);
+    }
+}
@@ -0,0 +1,151 @@
+package org.df4j.core.messagestream;
+
+import org.df4j.core.boundconnector.messagestream.BoundedStreamInput;
+import org.df4j.core.boundconnector.messagestream.BoundedStreamOutput;
+import org.df4j.core.tasknode.AsyncProc;
+import org.df4j.core.tasknode.messagestream.Actor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class BoundedStreamTest {
+
+    /**
+     * posts one message per execution
+     */
+    static class Source extends Actor {
+        final BoundedStreamOutput<Integer> output = new BoundedStreamOutput<>(this);
+        final int total;
+        int sent = 0;
+
+        Source(int total) {
+            this.total = total;
+        }
+
+        @Override
+        protected Void runAction() {
+            if (sent == total) {
+                output.complete();
+                stop();
+            } else {
+                output.post(sent++);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * remembers the max number of tokens in the queue
+     */
+    static class Input extends BoundedStreamInput<Integer> {
+        int maxQueue = 0;
+
+        Input(AsyncProc actor, int capacity) {
+            super(actor, capacity);
+        }
+
+        @Override
+        public synchronized void post(Integer token) {
+            super.post(token);
+            maxQueue = Math.max(maxQueue, tokenCount());
+        }
+
+        synchronized int getMaxQueue() {
+            return maxQueue;
+        }
+    }
+
+    static class Sink extends Actor {
+        final Input input;
+        final CountDownLatch done = new CountDownLatch(1);
+        int expected = 0;
+        volatile String error;
+
+        Sink(int capacity) {
+            input = new Input(this, capacity);
+        }
+
+        void cancel() {
+            input.cancel();
+        }
+
+        @Override
+        protected Void runAction() throws InterruptedException {
+            Integer arg = input.next();
+            if (arg == null) {
+                done.countDown();
+                stop();
+                return null;
+            }
+            if (arg != expected) {
+                error = "expected " + expected + " got " + arg;
+            }
+            expected++;
+            if (expected % 64 == 0) {
+                Thread.sleep(1); // slow consumer
+            }
+            return null;
+        }
+    }
+
+    @Test
+    public void producerStopsWhenSubscriberIsFull() {
+        Source source = new Source(100);
+        Sink sink = new Sink(4);
+        source.output.subscribe(sink.input);
+        source.start(AsyncProc.directExecutor);
+        Assert.assertEquals(4, source.sent);
+        Assert.assertEquals(4, sink.input.getMaxQueue());
+        sink.start(AsyncProc.directExecutor);
+        Assert.assertEquals(0, sink.done.getCount());
+        Assert.assertEquals(100, sink.expected);
+        Assert.assertNull(sink.error);
+    }
+
+    @Test
+    public void slowestSubscriberLimitsProducer() {
+        Source source = new Source(100);
+        Sink small = new Sink(2);
+        Sink large = new Sink(16);
+        source.output.subscribe(small.input);
+        source.output.subscribe(large.input);
+        large.start(AsyncProc.directExecutor);
+        source.start(AsyncProc.directExecutor);
+        Assert.assertEquals(2, source.sent);
+        Assert.assertEquals(2, large.expected);
+        small.start(AsyncProc.directExecutor);
+        Assert.assertEquals(100, small.expected);
+        Assert.assertEquals(100, large.expected);
+        Assert.assertEquals(2, small.input.getMaxQueue());
+        Assert.assertTrue(large.input.getMaxQueue() <= 2);
+    }
+
+    @Test
+    public void cancelledSubscriberDoesNotBlock() {
+        Source source = new Source(10);
+        Sink sink = new Sink(2);
+        Sink cancelled = new Sink(2);
+        source.output.subscribe(sink.input);
+        source.output.subscribe(cancelled.input);
+        sink.start(AsyncProc.directExecutor);
+        source.start(AsyncProc.directExecutor);
+        Assert.assertEquals(2, source.sent);
+        cancelled.cancel();
+        Assert.assertEquals(10, sink.expected);
+    }
+
+    @Test
+    public void asyncPipeline() throws InterruptedException {
+        Source source = new Source(10_000);
+        Sink sink = new Sink(8);
+        source.output.subscribe(sink.input);
+        sink.start();
+        source.start();
+        Assert.assertTrue(sink.done.await(5, TimeUnit.SECONDS));
+        Assert.assertNull(sink.error);
+        Assert.assertEquals(10_000, sink.expected);
+        Assert.assertTrue(sink.input.getMaxQueue() <= 8);
+    }
+}
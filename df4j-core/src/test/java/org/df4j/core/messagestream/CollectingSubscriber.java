@@ -0,0 +1,51 @@
+package org.df4j.core.messagestream;
+
+import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
+import org.df4j.core.boundconnector.messagestream.StreamSubscriber;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * collects the messages and the end of a stream, to be checked by tests.
+ * Each message notifies the threads waiting on this subscriber.
+ *
+ * @param <T> type of messages
+ */
+public class CollectingSubscriber<T> implements StreamSubscriber<T> {
+    /** guarded by this subscriber */
+    public final List<T> received = new ArrayList<>();
+    /** counted down on completion, normal or exceptional */
+    public final CountDownLatch done = new CountDownLatch(1);
+    public volatile Throwable failure;
+
+    @Override
+    public void onSubscribe(SimpleSubscription subscription) {
+    }
+
+    @Override
+    public synchronized void post(T message) {
+        received.add(message);
+        notifyAll();
+    }
+
+    @Override
+    public void complete() {
+        done.countDown();
+    }
+
+    @Override
+    public boolean completeExceptionally(Throwable throwable) {
+        failure = throwable;
+        done.countDown();
+        return true;
+    }
+
+    /**
+     * @return copy of the messages received so far
+     */
+    public synchronized List<T> received() {
+        return new ArrayList<>(received);
+    }
+}
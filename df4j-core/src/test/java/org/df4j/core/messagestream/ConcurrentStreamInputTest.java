@@ -0,0 +1,188 @@
+package org.df4j.core.messagestream;
+
+import org.df4j.core.boundconnector.messagestream.ConcurrentStreamInput;
+import org.df4j.core.tasknode.AsyncProc;
+import org.df4j.core.tasknode.messagestream.Actor;
+import org.df4j.core.tasknode.messagestream.Actor1;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConcurrentStreamInputTest {
+    static final int PRODUCERS = 8;
+    static final int COUNT = 20_000;
+
+    /**
+     * checks that messages of each producer arrive in order, and the end of stream arrives last
+     */
+    static class Checker extends Actor1<long[]> {
+        final int[] expected = new int[PRODUCERS];
+        final CountDownLatch closed = new CountDownLatch(1);
+        volatile String error;
+        int received;
+
+        Checker() {
+            super(concurrent());
+        }
+
+        @Override
+        protected void runAction(long[] message) {
+            if (message == null) {
+                closed.countDown();
+                return;
+            }
+            int producer = (int) message[0];
+            if (message[1] != expected[producer]) {
+                error = "producer " + producer + ": expected " + expected[producer] + " got " + message[1];
+            }
+            expected[producer]++;
+            received++;
+        }
+    }
+
+    @Test
+    public void manyProducers() throws InterruptedException {
+        Checker checker = new Checker();
+        checker.setBatchSize(32);
+        checker.start();
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                for (int k = 0; k < COUNT; k++) {
+                    checker.post(new long[]{producer, k});
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        checker.complete();
+        Assert.assertTrue(checker.closed.await(5, TimeUnit.SECONDS));
+        Assert.assertNull(checker.error);
+        Assert.assertEquals(PRODUCERS * COUNT, checker.received);
+        Assert.assertTrue(checker.isClosed());
+    }
+
+    /**
+     * counts tokens, and fails if any token comes after the end of stream
+     */
+    static class EndChecker extends Actor1<Integer> {
+        final CountDownLatch closed = new CountDownLatch(1);
+        volatile boolean tokenAfterEnd;
+        volatile int received;
+
+        EndChecker() {
+            super(concurrent());
+        }
+
+        @Override
+        protected void runAction(Integer message) {
+            if (closed.getCount() == 0) {
+                tokenAfterEnd = true;
+            }
+            if (message == null) {
+                closed.countDown();
+            } else {
+                received++;
+            }
+        }
+    }
+
+    @Test
+    public void completeRacingWithProducers() throws InterruptedException {
+        Integer[] batch = {1, 2, 3};
+        for (int round = 0; round < 100; round++) {
+            EndChecker checker = new EndChecker();
+            checker.start();
+            AtomicInteger accepted = new AtomicInteger();
+            CountDownLatch started = new CountDownLatch(4);
+            List<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < 4; p++) {
+                boolean batches = p % 2 == 0;
+                Thread thread = new Thread(() -> {
+                    started.countDown();
+                    try {
+                        for (int k = 0; k < 1000; k++) {
+                            if (batches) {
+                                checker.postBatch(batch, 0, batch.length);
+                                accepted.addAndGet(batch.length);
+                            } else {
+                                checker.post(0);
+                                accepted.incrementAndGet();
+                            }
+                        }
+                    } catch (IllegalStateException e) {
+                        // completed
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            started.await();
+            checker.complete();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            Assert.assertTrue(checker.closed.await(5, TimeUnit.SECONDS));
+            Assert.assertFalse(checker.tokenAfterEnd);
+            Assert.assertEquals(accepted.get(), checker.received);
+        }
+    }
+
+    static class Input extends ConcurrentStreamInput<String> {
+        Input(AsyncProc actor) {
+            super(actor);
+        }
+
+        @Override
+        protected void pushback() {
+            super.pushback();
+        }
+    }
+
+    static class Collector extends Actor {
+        final Input input = new Input(this);
+        final StringBuilder sb = new StringBuilder();
+        String pushback;
+
+        @Override
+        protected Void runAction() {
+            String token = input.next();
+            sb.append(token).append(' ');
+            if (token != null && token.equals(pushback)) {
+                pushback = null;
+                input.pushback();
+            }
+            return null;
+        }
+    }
+
+    @Test
+    public void pushbackAndClose() {
+        Collector collector = new Collector();
+        collector.start(AsyncProc.directExecutor);
+        collector.pushback = "b";
+        collector.input.post("a");
+        collector.input.post("b");
+        Assert.assertFalse(collector.input.isClosed());
+        collector.input.complete();
+        Assert.assertEquals("a b b null ", collector.sb.toString());
+        Assert.assertTrue(collector.input.isClosed());
+        Assert.assertFalse(collector.input.hasNext());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void postAfterClose() {
+        Collector collector = new Collector();
+        collector.input.complete();
+        collector.input.post("a");
+    }
+}
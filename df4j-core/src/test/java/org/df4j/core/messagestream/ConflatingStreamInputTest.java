@@ -0,0 +1,104 @@
+package org.df4j.core.messagestream;
+
+import org.df4j.core.boundconnector.messagestream.ConflatingStreamInput;
+import org.df4j.core.boundconnector.permitscalar.BinarySemafor;
+import org.df4j.core.tasknode.messagestream.Actor;
+import org.df4j.core.tasknode.messagestream.Actor1;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ConflatingStreamInputTest {
+
+    static class Update {
+        final String key;
+        final int value;
+
+        Update(String key, int value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return key + value;
+        }
+    }
+
+    static List<String> drain(ConflatingStreamInput<String, Update> input) {
+        List<String> res = new ArrayList<>();
+        input.drainTo((update) -> res.add(update.toString()), Integer.MAX_VALUE);
+        return res;
+    }
+
+    @Test
+    public void latestValueWins() {
+        ConflatingStreamInput<String, Update> input = new ConflatingStreamInput<>(new Actor(), (update) -> update.key);
+        Assert.assertTrue(input.isBlocked());
+        input.post(new Update("a", 1));
+        input.post(new Update("b", 1));
+        input.post(new Update("a", 2));
+        input.post(new Update("c", 1));
+        input.post(new Update("b", 2));
+        Assert.assertFalse(input.isBlocked());
+        Assert.assertEquals(2, input.getConflatedCount());
+        Assert.assertEquals("a2", input.current().toString());
+        Assert.assertEquals("a2", input.next().toString());
+        input.post(new Update("a", 3)); // a is not pending any more, goes to the end
+        Assert.assertEquals(Arrays.asList("b2", "c1", "a3"), drain(input));
+        Assert.assertTrue(input.isBlocked());
+    }
+
+    @Test
+    public void completion() {
+        ConflatingStreamInput<String, Update> input = new ConflatingStreamInput<>(new Actor(), (update) -> update.key);
+        input.postBatch(new Update[]{new Update("a", 1), new Update("a", 2)}, 0, 2);
+        input.complete();
+        Assert.assertFalse(input.isClosed());
+        Assert.assertEquals("a2", input.next().toString());
+        Assert.assertTrue(input.isClosed());
+        Assert.assertFalse(input.isBlocked());
+        Assert.assertNull(input.next());
+        Assert.assertTrue(input.isBlocked());
+    }
+
+    static class PriceActor extends Actor1<Update> {
+        final BinarySemafor gate = new BinarySemafor(this);
+        final List<String> processed = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        PriceActor() {
+            super(conflating((Update update) -> update.key));
+        }
+
+        @Override
+        protected void runAction(Update update) {
+            if (update == null) {
+                done.countDown();
+                stop();
+            } else {
+                processed.add(update.toString());
+            }
+        }
+    }
+
+    @Test
+    public void slowActorSkipsStaleUpdates() throws InterruptedException {
+        PriceActor actor = new PriceActor();
+        actor.gate.aquire();
+        actor.start();
+        for (int k = 0; k < 1000; k++) {
+            actor.post(new Update("x", k));
+            actor.post(new Update("y", k));
+        }
+        actor.complete();
+        actor.gate.release();
+        Assert.assertTrue(actor.done.await(2, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.asList("x999", "y999"), actor.processed);
+    }
+}
@@ -0,0 +1,88 @@
+package org.df4j.core.messagestream;
+
+import org.df4j.core.tasknode.messagestream.ParallelStreamProcessor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ParallelStreamProcessorTest {
+
+    static class Square extends ParallelStreamProcessor<Integer, Integer> {
+        final CountDownLatch gate = new CountDownLatch(1);
+        final AtomicInteger started = new AtomicInteger();
+
+        Square(int parallelism, int windowSize) {
+            super(parallelism, windowSize);
+        }
+
+        @Override
+        protected Integer process(Integer message) throws Exception {
+            started.incrementAndGet();
+            if (message == 0) {
+                gate.await(); // the first message is slow
+            }
+            if (message < 0) {
+                throw new IllegalArgumentException();
+            }
+            return message * message;
+        }
+    }
+
+    @Test
+    public void slowMessageHoldsWindow() throws InterruptedException {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        Square processor = new Square(4, 8);
+        CollectingSubscriber<Integer> sink = processor.subscribe(new CollectingSubscriber<>());
+        processor.start(executor);
+        for (int k = 0; k < 20; k++) {
+            processor.post(k);
+        }
+        processor.complete();
+        // results of messages 1..7 wait for message 0, and no more messages are taken
+        long deadline = System.currentTimeMillis() + 2000;
+        while (processor.getPendingResults() < 7 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        Assert.assertEquals(7, processor.getPendingResults());
+        Assert.assertEquals(8, processor.started.get());
+        synchronized (sink) {
+            Assert.assertTrue(sink.received.isEmpty());
+        }
+        processor.gate.countDown();
+        Assert.assertTrue(sink.done.await(2, TimeUnit.SECONDS));
+        executor.shutdown();
+        Assert.assertNull(sink.failure);
+        List<Integer> expected = new ArrayList<>();
+        for (int k = 0; k < 20; k++) {
+            expected.add(k * k);
+        }
+        Assert.assertEquals(expected, sink.received);
+        Assert.assertEquals(0, processor.getPendingResults());
+    }
+
+    @Test
+    public void failureAfterPrecedingResults() throws InterruptedException {
+        Square processor = new Square(2, 4);
+        processor.gate.countDown();
+        CollectingSubscriber<Integer> sink = processor.subscribe(new CollectingSubscriber<>());
+        processor.start();
+        processor.post(1);
+        processor.post(2);
+        processor.post(-1);
+        processor.post(3);
+        Assert.assertTrue(sink.done.await(2, TimeUnit.SECONDS));
+        Assert.assertTrue(sink.failure instanceof IllegalArgumentException);
+        synchronized (sink) {
+            Assert.assertEquals(2, sink.received.size());
+            Assert.assertEquals(Integer.valueOf(1), sink.received.get(0));
+            Assert.assertEquals(Integer.valueOf(4), sink.received.get(1));
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.df4j.core.messagestream;
+
+import org.df4j.core.tasknode.messagestream.PartitionedProcessor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class PartitionedProcessorTest {
+    static final int KEYS = 16;
+
+    /**
+     * messages are key * 1_000_000 + sequence number of the key
+     */
+    static class Processor extends PartitionedProcessor<Long, Long, Long> {
+        final CountDownLatch gate;
+        final long gated;
+
+        Processor(int partitions, CountDownLatch gate, long gated) {
+            super(partitions, (Long message) -> message / 1_000_000);
+            this.gate = gate;
+            this.gated = gated;
+        }
+
+        @Override
+        protected Long process(Long message) {
+            if (message == gated) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return message;
+        }
+    }
+
+    /**
+     * checks that the messages of each key come in order
+     */
+    static class OrderChecker extends CollectingSubscriber<Long> {
+        final Map<Long, Long> lastSeq = new HashMap<>();
+        String error;
+
+        @Override
+        public synchronized void post(Long message) {
+            long key = message / 1_000_000;
+            long seq = message % 1_000_000;
+            Long last = lastSeq.put(key, seq);
+            if (error == null && seq != (last == null ? 0 : last + 1)) {
+                error = "key " + key + ": expected " + (last == null ? 0 : last + 1) + " got " + seq;
+            }
+            super.post(message);
+        }
+    }
+
+    static void postRound(PartitionedProcessor<Long, Long, Long> processor, long[] seqs, int rounds) {
+        for (int r = 0; r < rounds; r++) {
+            for (int key = 0; key < KEYS; key++) {
+                processor.post(key * 1_000_000L + seqs[key]++);
+            }
+        }
+    }
+
+    @Test
+    public void perKeyOrder() throws InterruptedException {
+        Processor processor = new Processor(4, null, -1);
+        OrderChecker sink = processor.subscribe(new OrderChecker());
+        long[] seqs = new long[KEYS];
+        postRound(processor, seqs, 500);
+        processor.complete();
+        Assert.assertTrue(sink.done.await(2, TimeUnit.SECONDS));
+        Assert.assertNull(sink.failure);
+        Assert.assertNull(sink.error);
+        Assert.assertEquals(KEYS * 500, sink.received.size());
+        long processed = 0;
+        for (long count : processor.getProcessedCounts()) {
+            Assert.assertTrue(count > 0);
+            processed += count;
+        }
+        Assert.assertEquals(KEYS * 500, processed);
+    }
+
+    /**
+     * a shard is stuck while partitions are added and removed, so messages of moved keys must wait for it
+     */
+    @Test
+    public void repartitionKeepsOrder() throws InterruptedException {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        CountDownLatch gate = new CountDownLatch(1);
+        Processor processor = new Processor(3, gate, 0L);
+        processor.setExecutor(executor);
+        OrderChecker sink = processor.subscribe(new OrderChecker());
+        long[] seqs = new long[KEYS];
+        postRound(processor, seqs, 10);
+        processor.setPartitions(6);
+        Assert.assertTrue(processor.isRebalancing());
+        postRound(processor, seqs, 10);
+        processor.setPartitions(2);
+        Assert.assertEquals(2, processor.getPartitions());
+        postRound(processor, seqs, 10);
+        gate.countDown();
+        postRound(processor, seqs, 10);
+        processor.complete();
+        Assert.assertTrue(sink.done.await(2, TimeUnit.SECONDS));
+        executor.shutdown();
+        Assert.assertNull(sink.failure);
+        Assert.assertNull(sink.error);
+        Assert.assertEquals(KEYS * 40, sink.received.size());
+        Assert.assertFalse(processor.isRebalancing());
+    }
+
+    @Test
+    public void failedProcessFailsOutput() throws InterruptedException {
+        long failing = 3 * 1_000_000L + 5;
+        PartitionedProcessor<Long, Long, Long> processor = new PartitionedProcessor<Long, Long, Long>(4, (Long message) -> message / 1_000_000) {
+            @Override
+            protected Long process(Long message) {
+                if (message == failing) {
+                    throw new IllegalStateException("failing");
+                }
+                return message;
+            }
+        };
+        OrderChecker sink = processor.subscribe(new OrderChecker());
+        long[] seqs = new long[KEYS];
+        postRound(processor, seqs, 10);
+        Assert.assertTrue(sink.done.await(2, TimeUnit.SECONDS));
+        Assert.assertTrue(sink.failure instanceof IllegalStateException);
+        // the failed shard still counts messages, so the rebalance ends
+        processor.setPartitions(6);
+        postRound(processor, seqs, 10);
+        long deadline = System.currentTimeMillis() + 2000;
+        while (processor.isRebalancing() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        Assert.assertFalse(processor.isRebalancing());
+        processor.complete();
+    }
+}
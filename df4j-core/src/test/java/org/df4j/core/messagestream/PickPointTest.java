@@ -0,0 +1,184 @@
+package org.df4j.core.messagestream;
+
+import org.df4j.core.simplenode.messagescalar.SubscriberPromise;
+import org.df4j.core.simplenode.messagestream.PickPoint;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PickPointTest {
+
+    @Test
+    public void timedOutPollDoesNotTakeLaterToken() throws InterruptedException {
+        PickPoint<Integer> pickPoint = new PickPoint<>();
+        Assert.assertNull(pickPoint.poll(10, TimeUnit.MILLISECONDS));
+        pickPoint.post(1);
+        Assert.assertEquals(1, pickPoint.size());
+        Assert.assertEquals(Integer.valueOf(1), pickPoint.poll());
+        Assert.assertTrue(pickPoint.isEmpty());
+    }
+
+    static int waiterCount(PickPoint<?> pickPoint) throws ReflectiveOperationException {
+        Field waiters = PickPoint.class.getDeclaredField("waiters");
+        waiters.setAccessible(true);
+        return ((Collection<?>) waiters.get(pickPoint)).size();
+    }
+
+    @Test
+    public void timedOutWaitersDoNotPileUp() throws Exception {
+        PickPoint<Integer> pickPoint = new PickPoint<>();
+        for (int k = 0; k < 100; k++) {
+            Assert.assertNull(pickPoint.poll(0, TimeUnit.MILLISECONDS));
+            Assert.assertNull(pickPoint.poll(1, TimeUnit.MICROSECONDS));
+        }
+        Assert.assertEquals(0, waiterCount(pickPoint));
+        SubscriberPromise<Integer> cancelled = pickPoint.subscribe(new SubscriberPromise<>());
+        Assert.assertEquals(1, waiterCount(pickPoint));
+        cancelled.cancel(false);
+        Assert.assertEquals(0, waiterCount(pickPoint));
+        pickPoint.post(1);
+        Assert.assertEquals(Integer.valueOf(1), pickPoint.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void removeTokens() {
+        PickPoint<Integer> pickPoint = new PickPoint<>();
+        pickPoint.addAll(Arrays.asList(1, 2, 3, 4, 5));
+        Assert.assertTrue(pickPoint.remove(3));
+        Assert.assertFalse(pickPoint.remove(3));
+        Assert.assertEquals(4, pickPoint.size());
+        pickPoint.removeIf(x -> x % 2 == 0);
+        Assert.assertEquals(2, pickPoint.size());
+        pickPoint.retainAll(Arrays.asList(5));
+        Assert.assertEquals(1, pickPoint.size());
+        Assert.assertEquals(Integer.valueOf(5), pickPoint.poll());
+        Assert.assertNull(pickPoint.poll());
+    }
+
+    @Test
+    public void workQueueOfThreadPool() throws InterruptedException {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new PickPoint<>());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                // shutdownNow
+            }
+        });
+        Assert.assertTrue(started.await(1, TimeUnit.SECONDS));
+        Runnable removed = () -> {};
+        executor.execute(removed);
+        executor.execute(() -> {});
+        executor.execute(() -> {});
+        Assert.assertTrue(executor.remove(removed));
+        Assert.assertEquals(2, executor.getQueue().size());
+        List<Runnable> pending = executor.shutdownNow();
+        Assert.assertEquals(2, pending.size());
+        Assert.assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void cancelledSubscriberDoesNotTakeLaterToken() throws InterruptedException, ExecutionException {
+        PickPoint<Integer> pickPoint = new PickPoint<>();
+        SubscriberPromise<Integer> cancelled = pickPoint.subscribe(new SubscriberPromise<>());
+        SubscriberPromise<Integer> waiting = pickPoint.subscribe(new SubscriberPromise<>());
+        cancelled.cancel(true);
+        pickPoint.post(1);
+        pickPoint.post(2);
+        Assert.assertEquals(Integer.valueOf(1), waiting.get());
+        Assert.assertEquals(Integer.valueOf(2), pickPoint.take());
+    }
+
+    @Test
+    public void boundedCapacityAndDrain() throws InterruptedException {
+        PickPoint<Integer> pickPoint = new PickPoint<>(3);
+        Assert.assertEquals(3, pickPoint.remainingCapacity());
+        Assert.assertTrue(pickPoint.offer(1));
+        Assert.assertTrue(pickPoint.offer(2));
+        Assert.assertTrue(pickPoint.offer(3));
+        Assert.assertFalse(pickPoint.offer(4));
+        Assert.assertFalse(pickPoint.offer(4, 10, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(0, pickPoint.remainingCapacity());
+        Thread producer = new Thread(() -> {
+            try {
+                pickPoint.put(4); // blocks until drained
+            } catch (InterruptedException e) {
+            }
+        });
+        producer.start();
+        List<Integer> drained = new ArrayList<>();
+        Assert.assertEquals(2, pickPoint.drainTo(drained, 2));
+        producer.join(1000);
+        Assert.assertFalse(producer.isAlive());
+        pickPoint.drainTo(drained);
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 4), drained);
+    }
+
+    @Test
+    public void completionReleasesWaiters() throws InterruptedException {
+        PickPoint<Integer> pickPoint = new PickPoint<>();
+        SubscriberPromise<Integer> waiting = pickPoint.subscribe(new SubscriberPromise<>());
+        pickPoint.complete();
+        Assert.assertTrue(waiting.isCompletedExceptionally());
+        Assert.assertNull(pickPoint.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void contention() throws InterruptedException {
+        PickPoint<Long> pickPoint = new PickPoint<>(64);
+        int producers = 4;
+        int consumers = 4;
+        int perProducer = 20_000;
+        AtomicLong sum = new AtomicLong();
+        AtomicLong count = new AtomicLong();
+        long total = (long) producers * perProducer;
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            threads.add(new Thread(() -> {
+                try {
+                    for (long k = 1; k <= perProducer; k++) {
+                        pickPoint.put(k);
+                    }
+                } catch (InterruptedException e) {
+                }
+            }));
+        }
+        for (int c = 0; c < consumers; c++) {
+            boolean timed = c % 2 == 0;
+            threads.add(new Thread(() -> {
+                try {
+                    while (count.get() < total) {
+                        Long token = timed ? pickPoint.poll(1, TimeUnit.MILLISECONDS) : pickPoint.poll();
+                        if (token != null) {
+                            sum.addAndGet(token);
+                            count.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join(10_000);
+        }
+        Assert.assertEquals(total, count.get());
+        Assert.assertEquals(producers * ((long) perProducer * (perProducer + 1) / 2), sum.get());
+        Assert.assertTrue(pickPoint.isEmpty());
+    }
+}
@@ -0,0 +1,91 @@
+package org.df4j.core.messagestream;
+
+import org.df4j.core.tasknode.messagestream.Pipeline;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class PipelineTest {
+
+    static List<String> expected(int count) {
+        List<String> res = new ArrayList<>();
+        for (int k = 0; k < count; k++) {
+            if (k % 3 != 0) {
+                res.add("#" + (k * 2 + 1));
+            }
+        }
+        return res;
+    }
+
+    @Test
+    public void adjacentOperatorsAreFused() throws InterruptedException {
+        Pipeline<Integer, String> pipeline = Pipeline.<Integer>builder()
+                .filter(x -> x % 3 != 0)
+                .map(x -> x * 2)
+                .map(x -> x + 1)
+                .map(x -> "#" + x)
+                .build();
+        Assert.assertEquals(1, pipeline.getStageCount());
+        CollectingSubscriber<String> sink = pipeline.subscribe(new CollectingSubscriber<>());
+        pipeline.start();
+        for (int k = 0; k < 100; k++) {
+            pipeline.post(k);
+        }
+        pipeline.complete();
+        Assert.assertTrue(sink.done.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals(expected(100), sink.received);
+    }
+
+    @Test
+    public void boundaries() throws InterruptedException {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        Pipeline<Integer, String> pipeline = Pipeline.<Integer>builder()
+                .filter(x -> x % 3 != 0)
+                .buffer(4)
+                .map(x -> x * 2)
+                .parallel(3)
+                .map(x -> x + 1)
+                .executor(executor)
+                .map(x -> "#" + x)
+                .build();
+        Assert.assertEquals(4, pipeline.getStageCount());
+        CollectingSubscriber<String> sink = pipeline.subscribe(new CollectingSubscriber<>());
+        pipeline.start();
+        for (int k = 0; k < 1000; k++) {
+            pipeline.post(k);
+        }
+        pipeline.complete();
+        Assert.assertTrue(sink.done.await(2, TimeUnit.SECONDS));
+        executor.shutdown();
+        Assert.assertEquals(expected(1000), sink.received);
+    }
+
+    @Test
+    public void failureCompletesOutput() throws InterruptedException {
+        Pipeline<Integer, Integer> pipeline = Pipeline.<Integer>builder()
+                .map(x -> 10 / x)
+                .async()
+                .map(x -> x + 1)
+                .build();
+        CollectingSubscriber<Integer> sink = pipeline.subscribe(new CollectingSubscriber<>());
+        pipeline.start();
+        pipeline.post(5);
+        pipeline.post(0);
+        Assert.assertTrue(sink.done.await(1, TimeUnit.SECONDS));
+        Assert.assertTrue(sink.failure instanceof ArithmeticException);
+        synchronized (sink) {
+            Assert.assertEquals(1, sink.received.size());
+            Assert.assertEquals(Integer.valueOf(3), sink.received.get(0));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noBufferAfterParallel() {
+        Pipeline.<Integer>builder().parallel(2).map(x -> x).buffer(4);
+    }
+}
@@ -0,0 +1,117 @@
+package org.df4j.core.messagestream;
+
+import org.df4j.core.boundconnector.messagestream.PriorityStreamInput;
+import org.df4j.core.boundconnector.permitscalar.BinarySemafor;
+import org.df4j.core.tasknode.messagestream.Actor;
+import org.df4j.core.tasknode.messagestream.Actor1;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class PriorityStreamInputTest {
+
+    /** priority is the first letter, control messages start with '!' */
+    static final Comparator<String> BY_FIRST_LETTER = Comparator.comparing((String s) -> s.charAt(0));
+
+    static PriorityStreamInput<String> newInput() {
+        return new PriorityStreamInput<>(new Actor(), BY_FIRST_LETTER, (s) -> s.startsWith("!"));
+    }
+
+    static List<String> drain(PriorityStreamInput<String> input) {
+        List<String> res = new ArrayList<>();
+        input.drainTo(res::add, Integer.MAX_VALUE);
+        return res;
+    }
+
+    @Test
+    public void controlFirstThenPriorityThenFifo() {
+        PriorityStreamInput<String> input = newInput();
+        Assert.assertTrue(input.isBlocked());
+        for (String s : new String[]{"c1", "a1", "b1", "!cancel", "a2", "c2", "!ping", "a3"}) {
+            input.post(s);
+        }
+        Assert.assertFalse(input.isBlocked());
+        Assert.assertEquals("!cancel", input.next());
+        input.postControl("x-health");
+        Assert.assertEquals(Arrays.asList("!ping", "x-health", "a1", "a2", "a3", "b1", "c1", "c2"), drain(input));
+        Assert.assertTrue(input.isBlocked());
+    }
+
+    @Test
+    public void heapKeepsOrder() {
+        PriorityStreamInput<Integer> input = new PriorityStreamInput<>(new Actor(), Comparator.naturalOrder());
+        Random random = new Random(1);
+        List<Integer> expected = new ArrayList<>();
+        for (int k = 0; k < 1000; k++) {
+            int value = random.nextInt(100);
+            expected.add(value);
+            input.post(value);
+        }
+        expected.sort(Comparator.naturalOrder());
+        List<Integer> actual = new ArrayList<>();
+        Integer value;
+        while ((value = input.next()) != null) {
+            actual.add(value);
+        }
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void completion() {
+        PriorityStreamInput<String> input = newInput();
+        input.post("b1");
+        input.post("a1");
+        input.complete();
+        Assert.assertFalse(input.isClosed());
+        Assert.assertEquals("a1", input.current());
+        Assert.assertEquals("a1", input.next());
+        Assert.assertEquals("b1", input.next());
+        Assert.assertTrue(input.isClosed());
+        Assert.assertNull(input.next());
+        Assert.assertTrue(input.isBlocked());
+    }
+
+    static class Worker extends Actor1<String> {
+        final BinarySemafor gate = new BinarySemafor(this);
+        final List<String> processed = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        Worker() {
+            super(priority(BY_FIRST_LETTER, (s) -> s.startsWith("!")));
+        }
+
+        @Override
+        protected void runAction(String message) {
+            if (message == null) {
+                done.countDown();
+                stop();
+            } else {
+                processed.add(message);
+            }
+        }
+    }
+
+    @Test
+    public void controlOvertakesBacklog() throws InterruptedException {
+        Worker worker = new Worker();
+        worker.gate.aquire();
+        worker.start();
+        for (int k = 0; k < 100; k++) {
+            worker.post("job" + k);
+        }
+        worker.post("!cancel");
+        worker.complete();
+        worker.gate.release();
+        Assert.assertTrue(worker.done.await(2, TimeUnit.SECONDS));
+        Assert.assertEquals("!cancel", worker.processed.get(0));
+        Assert.assertEquals("job0", worker.processed.get(1));
+        Assert.assertEquals(101, worker.processed.size());
+    }
+}
@@ -0,0 +1,150 @@
+package org.df4j.core.messagestream;
+
+import org.df4j.core.boundconnector.reactivestream.ReactiveOutput;
+import org.df4j.core.tasknode.messagestream.Actor;
+import org.df4j.core.tasknode.messagestream.SortedMerge;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class SortedMergeTest {
+
+    /**
+     * emits from, from+step, ... below to, as requested
+     */
+    static class Source extends Actor {
+        final ReactiveOutput<Integer> output = new ReactiveOutput<>(this);
+        final int to;
+        final int step;
+        int next;
+        volatile int emitted = 0;
+
+        Source(int from, int to, int step) {
+            this.next = from;
+            this.to = to;
+            this.step = step;
+        }
+
+        @Override
+        protected Void runAction() {
+            if (next >= to) {
+                output.complete();
+                stop();
+            } else {
+                output.post(next);
+                next += step;
+                emitted++;
+            }
+            return null;
+        }
+    }
+
+    @Test
+    public void mergeSortedStreams() throws InterruptedException {
+        SortedMerge<int[]> merge = new SortedMerge<>(3, Comparator.comparingInt((int[] pair) -> pair[0]));
+        CollectingSubscriber<int[]> sink = merge.subscribe(new CollectingSubscriber<>());
+        merge.start();
+        int[][] streams = {{1, 4, 4, 9}, {2, 4, 8}, {}};
+        for (int k = 0; k < streams.length; k++) {
+            for (int value : streams[k]) {
+                merge.getInput(k).post(new int[]{value, k});
+            }
+            merge.getInput(k).complete();
+        }
+        Assert.assertTrue(sink.done.await(1, TimeUnit.SECONDS));
+        List<String> res = new ArrayList<>();
+        for (int[] pair : sink.received()) {
+            res.add(pair[0] + "/" + pair[1]);
+        }
+        // equal keys come in the order of inputs, and in the order of arrival within an input
+        Assert.assertEquals(Arrays.asList("1/0", "2/1", "4/0", "4/0", "4/1", "8/1", "9/0"), res);
+    }
+
+    @Test
+    public void waitsForEveryOpenInput() throws InterruptedException {
+        SortedMerge<Integer> merge = new SortedMerge<>(2, Comparator.naturalOrder());
+        merge.setExecutor(Actor.directExecutor);
+        CollectingSubscriber<Integer> sink = merge.subscribe(new CollectingSubscriber<>());
+        merge.start();
+        merge.getInput(0).post(1);
+        merge.getInput(0).post(3);
+        Assert.assertEquals(Arrays.asList(), sink.received());
+        merge.getInput(1).post(2);
+        Assert.assertEquals(Arrays.asList(1, 2), sink.received());
+        merge.getInput(1).complete();
+        Assert.assertEquals(Arrays.asList(1, 2, 3), sink.received());
+        merge.getInput(0).post(5);
+        merge.getInput(0).complete();
+        Assert.assertTrue(sink.done.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 5), sink.received());
+    }
+
+    @Test
+    public void failedInputFailsOutput() throws InterruptedException {
+        SortedMerge<Integer> merge = new SortedMerge<>(2, Comparator.naturalOrder());
+        CollectingSubscriber<Integer> sink = merge.subscribe(new CollectingSubscriber<>());
+        merge.start();
+        merge.getInput(0).post(1);
+        merge.getInput(1).completeExceptionally(new IllegalStateException());
+        Assert.assertTrue(sink.done.await(1, TimeUnit.SECONDS));
+        Assert.assertTrue(sink.failure instanceof IllegalStateException);
+    }
+
+    @Test
+    public void failureIsNotDelayedByIdleInput() throws InterruptedException {
+        SortedMerge<Integer> merge = new SortedMerge<>(3, Comparator.naturalOrder());
+        merge.setExecutor(Actor.directExecutor);
+        CollectingSubscriber<Integer> sink = merge.subscribe(new CollectingSubscriber<>());
+        merge.start();
+        merge.getInput(0).post(1);
+        // input 2 has no token, so the merge cannot fire
+        merge.getInput(1).completeExceptionally(new IllegalStateException());
+        Assert.assertTrue(sink.done.await(1, TimeUnit.SECONDS));
+        Assert.assertTrue(sink.failure instanceof IllegalStateException);
+        merge.getInput(2).post(2);
+        merge.getInput(2).complete();
+        merge.getInput(0).complete();
+        Assert.assertEquals(Arrays.asList(), sink.received());
+    }
+
+    @Test
+    public void boundedInputs() throws InterruptedException {
+        int capacity = 8;
+        SortedMerge<Integer> merge = new SortedMerge<>(3, Comparator.naturalOrder(), capacity);
+        CollectingSubscriber<Integer> sink = merge.subscribe(new CollectingSubscriber<>());
+        Source[] sources = new Source[3];
+        for (int k = 0; k < sources.length; k++) {
+            sources[k] = new Source(k, 300, 3);
+            sources[k].output.subscribe(merge.getReactiveInput(k));
+            sources[k].start();
+        }
+        // the merge is not started, so sources stop when the inputs are full
+        for (Source source : sources) {
+            long deadline = System.currentTimeMillis() + 1000;
+            while (source.emitted < capacity && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+        }
+        Thread.sleep(20);
+        for (Source source : sources) {
+            Assert.assertEquals(capacity, source.emitted);
+        }
+        merge.start();
+        Assert.assertTrue(sink.done.await(2, TimeUnit.SECONDS));
+        List<Integer> received = sink.received();
+        Assert.assertEquals(300, received.size());
+        for (int k = 0; k < received.size(); k++) {
+            Assert.assertEquals(Integer.valueOf(k), received.get(k));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unboundedInputsAreNotReactive() {
+        new SortedMerge<Integer>(2, Comparator.naturalOrder()).getReactiveInput(0);
+    }
+}
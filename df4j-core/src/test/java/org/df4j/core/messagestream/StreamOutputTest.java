@@ -0,0 +1,73 @@
+package org.df4j.core.messagestream;
+
+import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
+import org.df4j.core.boundconnector.messagestream.StreamOutput;
+import org.df4j.core.boundconnector.messagestream.StreamSubscriber;
+import org.df4j.core.tasknode.messagestream.Actor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class StreamOutputTest {
+
+    static class Counter implements StreamSubscriber<Integer> {
+        SimpleSubscription subscription;
+        int received;
+        int cancelAfter = Integer.MAX_VALUE;
+        boolean completed;
+
+        @Override
+        public void onSubscribe(SimpleSubscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void post(Integer message) {
+            received++;
+            if (received == cancelAfter) {
+                subscription.cancel();
+            }
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+    }
+
+    @Test
+    public void subscribeAndCancelMany() {
+        StreamOutput<Integer> output = new StreamOutput<>(new Actor());
+        List<Counter> counters = new ArrayList<>();
+        for (int k = 0; k < 2000; k++) {
+            counters.add(output.subscribe(new Counter()));
+        }
+        output.post(1);
+        for (int k = 0; k < counters.size(); k += 2) {
+            counters.get(k).subscription.cancel();
+        }
+        output.post(2);
+        output.complete();
+        for (int k = 0; k < counters.size(); k++) {
+            Counter counter = counters.get(k);
+            Assert.assertEquals(k % 2 == 0 ? 1 : 2, counter.received);
+            Assert.assertEquals(k % 2 != 0, counter.completed);
+        }
+    }
+
+    @Test
+    public void cancelDuringBroadcast() {
+        StreamOutput<Integer> output = new StreamOutput<>(new Actor());
+        Counter first = output.subscribe(new Counter());
+        Counter second = output.subscribe(new Counter());
+        first.cancelAfter = 1;
+        second.cancelAfter = 2;
+        for (int k = 0; k < 3; k++) {
+            output.post(k);
+        }
+        Assert.assertEquals(1, first.received);
+        Assert.assertEquals(2, second.received);
+    }
+}
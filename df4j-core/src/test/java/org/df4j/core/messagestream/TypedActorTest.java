@@ -0,0 +1,109 @@
+package org.df4j.core.messagestream;
+
+import org.df4j.core.tasknode.AsyncProc;
+import org.df4j.core.tasknode.messagescalar.AsyncFunction2;
+import org.df4j.core.tasknode.messagestream.Actor2;
+import org.df4j.core.tasknode.messagestream.Actor3;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+public class TypedActorTest {
+    static final int N = 100_000;
+    static final Integer[] values = new Integer[128];
+    static {
+        for (int k = 0; k < values.length; k++) {
+            values[k] = k;
+        }
+    }
+
+    static class Adder extends Actor2<Integer, Integer> {
+        long sum;
+        int count;
+
+        @Override
+        protected void act(Integer a, Integer b) {
+            sum += a + b;
+            count++;
+        }
+    }
+
+    static class Adder3 extends Actor3<Integer, Integer, Integer> {
+        long sum;
+
+        @Override
+        protected void act(Integer a, Integer b, Integer c) {
+            sum += a * b + c;
+        }
+    }
+
+    static void feed(Adder adder, int count) {
+        for (int k = 0; k < count; k++) {
+            Integer v = values[k & (values.length - 1)];
+            adder.param1.post(v);
+            adder.param2.post(v);
+        }
+    }
+
+    @Test
+    public void actor2Test() {
+        Adder adder = new Adder();
+        adder.start(AsyncProc.directExecutor);
+        adder.param1.post(1);
+        adder.param1.post(2);
+        Assert.assertEquals(0, adder.count);
+        adder.param2.post(10);
+        adder.param2.post(20);
+        Assert.assertEquals(2, adder.count);
+        Assert.assertEquals(33, adder.sum);
+    }
+
+    @Test
+    public void actor3Test() {
+        Adder3 adder = new Adder3();
+        adder.start(AsyncProc.directExecutor);
+        adder.param1.post(2);
+        adder.param2.post(3);
+        adder.param3.post(4);
+        Assert.assertEquals(10, adder.sum);
+    }
+
+    @Test
+    public void function2Test() throws Exception {
+        AsyncFunction2<Integer, String, String> node = new AsyncFunction2<Integer, String, String>() {
+            @Override
+            protected String apply(Integer a, String b) {
+                return b + a;
+            }
+        };
+        node.param1.complete(2);
+        node.param2.complete("x");
+        node.start();
+        Assert.assertEquals("x2", node.asyncResult().get(1, TimeUnit.SECONDS));
+    }
+
+    /**
+     * steady-state firing must not allocate: the whole run should allocate less than a byte per message
+     */
+    @Test
+    public void actor2DoesNotAllocate() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean.isThreadAllocatedMemorySupported());
+        bean.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+        Adder adder = new Adder();
+        adder.start(AsyncProc.directExecutor);
+        for (int k = 0; k < 10; k++) {
+            feed(adder, N); // warm up
+        }
+        long before = bean.getThreadAllocatedBytes(threadId);
+        feed(adder, N);
+        long allocated = bean.getThreadAllocatedBytes(threadId) - before;
+        Assert.assertEquals(11 * N, adder.count);
+        Assert.assertTrue("allocated " + allocated + " bytes for " + N + " messages", allocated < N);
+    }
+}
@@ -0,0 +1,234 @@
+package org.df4j.core.messagestream;
+
+import org.df4j.core.boundconnector.messagescalar.SimpleSubscription;
+import org.df4j.core.boundconnector.messagestream.CreditSubscription;
+import org.df4j.core.boundconnector.messagestream.StreamSubscriber;
+import org.df4j.core.simplenode.messagestream.WorkQueue;
+import org.df4j.core.tasknode.messagestream.Actor1;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class WorkQueueTest {
+
+    static class Worker extends Actor1<Integer> {
+        final ConcurrentLinkedQueue<Integer> received = new ConcurrentLinkedQueue<>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        Worker(int capacity) {
+            super(bounded(capacity));
+        }
+
+        @Override
+        protected void runAction(Integer arg) {
+            if (arg == null) {
+                done.countDown();
+                return;
+            }
+            received.add(arg);
+        }
+    }
+
+    @Test
+    public void roundRobinWithBacklog() throws InterruptedException {
+        WorkQueue<Integer> queue = new WorkQueue<>(WorkQueue.Dispatch.ROUND_ROBIN);
+        Worker w0 = queue.subscribe(new Worker(2));
+        Worker w1 = queue.subscribe(new Worker(2));
+        for (int k = 0; k < 6; k++) {
+            queue.post(k);
+        }
+        // workers are not started, so they keep their credits
+        Assert.assertEquals(2, queue.getBacklog());
+        WorkQueue.WorkerMetrics[] metrics = queue.getWorkerMetrics();
+        Assert.assertEquals(2, metrics[0].getDispatched());
+        Assert.assertEquals(0, metrics[0].getCredit());
+        Assert.assertEquals(2, metrics[1].getDispatched());
+        w0.start();
+        w1.start();
+        queue.complete();
+        Assert.assertTrue(w0.done.await(1, TimeUnit.SECONDS));
+        Assert.assertTrue(w1.done.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals(0, queue.getBacklog());
+        Assert.assertEquals(6, w0.received.size() + w1.received.size());
+        Assert.assertEquals(Arrays.asList(0, 2), new ArrayList<>(w0.received).subList(0, 2));
+        Assert.assertEquals(Arrays.asList(1, 3), new ArrayList<>(w1.received).subList(0, 2));
+        Assert.assertEquals(6, metrics[0].getDispatched() + metrics[1].getDispatched());
+    }
+
+    @Test
+    public void leastLoaded() {
+        WorkQueue<Integer> queue = new WorkQueue<>(WorkQueue.Dispatch.LEAST_LOADED);
+        queue.subscribe(new Worker(1));
+        queue.subscribe(new Worker(4));
+        for (int k = 0; k < 5; k++) {
+            queue.post(k);
+        }
+        Assert.assertEquals(0, queue.getBacklog());
+        WorkQueue.WorkerMetrics[] metrics = queue.getWorkerMetrics();
+        Assert.assertEquals(1, metrics[0].getDispatched());
+        Assert.assertEquals(4, metrics[1].getDispatched());
+    }
+
+    @Test
+    public void resizablePool() throws InterruptedException {
+        List<Worker> created = new ArrayList<>();
+        WorkQueue<Integer> queue = new WorkQueue<>(WorkQueue.Dispatch.ROUND_ROBIN, () -> {
+            Worker worker = new Worker(4);
+            created.add(worker);
+            return worker;
+        });
+        queue.setPoolSize(3);
+        Assert.assertEquals(3, queue.getPoolSize());
+        Assert.assertEquals(3, queue.getWorkerMetrics().length);
+        int total = 0;
+        for (int k = 0; k < 30; k++) {
+            queue.post(total++);
+        }
+        queue.setPoolSize(1);
+        Assert.assertEquals(1, queue.getWorkerMetrics().length);
+        Assert.assertTrue(created.get(1).done.await(1, TimeUnit.SECONDS));
+        Assert.assertTrue(created.get(2).done.await(1, TimeUnit.SECONDS));
+        for (int k = 0; k < 30; k++) {
+            queue.post(total++);
+        }
+        queue.complete();
+        Assert.assertTrue(created.get(0).done.await(1, TimeUnit.SECONDS));
+        int received = 0;
+        for (Worker worker : created) {
+            received += worker.received.size();
+        }
+        Assert.assertEquals(total, received);
+    }
+
+    @Test
+    public void resizeUnderLoad() throws InterruptedException {
+        ConcurrentLinkedQueue<Worker> created = new ConcurrentLinkedQueue<>();
+        WorkQueue<Integer> queue = new WorkQueue<>(WorkQueue.Dispatch.LEAST_LOADED, () -> {
+            Worker worker = new Worker(2);
+            created.add(worker);
+            return worker;
+        });
+        queue.setPoolSize(2);
+        int total = 20_000;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread producer = new Thread(() -> {
+            try {
+                for (int k = 0; k < total; k++) {
+                    queue.post(k);
+                }
+                queue.complete();
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        producer.start();
+        for (int round = 0; producer.isAlive(); round++) {
+            queue.setPoolSize(1 + round % 4);
+        }
+        producer.join();
+        Assert.assertNull(failure.get());
+        int received = 0;
+        for (Worker worker : created) {
+            Assert.assertTrue(worker.done.await(2, TimeUnit.SECONDS));
+            received += worker.received.size();
+        }
+        Assert.assertEquals(total, received);
+    }
+
+    /**
+     * stops in post() until the gate opens, as a producer preempted after taking the worker
+     */
+    static class GatedWorker extends Worker {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+
+        GatedWorker() {
+            super(1);
+        }
+
+        @Override
+        public void post(Integer message) {
+            entered.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            super.post(message);
+        }
+    }
+
+    @Test
+    public void removedWorkerGetsTokenInFlight() throws InterruptedException {
+        GatedWorker worker = new GatedWorker();
+        WorkQueue<Integer> queue = new WorkQueue<>(WorkQueue.Dispatch.ROUND_ROBIN, () -> worker);
+        queue.setPoolSize(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread producer = new Thread(() -> {
+            try {
+                queue.post(1);
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        producer.start();
+        Assert.assertTrue(worker.entered.await(1, TimeUnit.SECONDS));
+        queue.setPoolSize(0);
+        Assert.assertEquals(1, worker.done.getCount()); // not completed while the token is in flight
+        worker.gate.countDown();
+        producer.join();
+        Assert.assertNull(failure.get());
+        Assert.assertTrue(worker.done.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.asList(1), new ArrayList<>(worker.received));
+    }
+
+    /**
+     * grants all its credit once, and stops in post() until the gate opens
+     */
+    static class GatedSubscriber implements StreamSubscriber<Integer> {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        @Override
+        public void onSubscribe(SimpleSubscription subscription) {
+            ((CreditSubscription) subscription).release(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void post(Integer message) {
+            entered.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void complete() {
+            done.countDown();
+        }
+    }
+
+    @Test
+    public void completeDuringDelivery() throws InterruptedException {
+        WorkQueue<Integer> queue = new WorkQueue<>();
+        GatedSubscriber worker = queue.subscribe(new GatedSubscriber());
+        Thread producer = new Thread(() -> queue.post(1));
+        producer.start();
+        Assert.assertTrue(worker.entered.await(1, TimeUnit.SECONDS));
+        queue.complete();
+        Assert.assertEquals(1, worker.done.getCount()); // not completed while the token is in flight
+        worker.gate.countDown();
+        producer.join();
+        Assert.assertTrue(worker.done.await(1, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,123 @@
+package org.df4j.core.permitstream;
+
+import org.df4j.core.boundconnector.permitstream.Semafor;
+import org.df4j.core.tasknode.Action;
+import org.df4j.core.tasknode.AsyncProc;
+import org.df4j.core.tasknode.messagestream.Actor;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SemaforTest {
+
+    static class TestSemafor extends Semafor {
+        TestSemafor(AsyncProc actor, int count) {
+            super(actor, count);
+        }
+
+        void take(long delta) {
+            acquire(delta);
+        }
+
+        boolean tryTake(long delta) {
+            return tryAcquire(delta);
+        }
+    }
+
+    static class Consumer extends Actor {
+        final Semafor permits = new Semafor(this);
+        final AtomicInteger fired = new AtomicInteger();
+        final CountDownLatch done;
+
+        Consumer(int expected) {
+            done = new CountDownLatch(expected);
+        }
+
+        @Action
+        public void act() {
+            fired.incrementAndGet();
+            done.countDown();
+        }
+    }
+
+    static void runConcurrently(int threads, Runnable task) throws InterruptedException {
+        Thread[] workers = new Thread[threads];
+        for (int k = 0; k < threads; k++) {
+            workers[k] = new Thread(task);
+            workers[k].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    @Test
+    public void negativeCountTest() {
+        Actor actor = new Actor();
+        TestSemafor semafor = new TestSemafor(actor, -2);
+        assertTrue(semafor.isBlocked());
+        semafor.release(2);
+        assertEquals(0, semafor.getCount());
+        assertTrue(semafor.isBlocked());
+        semafor.release(1);
+        assertFalse(semafor.isBlocked());
+        semafor.take(3);
+        assertEquals(-2, semafor.getCount());
+        assertTrue(semafor.isBlocked());
+        assertFalse(semafor.tryTake(1));
+        assertEquals(-2, semafor.getCount());
+        semafor.release(5);
+        assertTrue(semafor.tryTake(3));
+        assertTrue(semafor.isBlocked());
+        semafor.release(4);
+        semafor.drainPermits();
+        assertEquals(0, semafor.getCount());
+        assertTrue(semafor.isBlocked());
+    }
+
+    /**
+     * the pin must agree with the counter after concurrent crossings of zero in both directions
+     */
+    @Test
+    public void pinAgreesWithCounterTest() throws InterruptedException {
+        Actor actor = new Actor(); // not started, so never fires
+        for (int round = 0; round < 20; round++) {
+            TestSemafor semafor = new TestSemafor(actor, 0);
+            int threads = 4;
+            int ops = 20000;
+            runConcurrently(threads, () -> {
+                for (int k = 0; k < ops; k++) {
+                    semafor.release(1);
+                    semafor.take(1);
+                }
+            });
+            assertEquals(0, semafor.getCount());
+            assertTrue(semafor.isBlocked());
+            semafor.release(1);
+            assertFalse(semafor.isBlocked());
+        }
+    }
+
+    @Test
+    public void concurrentReleaseTest() throws InterruptedException {
+        int threads = 8;
+        int permits = 10000;
+        Consumer consumer = new Consumer(threads * permits);
+        consumer.start();
+        runConcurrently(threads, () -> {
+            for (int k = 0; k < permits; k++) {
+                consumer.permits.release(1);
+            }
+        });
+        assertTrue(consumer.done.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals(threads * permits, consumer.fired.get());
+        assertEquals(0, consumer.permits.getCount());
+    }
+}
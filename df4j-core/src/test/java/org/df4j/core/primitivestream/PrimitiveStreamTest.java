@@ -0,0 +1,169 @@
+package org.df4j.core.primitivestream;
+
+import org.df4j.core.boundconnector.primitivestream.DoubleStreamInput;
+import org.df4j.core.boundconnector.primitivestream.IntStreamInput;
+import org.df4j.core.boundconnector.primitivestream.LongStreamInput;
+import org.df4j.core.boundconnector.primitivestream.LongStreamOutput;
+import org.df4j.core.tasknode.AsyncProc;
+import org.df4j.core.tasknode.messagestream.Actor;
+import org.df4j.core.tasknode.messagestream.DoubleStreamProcessor;
+import org.df4j.core.tasknode.messagestream.IntStreamProcessor;
+import org.df4j.core.tasknode.messagestream.LongStreamProcessor;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class PrimitiveStreamTest {
+
+    static class Square extends LongStreamProcessor {
+        @Override
+        protected long process(long value) {
+            return value * value;
+        }
+    }
+
+    static class LongSum extends Actor {
+        final LongStreamInput input = new LongStreamInput(this, 4);
+        final CountDownLatch done = new CountDownLatch(1);
+        long sum;
+
+        @Override
+        protected Void runAction() {
+            if (input.isClosed()) {
+                done.countDown();
+                stop();
+            } else {
+                sum += input.nextLong();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * emits values of its own thread
+     */
+    static class Source extends Actor {
+        final LongStreamOutput output = new LongStreamOutput(this);
+    }
+
+    @Test
+    public void longPipeline() throws InterruptedException {
+        Source source = new Source();
+        Square square = new Square();
+        LongSum sum = new LongSum();
+        source.output.subscribe(square);
+        square.subscribe(sum.input);
+        square.start();
+        sum.start();
+        long expected = 0;
+        for (long k = 0; k < 10_000; k++) {
+            source.output.post(k);
+            expected += k * k;
+        }
+        source.output.complete();
+        Assert.assertTrue(sum.done.await(2, TimeUnit.SECONDS));
+        Assert.assertEquals(expected, sum.sum);
+    }
+
+    @Test
+    public void ringGrowsKeepingOrder() {
+        IntSink sink = new IntSink();
+        for (int k = 0; k < 100; k++) {
+            sink.input.post(k);
+            if (k % 3 == 0) {
+                Assert.assertEquals(k / 3, sink.input.nextInt());
+            }
+        }
+        Assert.assertEquals(66, sink.input.size());
+        Assert.assertEquals(34, sink.input.nextInt());
+    }
+
+    static class Failing extends DoubleStreamProcessor {
+        @Override
+        protected double process(double value) {
+            return value / 2;
+        }
+    }
+
+    static class DoubleSink extends Actor {
+        final DoubleStreamInput input = new DoubleStreamInput(this);
+        double last;
+        Throwable error;
+
+        @Override
+        protected Void runAction() {
+            if (input.isClosed()) {
+                error = input.getException();
+                stop();
+            } else {
+                last = input.nextDouble();
+            }
+            return null;
+        }
+    }
+
+    @Test
+    public void errorIsPropagated() {
+        Failing processor = new Failing();
+        DoubleSink sink = new DoubleSink();
+        processor.subscribe(sink.input);
+        processor.start(AsyncProc.directExecutor);
+        sink.start(AsyncProc.directExecutor);
+        processor.post(3.0);
+        Assert.assertEquals(1.5, sink.last, 0);
+        Exception error = new Exception();
+        processor.completeExceptionally(error);
+        Assert.assertSame(error, sink.error);
+    }
+
+    static class Inc extends IntStreamProcessor {
+        @Override
+        protected int process(int value) {
+            return value + 1;
+        }
+    }
+
+    static class IntSink extends Actor {
+        final IntStreamInput input = new IntStreamInput(this);
+        long sum;
+
+        @Override
+        protected Void runAction() {
+            sum += input.nextInt();
+            return null;
+        }
+    }
+
+    /**
+     * values pass source, processor and sink without boxing
+     */
+    @Test
+    public void intPipelineDoesNotAllocate() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean.isThreadAllocatedMemorySupported());
+        bean.setThreadAllocatedMemoryEnabled(true);
+        Inc inc = new Inc();
+        IntSink sink = new IntSink();
+        inc.subscribe(sink.input);
+        inc.start(AsyncProc.directExecutor);
+        sink.start(AsyncProc.directExecutor);
+        int n = 100_000;
+        for (int round = 0; round < 10; round++) {
+            for (int k = 0; k < n; k++) {
+                inc.post(1000 + k); // warm up; values out of Integer cache
+            }
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(threadId);
+        for (int k = 0; k < n; k++) {
+            inc.post(1000 + k);
+        }
+        long allocated = bean.getThreadAllocatedBytes(threadId) - before;
+        Assert.assertTrue("allocated " + allocated + " bytes for " + n + " values", allocated < n);
+    }
+}
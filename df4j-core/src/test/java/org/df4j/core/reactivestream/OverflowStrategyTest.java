@@ -0,0 +1,193 @@
+package org.df4j.core.reactivestream;
+
+import org.df4j.core.boundconnector.permitscalar.BinarySemafor;
+import org.df4j.core.boundconnector.permitstream.Semafor;
+import org.df4j.core.boundconnector.reactivestream.OverflowStrategy;
+import org.df4j.core.boundconnector.reactivestream.OverflowSubscription;
+import org.df4j.core.boundconnector.reactivestream.ReactiveInput;
+import org.df4j.core.boundconnector.reactivestream.ReactiveOutput;
+import org.df4j.core.boundconnector.reactivestream.ReactiveSubscriber;
+import org.df4j.core.boundconnector.reactivestream.ReactiveSubscription;
+import org.df4j.core.tasknode.messagestream.Actor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class OverflowStrategyTest {
+
+    static class Recorder implements ReactiveSubscriber<Integer> {
+        final List<Integer> received = new ArrayList<>();
+        OverflowSubscription subscription;
+        boolean completed;
+
+        @Override
+        public void onSubscribe(ReactiveSubscription subscription) {
+            this.subscription = (OverflowSubscription) subscription;
+        }
+
+        @Override
+        public void post(Integer message) {
+            received.add(message);
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+    }
+
+    static boolean blocked(OverflowSubscription subscription) {
+        return ((Semafor) subscription).isBlocked();
+    }
+
+    static Recorder postTen(OverflowStrategy strategy, int bufferSize) {
+        ReactiveOutput<Integer> output = new ReactiveOutput<>(new Actor());
+        Recorder recorder = output.subscribe(new Recorder(), strategy, bufferSize);
+        recorder.subscription.request(2);
+        for (int k = 0; k < 10; k++) {
+            Assert.assertFalse(blocked(recorder.subscription));
+            output.post(k);
+        }
+        Assert.assertEquals(Arrays.asList(0, 1), recorder.received);
+        return recorder;
+    }
+
+    @Test
+    public void dropNewest() {
+        Recorder recorder = postTen(OverflowStrategy.DROP_NEWEST, 3);
+        Assert.assertEquals(3, recorder.subscription.getBufferedSize());
+        Assert.assertEquals(5, recorder.subscription.getDroppedCount());
+        recorder.subscription.request(10);
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4), recorder.received);
+    }
+
+    @Test
+    public void dropOldest() {
+        Recorder recorder = postTen(OverflowStrategy.DROP_OLDEST, 3);
+        Assert.assertEquals(5, recorder.subscription.getDroppedCount());
+        Assert.assertEquals(8, recorder.subscription.getBufferedCount());
+        recorder.subscription.request(10);
+        Assert.assertEquals(Arrays.asList(0, 1, 7, 8, 9), recorder.received);
+    }
+
+    @Test
+    public void conflateLatest() {
+        Recorder recorder = postTen(OverflowStrategy.CONFLATE_LATEST, 100);
+        Assert.assertEquals(1, recorder.subscription.getBufferedSize());
+        Assert.assertEquals(7, recorder.subscription.getDroppedCount());
+        recorder.subscription.request(1);
+        Assert.assertEquals(Arrays.asList(0, 1, 9), recorder.received);
+    }
+
+    @Test
+    public void bufferBlocksWhenFull() {
+        ReactiveOutput<Integer> output = new ReactiveOutput<>(new Actor());
+        Recorder recorder = output.subscribe(new Recorder(), OverflowStrategy.BUFFER, 2);
+        recorder.subscription.request(1);
+        output.post(0);
+        output.post(1);
+        Assert.assertFalse(blocked(recorder.subscription));
+        output.post(2);
+        Assert.assertTrue(blocked(recorder.subscription));
+        try {
+            output.post(3);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+        }
+        recorder.subscription.request(1);
+        Assert.assertEquals(Arrays.asList(0, 1), recorder.received);
+        Assert.assertFalse(blocked(recorder.subscription));
+        Assert.assertEquals(0, recorder.subscription.getDroppedCount());
+    }
+
+    @Test
+    public void completionAfterBuffer() {
+        ReactiveOutput<Integer> output = new ReactiveOutput<>(new Actor());
+        Recorder recorder = output.subscribe(new Recorder(), OverflowStrategy.DROP_OLDEST, 4);
+        output.post(0);
+        output.complete();
+        Assert.assertFalse(recorder.completed);
+        recorder.subscription.request(1);
+        Assert.assertEquals(Arrays.asList(0), recorder.received);
+        Assert.assertTrue(recorder.completed);
+    }
+
+    @Test
+    public void slowSubscriberDoesNotBlockOthers() {
+        ReactiveOutput<Integer> output = new ReactiveOutput<>(new Actor());
+        Recorder fast = output.subscribe(new Recorder());
+        Recorder slow = output.subscribe(new Recorder(), OverflowStrategy.DROP_NEWEST, 4);
+        fast.subscription.request(100);
+        for (int k = 0; k < 100; k++) {
+            Assert.assertFalse(blocked(slow.subscription));
+            output.post(k);
+        }
+        Assert.assertEquals(100, fast.received.size());
+        Assert.assertEquals(96, output.getDroppedCount());
+    }
+
+    static class Source extends Actor {
+        final ReactiveOutput<Integer> output = new ReactiveOutput<>(this);
+        final int total;
+        int sent;
+
+        Source(int total) {
+            this.total = total;
+        }
+
+        @Override
+        protected Void runAction() {
+            if (sent == total) {
+                output.complete();
+                stop();
+            } else {
+                output.post(sent++);
+            }
+            return null;
+        }
+    }
+
+    static class Sink extends Actor {
+        final ReactiveInput<Integer> input = new ReactiveInput<>(this, 4);
+        /** keeps a slow sink from reading until the fast one has finished */
+        final BinarySemafor gate = new BinarySemafor(this);
+        final CountDownLatch done = new CountDownLatch(1);
+        int received;
+
+        @Override
+        protected Void runAction() {
+            if (input.next() == null) {
+                done.countDown();
+                stop();
+            } else {
+                received++;
+            }
+            return null;
+        }
+    }
+
+    @Test
+    public void actors() throws InterruptedException {
+        int total = 2000;
+        Source source = new Source(total);
+        Sink fast = new Sink();
+        Sink slow = new Sink();
+        slow.gate.aquire();
+        source.output.subscribe(fast.input);
+        source.output.subscribe(slow.input, OverflowStrategy.DROP_OLDEST, 8);
+        fast.start();
+        slow.start();
+        source.start();
+        Assert.assertTrue(fast.done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(total, fast.received);
+        slow.gate.release();
+        Assert.assertTrue(slow.done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(4 + 8, slow.received); // the window of the input and the overflow buffer
+        Assert.assertEquals(total - 4 - 8, source.output.getDroppedCount());
+    }
+}
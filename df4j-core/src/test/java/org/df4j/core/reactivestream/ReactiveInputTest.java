@@ -0,0 +1,133 @@
+package org.df4j.core.reactivestream;
+
+import org.df4j.core.boundconnector.reactivestream.ReactiveInput;
+import org.df4j.core.boundconnector.reactivestream.ReactiveOutput;
+import org.df4j.core.boundconnector.reactivestream.ReactiveSubscription;
+import org.df4j.core.tasknode.messagestream.Actor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ReactiveInputTest {
+
+    static class RecordingSubscription implements ReactiveSubscription {
+        final List<Long> requests = new ArrayList<>();
+
+        @Override
+        public void request(long n) {
+            requests.add(n);
+        }
+
+        @Override
+        public boolean cancel() {
+            return false;
+        }
+    }
+
+    @Test
+    public void demandIsCoalesced() {
+        ReactiveInput<Integer> input = new ReactiveInput<>(new Actor(), 8);
+        RecordingSubscription subscription = new RecordingSubscription();
+        input.onSubscribe(subscription);
+        for (int k = 0; k < 8; k++) {
+            input.post(k);
+        }
+        for (int k = 0; k < 3; k++) {
+            Assert.assertEquals(Integer.valueOf(k), input.next());
+        }
+        Assert.assertEquals(Arrays.asList(8L), subscription.requests);
+        Assert.assertEquals(Integer.valueOf(3), input.next());
+        Assert.assertEquals(Arrays.asList(8L, 4L), subscription.requests);
+        for (int k = 8; k < 12; k++) {
+            input.post(k); // wraps around the ring
+        }
+        List<Integer> drained = new ArrayList<>();
+        input.drainTo(drained::add, 100);
+        Assert.assertEquals(Arrays.asList(4, 5, 6, 7, 8, 9, 10, 11), drained);
+        Assert.assertEquals(Arrays.asList(8L, 4L, 8L), subscription.requests);
+    }
+
+    @Test
+    public void perElementDemand() {
+        ReactiveInput<Integer> input = new ReactiveInput<>(new Actor(), 4, 1);
+        RecordingSubscription subscription = new RecordingSubscription();
+        input.onSubscribe(subscription);
+        input.post(1);
+        input.post(2);
+        input.next();
+        input.next();
+        Assert.assertEquals(Arrays.asList(4L, 1L, 1L), subscription.requests);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void overflow() {
+        ReactiveInput<Integer> input = new ReactiveInput<>(new Actor(), 4);
+        input.onSubscribe(new RecordingSubscription());
+        for (int k = 0; k < 4; k++) {
+            input.post(k);
+        }
+        input.next(); // consumed, but not requested again
+        input.post(4);
+    }
+
+    static class Source extends Actor {
+        final ReactiveOutput<Integer> output = new ReactiveOutput<>(this);
+        final int total;
+        int sent;
+
+        Source(int total) {
+            this.total = total;
+        }
+
+        @Override
+        protected Void runAction() {
+            if (sent == total) {
+                output.complete();
+                stop();
+            } else {
+                output.post(sent++);
+            }
+            return null;
+        }
+    }
+
+    static class Sink extends Actor {
+        final ReactiveInput<Integer> input;
+        final CountDownLatch done = new CountDownLatch(1);
+        int expected;
+        volatile String error;
+
+        Sink(int capacity) {
+            input = new ReactiveInput<>(this, capacity);
+        }
+
+        @Override
+        protected Void runAction() {
+            Integer value = input.next();
+            if (value == null) {
+                done.countDown();
+                stop();
+            } else if (value != expected++) {
+                error = "expected " + (expected - 1) + " got " + value;
+            }
+            return null;
+        }
+    }
+
+    @Test
+    public void outputToInput() throws InterruptedException {
+        Source source = new Source(10_000);
+        Sink sink = new Sink(16);
+        source.output.subscribe(sink.input);
+        sink.start();
+        source.start();
+        Assert.assertTrue(sink.done.await(5, TimeUnit.SECONDS));
+        Assert.assertNull(sink.error);
+        Assert.assertEquals(10_000, sink.expected);
+    }
+}
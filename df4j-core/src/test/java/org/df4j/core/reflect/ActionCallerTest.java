@@ -2,8 +2,11 @@ package org.df4j.core.reflect;
 
 import org.df4j.core.tasknode.Action;
 import org.df4j.core.util.ActionCaller;
+import org.df4j.core.util.invoker.ClassInvokerFactory;
 import org.df4j.core.util.invoker.FunctionInvoker;
 import org.df4j.core.util.invoker.Invoker;
+import org.df4j.core.util.invoker.LambdaInvoker;
+import org.df4j.core.util.invoker.MethodHandleInvoker;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -101,6 +104,104 @@ public class ActionCallerTest {
         Assert.assertEquals(137, res2);
     }
 
+    @Test
+    public void publicMethodIsLinkedAsLambda() throws Exception {
+        PublicAction obj = new PublicAction();
+        Invoker f = ActionCaller.findAction(obj, 2);
+        Assert.assertTrue(f instanceof LambdaInvoker);
+        Assert.assertTrue(f.returnsValue());
+        Assert.assertEquals(7L, f.apply(3, 4));
+        Invoker p = ActionCaller.findAction(new PublicProc(), 1);
+        Assert.assertTrue(p instanceof LambdaInvoker);
+        Assert.assertFalse(p.returnsValue());
+        Assert.assertNull(p.apply("x"));
+    }
+
+    @Test
+    public void invokerIsBoundToObject() throws Exception {
+        PublicProc p1 = new PublicProc();
+        PublicProc p2 = new PublicProc();
+        ActionCaller.findAction(p1, 1).apply("a");
+        ActionCaller.findAction(p2, 1).apply("b");
+        Assert.assertEquals("a", p1.last);
+        Assert.assertEquals("b", p2.last);
+    }
+
+    @Test
+    public void privateMethodIsCalledByHandle() throws Exception {
+        Invoker f = ActionCaller.findAction(new PrivateAction(), 1);
+        Assert.assertTrue(f instanceof MethodHandleInvoker);
+        Assert.assertEquals(THREE, f.apply(TWO));
+    }
+
+    @Test
+    public void manyArguments() throws Exception {
+        Invoker f = ActionCaller.findAction(new ManyArgs(), 5);
+        Assert.assertEquals(15, f.apply(1, 2, 3, 4, 5));
+    }
+
+    @Test(expected = NoSuchMethodException.class)
+    public void wrongArgCount() throws NoSuchMethodException {
+        ActionCaller.findAction(new PublicAction(), 1);
+    }
+
+    @Test
+    public void generatedFactoryIsLoadedByName() throws NoSuchMethodException {
+        Invoker invoker = ActionCaller.findAction(new Served(), 0);
+        Assert.assertSame(ActionCallerTest_Served_ActionInvoker.INVOKER, invoker);
+    }
+
+    @Test
+    public void factoryOfAnotherClassIsIgnored() throws Exception {
+        Invoker invoker = ActionCaller.findAction(new Misnamed(), 1);
+        Assert.assertEquals(3, invoker.apply(2));
+    }
+
+    /**
+     * has no action, but a factory
+     */
+    public static class Served {
+    }
+
+    /**
+     * the factory named after this class serves another class, so this class is scanned
+     */
+    public static class Misnamed {
+        @Action
+        public int inc(int a) {
+            return a + 1;
+        }
+    }
+
+    public static class PublicAction {
+        @Action
+        public long add(int a, Integer b) {
+            return a + b;
+        }
+    }
+
+    public static class PublicProc {
+        String last;
+
+        @Action
+        public void proc(String s) {
+            last = s;
+        }
+    }
+
+    static class PrivateAction {
+        @Action
+        private Integer inc(Integer arg) {
+            return arg + 1;
+        }
+    }
+
+    static class ManyArgs {
+        @Action
+        int sum(int a, int b, int c, int d, int e) {
+            return a + b + c + d + e;
+        }
+    }
 
     static class Empty {}
 
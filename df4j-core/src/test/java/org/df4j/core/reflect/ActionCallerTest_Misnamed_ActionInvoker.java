@@ -0,0 +1,20 @@
+package org.df4j.core.reflect;
+
+import org.df4j.core.util.invoker.ClassInvokerFactory;
+import org.df4j.core.util.invoker.Invoker;
+
+/**
+ * is named after {@link ActionCallerTest.Misnamed}, but serves another class
+ */
+public class ActionCallerTest_Misnamed_ActionInvoker implements ClassInvokerFactory<Object> {
+
+    @Override
+    public Class<?> actionClass() {
+        return ActionCallerTest.Served.class;
+    }
+
+    @Override
+    public Invoker<Object> findAction(Object actionObject, int argCount) throws NoSuchMethodException {
+        throw new NoSuchMethodException();
+    }
+}
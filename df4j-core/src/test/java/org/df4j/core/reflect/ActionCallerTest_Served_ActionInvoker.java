@@ -0,0 +1,22 @@
+package org.df4j.core.reflect;
+
+import org.df4j.core.util.invoker.ClassInvokerFactory;
+import org.df4j.core.util.invoker.FunctionInvoker;
+import org.df4j.core.util.invoker.Invoker;
+
+/**
+ * stands for a factory generated by df4j-apt
+ */
+public class ActionCallerTest_Served_ActionInvoker implements ClassInvokerFactory<Object> {
+    static final Invoker<Object> INVOKER = new FunctionInvoker<>(x -> x);
+
+    @Override
+    public Class<?> actionClass() {
+        return ActionCallerTest.Served.class;
+    }
+
+    @Override
+    public Invoker<Object> findAction(Object actionObject, int argCount) {
+        return INVOKER;
+    }
+}
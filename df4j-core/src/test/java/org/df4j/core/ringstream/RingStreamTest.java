@@ -0,0 +1,141 @@
+package org.df4j.core.ringstream;
+
+import org.df4j.core.boundconnector.ringstream.RingInput;
+import org.df4j.core.boundconnector.ringstream.RingOutput;
+import org.df4j.core.tasknode.messagestream.Actor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class RingStreamTest {
+
+    @Test
+    public void slowestSubscriberBlocksPublisher() {
+        RingOutput<Integer> output = new RingOutput<>(new Actor(), 4);
+        RingInput<Integer> fast = output.subscribe(new RingInput<>(new Actor()));
+        RingInput<Integer> slow = output.subscribe(new RingInput<>(new Actor()));
+        Assert.assertTrue(fast.isBlocked());
+        for (int k = 0; k < 4; k++) {
+            Assert.assertFalse(output.isBlocked());
+            output.post(k);
+        }
+        Assert.assertTrue(output.isBlocked());
+        Assert.assertFalse(fast.isBlocked());
+        List<Integer> drained = new ArrayList<>();
+        fast.drainTo(drained::add, 10);
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3), drained);
+        Assert.assertTrue(fast.isBlocked());
+        Assert.assertTrue(output.isBlocked()); // still waiting for the slow one
+        Assert.assertEquals(Integer.valueOf(0), slow.next());
+        Assert.assertFalse(output.isBlocked());
+        output.post(4); // overwrites the slot of 0
+        Assert.assertEquals(Integer.valueOf(1), slow.next());
+        Assert.assertEquals(Integer.valueOf(4), fast.next());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void overflow() {
+        RingOutput<Integer> output = new RingOutput<>(new Actor(), 2);
+        output.subscribe(new RingInput<>(new Actor()));
+        output.post(1);
+        output.post(2);
+        output.post(3);
+    }
+
+    @Test
+    public void lateSubscriberAndCompletion() {
+        RingOutput<Integer> output = new RingOutput<>(new Actor(), 4);
+        output.post(1); // no subscribers, dropped
+        RingInput<Integer> input = output.subscribe(new RingInput<>(new Actor()));
+        output.post(2);
+        output.complete();
+        Assert.assertFalse(input.isClosed());
+        Assert.assertEquals(Integer.valueOf(2), input.current());
+        Assert.assertEquals(Integer.valueOf(2), input.next());
+        Assert.assertTrue(input.isClosed());
+        Assert.assertFalse(input.isBlocked());
+        Assert.assertNull(input.next());
+        Assert.assertTrue(input.isBlocked());
+    }
+
+    @Test
+    public void cancelReleasesPublisher() {
+        RingOutput<Integer> output = new RingOutput<>(new Actor(), 2);
+        RingInput<Integer> input = output.subscribe(new RingInput<>(new Actor()));
+        output.post(1);
+        output.post(2);
+        Assert.assertTrue(output.isBlocked());
+        input.cancel();
+        Assert.assertFalse(output.isBlocked());
+    }
+
+    static class Source extends Actor {
+        final RingOutput<Integer> output;
+        final int total;
+        int sent;
+
+        Source(int capacity, int total) {
+            output = new RingOutput<>(this, capacity);
+            this.total = total;
+        }
+
+        @Override
+        protected Void runAction() {
+            if (sent == total) {
+                output.complete();
+                stop();
+            } else {
+                output.post(sent++);
+            }
+            return null;
+        }
+    }
+
+    static class Sink extends Actor {
+        final RingInput<Integer> input = new RingInput<>(this);
+        final CountDownLatch done = new CountDownLatch(1);
+        final int pause;
+        int expected;
+        volatile String error;
+
+        Sink(int pause) {
+            this.pause = pause;
+        }
+
+        @Override
+        protected Void runAction() throws InterruptedException {
+            Integer value = input.next();
+            if (value == null) {
+                done.countDown();
+                stop();
+            } else if (value != expected++) {
+                error = "expected " + (expected - 1) + " got " + value;
+            } else if (pause > 0 && value % pause == 0) {
+                Thread.sleep(1);
+            }
+            return null;
+        }
+    }
+
+    @Test
+    public void multicast() throws InterruptedException {
+        int total = 10_000;
+        Source source = new Source(16, total);
+        Sink[] sinks = {new Sink(0), new Sink(0), new Sink(1000)};
+        for (Sink sink : sinks) {
+            source.output.subscribe(sink.input);
+            sink.start();
+        }
+        source.start();
+        for (Sink sink : sinks) {
+            Assert.assertTrue(sink.done.await(5, TimeUnit.SECONDS));
+            Assert.assertNull(sink.error);
+            Assert.assertEquals(total, sink.expected);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.df4j.core.tasknode;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * checks that a node fires exactly once each time all its pins are turned on,
+ * when pins are turned on concurrently, and the same pin is turned on by several threads.
+ */
+public class PinStateTest {
+    static final int THREADS = 4;
+    static final int ROUNDS = 2000;
+
+    static class Node extends AsyncProc {
+        final AtomicInteger fired = new AtomicInteger();
+        final Lock[] pins;
+
+        Node(int pinCount) {
+            pins = new Lock[pinCount];
+            for (int k = 0; k < pinCount; k++) {
+                pins[k] = new Lock();
+            }
+        }
+
+        @Override
+        protected boolean isStarted() {
+            return true;
+        }
+
+        @Override
+        protected void fire() {
+            fired.incrementAndGet();
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+
+    private void runRounds(int pinCount) throws Exception {
+        Node node = new Node(pinCount);
+        CyclicBarrier start = new CyclicBarrier(THREADS + 1);
+        CyclicBarrier end = new CyclicBarrier(THREADS + 1);
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final int first = t % (THREADS / 2);
+            threads[t] = new Thread(() -> {
+                try {
+                    for (int r = 0; r < ROUNDS; r++) {
+                        start.await();
+                        // each pin is turned on by two threads
+                        for (int k = first; k < pinCount; k += THREADS / 2) {
+                            node.pins[k].turnOn();
+                        }
+                        end.await();
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            threads[t].start();
+        }
+        for (int r = 0; r < ROUNDS; r++) {
+            for (int k = 0; k < pinCount; k++) {
+                Assert.assertEquals(r == 0, node.pins[k].isBlocked());
+                node.pins[k].turnOff();
+            }
+            start.await();
+            end.await();
+            Assert.assertTrue(node.isReady());
+            Assert.assertEquals(r + 1, node.fired.get());
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    @Test
+    public void maskModeTest() throws Exception {
+        runRounds(8);
+    }
+
+    @Test
+    public void countingModeTest() throws Exception {
+        runRounds(AsyncProc.MASK_CAPACITY + 37);
+    }
+
+    @Test
+    public void migrationKeepsStateTest() {
+        Node node = new Node(AsyncProc.MASK_CAPACITY);
+        node.pins[5].turnOn();
+        node.pins[7].turnOn();
+        AsyncProc.Lock extra = node.new Lock(false);
+        Assert.assertFalse(node.pins[5].isBlocked());
+        Assert.assertTrue(node.pins[6].isBlocked());
+        Assert.assertFalse(extra.isBlocked());
+        for (AsyncProc.Lock pin : node.pins) {
+            pin.turnOn();
+        }
+        Assert.assertEquals(1, node.fired.get());
+        extra.turnOff();
+        extra.turnOn();
+        Assert.assertEquals(2, node.fired.get());
+    }
+}
@@ -0,0 +1,136 @@
+package org.df4j.core.window;
+
+import org.df4j.core.messagestream.CollectingSubscriber;
+import org.df4j.core.tasknode.window.Aggregator;
+import org.df4j.core.tasknode.window.GroupByAggregate;
+import org.df4j.core.util.Pair;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class GroupByAggregateTest {
+    static final int KEYS = 100;
+
+    /**
+     * keeps the latest update of each key
+     */
+    static class Latest<K, R> extends CollectingSubscriber<Pair<K, R>> {
+        final Map<K, R> values = new HashMap<>();
+
+        @Override
+        public synchronized void post(Pair<K, R> update) {
+            values.put(update.t, update.u);
+            super.post(update);
+        }
+    }
+
+    static void postConcurrently(GroupByAggregate<Long, ?, ?, ?> groupBy, int threads, int perThread)
+            throws InterruptedException {
+        Thread[] posters = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            posters[t] = new Thread(() -> {
+                for (long k = 0; k < perThread; k++) {
+                    groupBy.post(k);
+                }
+            });
+            posters[t].start();
+        }
+        for (Thread poster : posters) {
+            poster.join();
+        }
+    }
+
+    @Test
+    public void countByObjectKey() throws InterruptedException {
+        GroupByAggregate<Long, String, long[], Long> groupBy =
+                new GroupByAggregate<>(x -> "k" + (x % KEYS), Aggregator.count(), 3);
+        groupBy.setFlushSize(500);
+        Latest<String, Long> latest = groupBy.subscribe(new Latest<>());
+        postConcurrently(groupBy, 4, 10_000);
+        groupBy.complete();
+        Assert.assertTrue(latest.done.await(2, TimeUnit.SECONDS));
+        Assert.assertEquals(KEYS, latest.values.size());
+        for (Long count : latest.values.values()) {
+            Assert.assertEquals(Long.valueOf(400), count);
+        }
+        // one update per key and flush: 4 threads * 20 flushes * 100 keys, instead of one per element
+        Assert.assertEquals(8_000, latest.received.size());
+    }
+
+    @Test
+    public void sumByLongKey() throws InterruptedException {
+        GroupByAggregate<Long, Long, long[], Long> groupBy =
+                GroupByAggregate.byLongKey(x -> x % KEYS, Aggregator.sumLong(x -> x), 2);
+        Latest<Long, Long> latest = groupBy.subscribe(new Latest<>());
+        postConcurrently(groupBy, 3, 1_000);
+        groupBy.complete();
+        Assert.assertTrue(latest.done.await(2, TimeUnit.SECONDS));
+        Assert.assertEquals(KEYS, latest.values.size());
+        for (long key = 0; key < KEYS; key++) {
+            long sum = 0;
+            for (long x = key; x < 1_000; x += KEYS) {
+                sum += x;
+            }
+            Assert.assertEquals(Long.valueOf(3 * sum), latest.values.get(key));
+        }
+    }
+
+    @Test
+    public void topValuesPerKey() throws InterruptedException {
+        GroupByAggregate<Long, Long, ?, List<Long>> groupBy =
+                GroupByAggregate.byLongKey(x -> x % 2, Aggregator.top(3, Comparator.<Long>naturalOrder()), 2);
+        groupBy.setFlushSize(7);
+        Latest<Long, List<Long>> latest = groupBy.subscribe(new Latest<>());
+        postConcurrently(groupBy, 2, 100);
+        groupBy.complete();
+        Assert.assertTrue(latest.done.await(2, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.asList(98L, 98L, 96L), latest.values.get(0L));
+        Assert.assertEquals(Arrays.asList(99L, 99L, 97L), latest.values.get(1L));
+    }
+
+    @Test
+    public void postedResultsAreNotUpdated() throws InterruptedException {
+        GroupByAggregate<Long, Long, ?, LongSummaryStatistics> groupBy =
+                GroupByAggregate.byLongKey(x -> 0, Aggregator.summarizingLong(x -> x), 1);
+        groupBy.setFlushSize(1);
+        CollectingSubscriber<Pair<Long, LongSummaryStatistics>> sink = groupBy.subscribe(new CollectingSubscriber<>());
+        groupBy.post(1L);
+        groupBy.post(2L);
+        groupBy.complete();
+        Assert.assertTrue(sink.done.await(2, TimeUnit.SECONDS));
+        List<LongSummaryStatistics> updates = new ArrayList<>();
+        for (Pair<Long, LongSummaryStatistics> update : sink.received()) {
+            updates.add(update.u);
+        }
+        Assert.assertEquals(2, updates.size());
+        Assert.assertEquals(1, updates.get(0).getCount());
+        Assert.assertEquals(2, updates.get(1).getCount());
+        Assert.assertEquals(3, updates.get(1).getSum());
+    }
+
+    @Test
+    public void periodicFlush() throws InterruptedException {
+        GroupByAggregate<Long, Long, long[], Long> groupBy =
+                GroupByAggregate.byLongKey(x -> x, Aggregator.count(), 1);
+        Latest<Long, Long> latest = groupBy.subscribe(new Latest<>());
+        groupBy.setFlushInterval(10);
+        groupBy.post(1L);
+        groupBy.post(1L);
+        synchronized (latest) {
+            long deadline = System.currentTimeMillis() + 2000;
+            while (!Long.valueOf(2).equals(latest.values.get(1L)) && System.currentTimeMillis() < deadline) {
+                latest.wait(10);
+            }
+            Assert.assertEquals(Long.valueOf(2), latest.values.get(1L));
+        }
+        groupBy.complete();
+    }
+}
@@ -0,0 +1,219 @@
+package org.df4j.core.window;
+
+import org.df4j.core.messagestream.CollectingSubscriber;
+import org.df4j.core.tasknode.messagestream.Actor;
+import org.df4j.core.tasknode.window.StreamJoin;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class StreamJoinTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static List<String> sorted(CollectingSubscriber<String> sink) {
+        List<String> res = sink.received();
+        Collections.sort(res);
+        return res;
+    }
+
+    /**
+     * elements are strings "key:timestamp"
+     */
+    static StreamJoin<String, String, String, String> newJoin(long window) {
+        StreamJoin<String, String, String, String> join = new StreamJoin<>(
+                StreamJoinTest::key, StreamJoinTest::timestamp,
+                StreamJoinTest::key, StreamJoinTest::timestamp,
+                window, (l, r) -> l + "=" + r);
+        join.setExecutor(Actor.directExecutor);
+        return join;
+    }
+
+    static String key(String item) {
+        return item.substring(0, item.indexOf(':'));
+    }
+
+    static long timestamp(String item) {
+        return Long.parseLong(item.substring(item.indexOf(':') + 1));
+    }
+
+    @Test
+    public void joinWithinWindow() throws InterruptedException {
+        StreamJoin<String, String, String, String> join = newJoin(10);
+        CollectingSubscriber<String> sink = join.subscribe(new CollectingSubscriber<>());
+        join.start();
+        join.left.post("a:0");
+        join.left.post("b:1");
+        join.right.post("a:5");
+        join.right.post("b:12"); // too late for b:1, and evicts a:0 and b:1
+        Assert.assertEquals(2, join.getRetainedCount());
+        Assert.assertEquals(2, join.getEvictedCount());
+        join.left.post("a:8");
+        Assert.assertEquals(Arrays.asList("a:0=a:5", "a:8=a:5"), sorted(sink));
+        Assert.assertEquals(3, join.getRetainedCount());
+        join.right.post("a:30"); // evicts all but itself
+        Assert.assertEquals(1, join.getRetainedCount());
+        Assert.assertEquals(5, join.getEvictedCount());
+        Assert.assertEquals(3, join.getPeakRetainedCount());
+        join.left.post("a:25");
+        join.left.complete();
+        join.right.complete();
+        Assert.assertTrue(sink.done.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.asList("a:0=a:5", "a:25=a:30", "a:8=a:5"), sorted(sink));
+        Assert.assertEquals(3, join.getJoinedCount());
+        Assert.assertEquals(0, join.getRetainedCount());
+    }
+
+    @Test
+    public void maxEntriesEvictsOldest() throws InterruptedException {
+        StreamJoin<String, String, String, String> join = newJoin(100);
+        join.setMaxEntries(2);
+        CollectingSubscriber<String> sink = join.subscribe(new CollectingSubscriber<>());
+        join.start();
+        join.left.post("a:1");
+        join.left.post("a:2");
+        join.left.post("a:3");
+        join.right.post("a:4");
+        join.left.complete();
+        join.right.complete();
+        Assert.assertTrue(sink.done.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.asList("a:2=a:4", "a:3=a:4"), sorted(sink));
+        Assert.assertEquals(1, join.getEvictedCount());
+    }
+
+    @Test
+    public void spillLargerSide() throws Exception {
+        File directory = folder.newFolder();
+        StreamJoin<String, String, String, String> join = newJoin(1000);
+        join.setSpill(directory, 8);
+        CollectingSubscriber<String> sink = join.subscribe(new CollectingSubscriber<>());
+        join.start();
+        for (int k = 0; k < 40; k++) {
+            join.left.post("k" + (k % 5) + ":" + k);
+        }
+        long spilled = join.getSpilledCount();
+        Assert.assertTrue(spilled > 0);
+        Assert.assertTrue(join.getRetainedCount() <= 8);
+        Assert.assertEquals(40, join.getRetainedCount() + spilled);
+        // every spilled record is on disk before any probe: timestamp, length and at least the shortest element
+        long onDisk = 0;
+        for (File file : directory.listFiles()) {
+            onDisk += file.length();
+        }
+        Assert.assertTrue(onDisk >= spilled * (Long.BYTES + Integer.BYTES + serializedSize("k0:0")));
+        // and no spill file keeps a copy of its records in memory
+        Assert.assertEquals(0, buffersOfSegments(join));
+        join.right.post("k3:100");
+        join.left.complete();
+        join.right.complete();
+        Assert.assertTrue(sink.done.await(1, TimeUnit.SECONDS));
+        Assert.assertNull(sink.failure);
+        List<String> expected = new ArrayList<>();
+        for (int k = 3; k < 40; k += 5) {
+            expected.add("k3:" + k + "=k3:100");
+        }
+        Collections.sort(expected);
+        Assert.assertEquals(expected, sorted(sink));
+        Assert.assertEquals(0, directory.list().length);
+    }
+
+    @Test
+    public void spilledSegmentsKeepNoOpenFiles() throws Exception {
+        File directory = folder.newFolder();
+        StreamJoin<String, String, String, String> join = newJoin(1000);
+        join.setSpill(directory, 8);
+        CollectingSubscriber<String> sink = join.subscribe(new CollectingSubscriber<>());
+        join.start();
+        for (int k = 0; k < 200; k++) {
+            join.left.post("k" + (k % 5) + ":" + k);
+        }
+        join.right.post("k3:100");
+        Assert.assertTrue(directory.list().length > 20);
+        Assert.assertEquals(0, openFilesOfSegments(join));
+        join.left.complete();
+        join.right.complete();
+        Assert.assertTrue(sink.done.await(1, TimeUnit.SECONDS));
+        Assert.assertNull(sink.failure);
+        Assert.assertEquals(40, sink.received().size());
+        Assert.assertEquals(0, directory.list().length);
+    }
+
+    static int serializedSize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(value);
+        }
+        return bytes.size();
+    }
+
+    /**
+     * @return number of streams and byte arrays referenced by spill files of the join
+     */
+    static int buffersOfSegments(StreamJoin<?, ?, ?, ?> join) throws ReflectiveOperationException {
+        int count = 0;
+        for (String sideName : new String[]{"leftSide", "rightSide"}) {
+            Object side = field(join, sideName);
+            for (Object segment : (Collection<?>) field(side, "segments")) {
+                for (Field field : segment.getClass().getDeclaredFields()) {
+                    field.setAccessible(true);
+                    Object value = field.get(segment);
+                    if (value instanceof OutputStream || value instanceof byte[]) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return number of files held open by spill files of the join
+     */
+    static int openFilesOfSegments(StreamJoin<?, ?, ?, ?> join) throws ReflectiveOperationException {
+        int count = 0;
+        for (String sideName : new String[]{"leftSide", "rightSide"}) {
+            Object side = field(join, sideName);
+            for (Object segment : (Collection<?>) field(side, "segments")) {
+                for (Field field : segment.getClass().getDeclaredFields()) {
+                    field.setAccessible(true);
+                    if (field.get(segment) instanceof Closeable) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    static Object field(Object object, String name) throws ReflectiveOperationException {
+        Field field = object.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(object);
+    }
+
+    @Test
+    public void failedSideFailsOutput() throws InterruptedException {
+        StreamJoin<String, String, String, String> join = newJoin(10);
+        CollectingSubscriber<String> sink = join.subscribe(new CollectingSubscriber<>());
+        join.start();
+        join.left.post("a:0");
+        join.right.completeExceptionally(new IllegalStateException());
+        Assert.assertTrue(sink.done.await(1, TimeUnit.SECONDS));
+        Assert.assertTrue(sink.failure instanceof IllegalStateException);
+    }
+}
@@ -0,0 +1,147 @@
+package org.df4j.core.window;
+
+import org.df4j.core.messagestream.CollectingSubscriber;
+import org.df4j.core.tasknode.window.Aggregator;
+import org.df4j.core.tasknode.window.CountWindow;
+import org.df4j.core.tasknode.window.SessionWindow;
+import org.df4j.core.tasknode.window.TimeWindow;
+import org.df4j.core.tasknode.window.WindowOperator;
+import org.df4j.core.tasknode.window.WindowResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class WindowTest {
+
+    static List<String> strings(CollectingSubscriber<?> sink) {
+        List<String> res = new ArrayList<>();
+        for (Object item : sink.received()) {
+            res.add(item.toString());
+        }
+        return res;
+    }
+
+    static <R> CollectingSubscriber<WindowResult<R>> run(WindowOperator<Long, ?, R> window, long... timestamps) throws InterruptedException {
+        CollectingSubscriber<WindowResult<R>> sink = window.subscribe(new CollectingSubscriber<>());
+        window.start();
+        for (long timestamp : timestamps) {
+            window.post(timestamp);
+        }
+        window.complete();
+        Assert.assertTrue(sink.done.await(1, TimeUnit.SECONDS));
+        return sink;
+    }
+
+    static long[] range(int count) {
+        long[] res = new long[count];
+        for (int k = 0; k < count; k++) {
+            res[k] = k;
+        }
+        return res;
+    }
+
+    @Test
+    public void tumbling() throws InterruptedException {
+        TimeWindow<Long, long[], Long> window = new TimeWindow<>(10, 10, Aggregator.sumLong(x -> x), x -> x, 0);
+        CollectingSubscriber<WindowResult<Long>> sink = run(window, range(30));
+        List<String> expected = new ArrayList<>();
+        expected.add("[0, 10): 45");
+        expected.add("[10, 20): 145");
+        expected.add("[20, 30): 245");
+        Assert.assertEquals(expected, strings(sink));
+    }
+
+    @Test
+    public void sliding() throws InterruptedException {
+        TimeWindow<Long, long[], Long> window = new TimeWindow<>(10, 5, Aggregator.count(), x -> x, 0);
+        CollectingSubscriber<WindowResult<Long>> sink = run(window, range(20));
+        List<String> expected = new ArrayList<>();
+        expected.add("[-5, 5): 5");
+        expected.add("[0, 10): 10");
+        expected.add("[5, 15): 10");
+        expected.add("[10, 20): 10");
+        expected.add("[15, 25): 5");
+        Assert.assertEquals(expected, strings(sink));
+        Assert.assertEquals(0, window.getOpenWindows());
+    }
+
+    @Test
+    public void lateElements() throws InterruptedException {
+        TimeWindow<Long, long[], Long> strict = new TimeWindow<>(10, 10, Aggregator.count(), x -> x, 0);
+        CollectingSubscriber<Long> late = strict.subscribeLate(new CollectingSubscriber<>());
+        CollectingSubscriber<WindowResult<Long>> sink = run(strict, 20, 5, 15, 21);
+        Assert.assertEquals(2, strict.getLateCount());
+        Assert.assertEquals("[5, 15]", strings(late).toString());
+        Assert.assertEquals("[[20, 30): 2]", strings(sink).toString());
+
+        TimeWindow<Long, long[], Long> tolerant = new TimeWindow<>(10, 10, Aggregator.count(), x -> x, 10);
+        sink = run(tolerant, 20, 5, 15, 21);
+        Assert.assertEquals(1, tolerant.getLateCount());
+        Assert.assertEquals("[[10, 20): 1, [20, 30): 2]", strings(sink).toString());
+    }
+
+    @Test
+    public void watermarkClosesWindows() throws InterruptedException {
+        TimeWindow<Long, long[], Long> window = new TimeWindow<>(10, 10, Aggregator.count(), x -> x, 100);
+        CollectingSubscriber<WindowResult<Long>> sink = window.subscribe(new CollectingSubscriber<>());
+        window.start();
+        window.post(1L);
+        window.post(2L);
+        window.postWatermark(10);
+        synchronized (sink) {
+            long deadline = System.currentTimeMillis() + 1000;
+            while (sink.received.isEmpty() && System.currentTimeMillis() < deadline) {
+                sink.wait(10);
+            }
+        }
+        Assert.assertEquals("[[0, 10): 2]", strings(sink).toString());
+    }
+
+    @Test
+    public void sessions() throws InterruptedException {
+        SessionWindow<Long, long[], Long> window = new SessionWindow<>(3, Aggregator.count(), x -> x, 100);
+        CollectingSubscriber<WindowResult<Long>> sink = window.subscribe(new CollectingSubscriber<>());
+        window.start();
+        for (long timestamp : new long[]{0, 1, 2, 7, 8, 20}) {
+            window.post(timestamp);
+        }
+        window.post(4L); // joins [0, 5)
+        window.post(6L); // joins [0, 7) and [7, 11)
+        window.complete();
+        Assert.assertTrue(sink.done.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals("[[0, 11): 7, [20, 23): 1]", strings(sink).toString());
+    }
+
+    @Test
+    public void countWindows() throws InterruptedException {
+        CountWindow<Long, long[], Long> window = new CountWindow<>(4, 2, Aggregator.sumLong(x -> x));
+        CollectingSubscriber<WindowResult<Long>> sink = run(window, range(7));
+        Assert.assertEquals("[[0, 4): 6, [2, 6): 14, [4, 7): 15, [6, 7): 6]", strings(sink).toString());
+    }
+
+    @Test
+    public void processingTime() throws InterruptedException {
+        TimeWindow<Long, long[], Long> window = new TimeWindow<>(20, Aggregator.count());
+        CollectingSubscriber<WindowResult<Long>> sink = window.subscribe(new CollectingSubscriber<>());
+        window.start();
+        window.post(1L);
+        window.post(2L);
+        window.post(3L);
+        // the shared timer closes the window, without more elements
+        long count = 0;
+        synchronized (sink) {
+            long deadline = System.currentTimeMillis() + 2000;
+            while (count < 3 && System.currentTimeMillis() < deadline) {
+                sink.wait(10);
+                count = 0;
+                for (WindowResult<Long> result : sink.received) {
+                    count += result.value;
+                }
+            }
+        }
+        Assert.assertEquals(3, count);
+    }
+}